@@ -1,11 +1,12 @@
 package el.selenium.drivers;
 
-import com.gargoylesoftware.htmlunit.BrowserVersion;
-import com.gargoylesoftware.htmlunit.WebClient;
-import com.gargoylesoftware.htmlunit.WebRequest;
-import com.gargoylesoftware.htmlunit.WebWindow;
+import com.gargoylesoftware.htmlunit.*;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.util.Cookie;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
+import el.selenium.drivers.strategies.ResourceBlockingPolicy;
+import el.selenium.model.NavigationTiming;
 import el.selenium.utils.CommandExecutor;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
@@ -26,6 +27,7 @@ import java.net.URL;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -40,6 +42,20 @@ public class ExtendedHtmlUnitDriver extends HtmlUnitDriver implements TakesScree
     // http://stackoverflow.com/questions/4652777/java-regex-to-get-the-urls-from-css
     private final static Pattern cssUrlPattern = Pattern.compile("background(-image)?[\\s]*:[^url]*url[\\s]*\\([\\s]*([^\\)]*)[\\s]*\\)[\\s]*");// ?<url>
 
+    /**
+     * System nano times of the last navigation phases, zero if the phase hasn't happened yet.
+     * Not initialized explicitly, as web client is modified during super constructor.
+     */
+    private volatile long navigationStart;
+    private volatile long responseEnd;
+    private volatile long contentLoaded;
+    private volatile long loadEnd;
+    private volatile Integer statusCode;
+
+    private volatile ResourceBlockingPolicy resourceBlockingPolicy;
+
+    private volatile HttpResponseCache responseCache = HttpResponseCache.getShared();
+
     public ExtendedHtmlUnitDriver() {
         super();
     }
@@ -62,9 +78,129 @@ public class ExtendedHtmlUnitDriver extends HtmlUnitDriver implements TakesScree
     protected WebClient modifyWebClient(WebClient client) {
         client.setRefreshHandler((page, url, seconds) -> {
         });
+        new ConnectionWrapper(client) {
+            @Override
+            public WebResponse getResponse(WebRequest request) throws IOException {
+                HttpResponseCache cache = responseCache;
+                if (cache == null) {
+                    return super.getResponse(request);
+                }
+                //cookies are added by the wrapped connection, so they're passed to the cache apart
+                return cache.getResponse(request, getCookies(client, request.getUrl()), super::getResponse);
+            }
+        };
+        new ConnectionWrapper(client) {
+            @Override
+            public WebResponse getResponse(WebRequest request) throws IOException {
+                WebResponse response = super.getResponse(request);
+                //the first response, which isn't redirect, is the page itself
+                if (navigationStart != 0 && responseEnd == 0 && (response.getStatusCode() < 300 || response.getStatusCode() >= 400)) {
+                    responseEnd = System.nanoTime();
+                    statusCode = response.getStatusCode();
+                }
+                return response;
+            }
+        };
+        new ConnectionWrapper(client) {
+            @Override
+            public WebResponse getResponse(WebRequest request) throws IOException {
+                ResourceBlockingPolicy blockingPolicy = resourceBlockingPolicy;
+                //the page itself is never blocked, only its subresources
+                if (blockingPolicy == null || blockingPolicy.isEmpty() || (navigationStart != 0 && responseEnd == 0)) {
+                    return super.getResponse(request);
+                }
+                if (blockingPolicy.isBlocked(request.getUrl())) {
+                    blockingPolicy.recordBlocked(0);
+                    return getBlockedResponse(request);
+                }
+                WebResponse response = super.getResponse(request);
+                if (blockingPolicy.isBlockedContentType(response.getContentType())) {
+                    blockingPolicy.recordBlocked(response.getContentLength());
+                    response.cleanUp();
+                    return getBlockedResponse(request);
+                }
+                return response;
+            }
+        };
+        client.addWebWindowListener(new WebWindowListener() {
+            @Override
+            public void webWindowOpened(WebWindowEvent event) {
+            }
+
+            @Override
+            public void webWindowContentChanged(WebWindowEvent event) {
+                //page is set to the window after being parsed, before onload handlers
+                if (navigationStart != 0 && contentLoaded == 0 && event.getWebWindow() instanceof TopLevelWindow) {
+                    contentLoaded = System.nanoTime();
+                }
+            }
+
+            @Override
+            public void webWindowClosed(WebWindowEvent event) {
+            }
+        });
         return client;
     }
 
+    /**
+     * Sets policy of subresources, which aren't loaded by the driver.
+     * Resources recognized by URL aren't requested at all, the rest are discarded by content type of the response.
+     */
+    public void setResourceBlockingPolicy(ResourceBlockingPolicy resourceBlockingPolicy) {
+        this.resourceBlockingPolicy = resourceBlockingPolicy;
+    }
+
+    /**
+     * Sets cache of HTTP responses, shared one is used by default, null turns caching off.
+     */
+    public void setResponseCache(HttpResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    private static WebResponse getBlockedResponse(WebRequest request) {
+        return new WebResponse(new WebResponseData(new byte[0], 204, "No Content", Collections.emptyList()), request, 0);
+    }
+
+    @Override
+    public void get(String url) {
+        responseEnd = 0;
+        statusCode = null;
+        contentLoaded = 0;
+        loadEnd = 0;
+        navigationStart = System.nanoTime();
+        try {
+            super.get(url);
+        } finally {
+            loadEnd = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns timing of the last navigation measured on the web connection.
+     * HtmlUnit reads the whole response before handing it over, so time to first byte is time to the full
+     * main document response, DNS and connect phases aren't reported separately.
+     *
+     * @return navigation timing or null if no page has been loaded yet
+     */
+    public NavigationTiming getNavigationTiming() {
+        if (loadEnd == 0) {
+            return null;
+        }
+        return new NavigationTiming(null, null, sinceNavigationStart(responseEnd),
+                sinceNavigationStart(contentLoaded), sinceNavigationStart(loadEnd));
+    }
+
+    /**
+     * @return status code of the last navigated page or null if no page has been loaded yet
+     */
+    public Integer getStatusCode() {
+        return statusCode;
+    }
+
+    private Double sinceNavigationStart(long nanoTime) {
+        return nanoTime == 0 ? null : (nanoTime - navigationStart) / 1_000_000.0;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <X> X getScreenshotAs(OutputType<X> target) throws WebDriverException {
@@ -193,4 +329,39 @@ public class ExtendedHtmlUnitDriver extends HtmlUnitDriver implements TakesScree
     public void quit() {
         CommandExecutor.executeOnIsolation(super::quit);
     }
+
+    /**
+     * @return cookies the client sends to the URL, sorted by name, or null if there is none
+     */
+    private static String getCookies(WebClient client, URL url) {
+        Set<Cookie> cookies = client.getCookies(url);
+        if (cookies.isEmpty()) {
+            return null;
+        }
+        return cookies.stream()
+                .map(cookie -> cookie.getName() + "=" + cookie.getValue())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    /**
+     * Web connection wrapper, which closes the wrapped connection throwing IOException only.
+     */
+    private static abstract class ConnectionWrapper extends WebConnectionWrapper {
+
+        ConnectionWrapper(WebClient client) {
+            super(client);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
 }
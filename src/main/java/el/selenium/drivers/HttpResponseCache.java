@@ -0,0 +1,557 @@
+package el.selenium.drivers;
+
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.utils.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP response cache shared by HtmlUnit drivers of the JVM.
+ * Only successful GET responses of static resources, which are fresh by Cache-Control or Expires or might be revalidated
+ * by ETag or Last-Modified, are cached. HTML documents aren't cached unless requested, as they are mostly personalized,
+ * neither are private, no-store, varying and cookie setting responses, nor responses to no-store requests.
+ * Responses are keyed by URL together with cookies and authorization sent with the request,
+ * so that response of one session isn't served to another one.
+ * Memory tier is bounded by bytes and evicts least recently used entries, which spill
+ * to optional disk tier of memory-mapped files, bounded the same way. The files are written outside the lock of the cache.
+ * The HttpResponseCache is thread safe.
+ */
+public class HttpResponseCache {
+
+    private final static Logger log = LoggerFactory.getLogger(HttpResponseCache.class);
+
+    private final static HttpResponseCache shared = new HttpResponseCache();
+
+    /**
+     * Headers, which don't describe the cached body anymore, as it's stored decoded
+     */
+    private final static Set<String> SKIPPED_HEADERS = new HashSet<>(Arrays.asList("content-encoding", "content-length", "transfer-encoding"));
+
+    /**
+     * Request headers, which identify the session, lower case
+     */
+    private final static Set<String> CREDENTIAL_HEADERS = new HashSet<>(Arrays.asList("authorization", "cookie"));
+
+    /**
+     * Content types of documents, which aren't cached unless requested
+     */
+    private final static Set<String> DOCUMENT_TYPES = new HashSet<>(Arrays.asList("text/html", "application/xhtml+xml"));
+
+    /**
+     * Guarded by this, both in access order
+     */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private volatile long maxMemoryBytes = 64L * 1024 * 1024;
+    private volatile long maxEntryBytes = 4L * 1024 * 1024;
+    private volatile long maxDiskBytes;
+    private volatile File diskDirectory;
+    private volatile boolean cacheDocuments;
+
+    private final AtomicLong fileSequence = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public static HttpResponseCache getShared() {
+        return shared;
+    }
+
+    public void setMaxMemoryBytes(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        List<Entry> spilled;
+        synchronized (this) {
+            spilled = evict();
+        }
+        spill(spilled);
+    }
+
+    /**
+     * Sets max size of single response, larger responses aren't cached.
+     */
+    public void setMaxEntryBytes(long maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * Lets entries evicted from memory spill to files of the directory, read back through memory mapping.
+     * Zero max bytes turns the disk tier off.
+     */
+    public void setDiskTier(File diskDirectory, long maxDiskBytes) {
+        if (maxDiskBytes > 0 && !diskDirectory.isDirectory() && !diskDirectory.mkdirs()) {
+            throw new IllegalArgumentException("Can't create cache directory " + diskDirectory);
+        }
+        List<Entry> spilled;
+        synchronized (this) {
+            this.diskDirectory = diskDirectory;
+            this.maxDiskBytes = maxDiskBytes;
+            spilled = evict();
+        }
+        spill(spilled);
+    }
+
+    /**
+     * Sets whether HTML documents are cached as well as static resources.
+     */
+    public void setCacheDocuments(boolean cacheDocuments) {
+        this.cacheDocuments = cacheDocuments;
+    }
+
+    /**
+     * Returns response of the request either from the cache or loaded by the loader,
+     * stale entries are revalidated by conditional request.
+     */
+    public WebResponse getResponse(WebRequest request, Loader loader) throws IOException {
+        return getResponse(request, null, loader);
+    }
+
+    /**
+     * Returns response of the request, cached apart for each value of the credentials.
+     *
+     * @param credentials cookies or other credentials the loader adds to the request, null if none
+     */
+    public WebResponse getResponse(WebRequest request, String credentials, Loader loader) throws IOException {
+        if (request.getHttpMethod() != HttpMethod.GET || request.getCredentials() != null || request.getUrlCredentials() != null) {
+            return loader.load(request);
+        }
+        Set<String> requestDirectives = getDirectives(request.getAdditionalHeaders().get("Cache-Control"));
+        if (requestDirectives.contains("no-store")) {
+            return loader.load(request);
+        }
+        String key = getKey(request, credentials);
+        Entry entry = get(key);
+        if (entry != null && entry.isFresh() && !requestDirectives.contains("no-cache")) {
+            byte[] body = read(entry);
+            if (body != null) {
+                hits.increment();
+                return entry.toResponse(body, request);
+            }
+            entry = null;
+        }
+
+        if (entry != null) {
+            if (entry.etag != null) {
+                request.setAdditionalHeader("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.setAdditionalHeader("If-Modified-Since", entry.lastModified);
+            }
+        }
+        WebResponse response;
+        try {
+            response = loader.load(request);
+        } finally {
+            if (entry != null) {
+                request.removeAdditionalHeader("If-None-Match");
+                request.removeAdditionalHeader("If-Modified-Since");
+            }
+        }
+        if (entry != null) {
+            if (response.getStatusCode() == 304) {
+                byte[] body = read(entry);
+                if (body != null) {
+                    revalidations.increment();
+                    hits.increment();
+                    entry.freshUntil = getFreshUntil(response);
+                    return entry.toResponse(body, request);
+                }
+                //evicted meanwhile, the caller hasn't asked for conditional response
+                response = loader.load(request);
+            }
+        }
+        misses.increment();
+        return store(key, request, response);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns count of hits served after conditional request.
+     */
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * Returns count of entries dropped from the cache, not counting the ones spilled to disk.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * Deletes the files of the disk tier, entries being spilled delete their files once written.
+     */
+    public synchronized void clear() {
+        memory.clear();
+        disk.values().forEach(this::delete);
+        disk.clear();
+        memoryBytes = 0;
+        diskBytes = 0;
+    }
+
+    private static String getKey(WebRequest request, String credentials) {
+        StringBuilder key = new StringBuilder(request.getUrl().toExternalForm());
+        new TreeMap<>(request.getAdditionalHeaders()).forEach((name, value) -> {
+            if (CREDENTIAL_HEADERS.contains(name.toLowerCase())) {
+                key.append('\n').append(name.toLowerCase()).append(": ").append(value);
+            }
+        });
+        if (credentials != null) {
+            key.append('\n').append(credentials);
+        }
+        return key.toString();
+    }
+
+    private synchronized Entry get(String key) {
+        Entry entry = memory.get(key);
+        return entry != null ? entry : disk.get(key);
+    }
+
+    /**
+     * Reads body of the entry, promoting entry of the disk tier back to memory.
+     *
+     * @return body or null if the entry has been evicted meanwhile
+     */
+    private byte[] read(Entry entry) {
+        byte[] body = entry.body;
+        if (body != null) {
+            return body;
+        }
+        File file = entry.file;
+        if (file == null) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            body = new byte[buffer.remaining()];
+            buffer.get(body);
+        } catch (IOException e) {
+            log.debug("Cached response {} isn't readable: {}", entry.key, e.getMessage());
+            return null;
+        }
+        List<Entry> spilled = Collections.emptyList();
+        synchronized (this) {
+            if (disk.remove(entry.key, entry)) {
+                diskBytes -= entry.size;
+                delete(entry);
+                entry.body = body;
+                spilled = putInMemory(entry);
+            }
+        }
+        spill(spilled);
+        return body;
+    }
+
+    private WebResponse store(String key, WebRequest request, WebResponse response) throws IOException {
+        if (!isCacheable(response)) {
+            return response;
+        }
+        byte[] body;
+        try (InputStream content = response.getContentAsStream()) {
+            body = IOUtils.toByteArray(content);
+        }
+        response.cleanUp();
+
+        List<NameValuePair> headers = new ArrayList<>();
+        for (NameValuePair header : response.getResponseHeaders()) {
+            if (!SKIPPED_HEADERS.contains(header.getName().toLowerCase())) {
+                headers.add(header);
+            }
+        }
+        Entry entry = new Entry(key, response.getStatusCode(), response.getStatusMessage(), headers, body,
+                getFreshUntil(response), response.getResponseHeaderValue("ETag"), response.getResponseHeaderValue("Last-Modified"));
+        if (body.length <= maxEntryBytes) {
+            List<Entry> spilled;
+            synchronized (this) {
+                remove(key);
+                spilled = putInMemory(entry);
+            }
+            spill(spilled);
+        }
+        return entry.toResponse(body, request);
+    }
+
+    private boolean isCacheable(WebResponse response) {
+        if (response.getStatusCode() != 200) {
+            return false;
+        }
+        Set<String> directives = getDirectives(response.getResponseHeaderValue("Cache-Control"));
+        if (directives.contains("no-store") || directives.contains("private")) {
+            return false;
+        }
+        if (!cacheDocuments && DOCUMENT_TYPES.contains(response.getContentType().toLowerCase())) {
+            return false;
+        }
+        if (response.getResponseHeaderValue("Set-Cookie") != null) {
+            return false;
+        }
+        String vary = response.getResponseHeaderValue("Vary");
+        if (vary != null && !vary.trim().isEmpty() && !vary.trim().equalsIgnoreCase("Accept-Encoding")) {
+            return false;
+        }
+        if (response.getContentLength() > maxEntryBytes) {
+            return false;
+        }
+        return getFreshUntil(response) > System.currentTimeMillis()
+                || response.getResponseHeaderValue("ETag") != null
+                || response.getResponseHeaderValue("Last-Modified") != null;
+    }
+
+    /**
+     * @return time in millis, till which the response is fresh, zero if it should be revalidated right away
+     */
+    private static long getFreshUntil(WebResponse response) {
+        String cacheControl = response.getResponseHeaderValue("Cache-Control");
+        Set<String> directives = getDirectives(cacheControl);
+        String pragma = response.getResponseHeaderValue("Pragma");
+        if (directives.contains("no-cache") || cacheControl == null && pragma != null && pragma.trim().equalsIgnoreCase("no-cache")) {
+            return 0;
+        }
+        for (String directive : directives) {
+            String[] parts = directive.split("=", 2);
+            if (parts.length == 2 && (parts[0].equals("s-maxage") || parts[0].equals("max-age"))) {
+                try {
+                    long age = parseLong(response.getResponseHeaderValue("Age"));
+                    return System.currentTimeMillis() + (Long.parseLong(parts[1].replace("\"", "").trim()) - age) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        String expires = response.getResponseHeaderValue("Expires");
+        if (expires != null) {
+            Date date = DateUtils.parseDate(expires);
+            return date == null ? 0 : date.getTime();
+        }
+        return 0;
+    }
+
+    /**
+     * @return directives of the Cache-Control header in their order, lower case, with values
+     */
+    private static Set<String> getDirectives(String cacheControl) {
+        if (cacheControl == null) {
+            return Collections.emptySet();
+        }
+        Set<String> directives = new LinkedHashSet<>();
+        for (String directive : cacheControl.toLowerCase().split(",")) {
+            String trimmed = directive.trim();
+            //no-cache="Set-Cookie" still revalidates the whole response
+            directives.add(trimmed.startsWith("no-cache") ? "no-cache" : trimmed.startsWith("private") ? "private" : trimmed);
+        }
+        return directives;
+    }
+
+    private static long parseLong(String value) {
+        return value == null ? 0 : Long.parseLong(value.trim());
+    }
+
+    /**
+     * Guarded by this
+     *
+     * @return entries moved to disk tier, which should be spilled outside the lock
+     */
+    private List<Entry> putInMemory(Entry entry) {
+        memory.put(entry.key, entry);
+        memoryBytes += entry.size;
+        return evict();
+    }
+
+    /**
+     * Guarded by this
+     */
+    private void remove(String key) {
+        Entry entry = memory.remove(key);
+        if (entry != null) {
+            memoryBytes -= entry.size;
+        }
+        entry = disk.remove(key);
+        if (entry != null) {
+            diskBytes -= entry.size;
+            delete(entry);
+        }
+    }
+
+    /**
+     * Moves least recently used entries from memory to disk and drops them from disk, till both tiers fit.
+     * Moved entries keep their body in memory till they are written by {@link #spill(List)}, which should be called
+     * once the lock is released, so that reads of other entries don't wait for the disk.
+     * Guarded by this
+     *
+     * @return entries moved to disk tier
+     */
+    private List<Entry> evict() {
+        List<Entry> spilled = new ArrayList<>();
+        Iterator<Entry> iterator = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            memoryBytes -= entry.size;
+            if (diskDirectory != null && maxDiskBytes > 0 && entry.size <= maxDiskBytes) {
+                entry.spilling = true;
+                disk.put(entry.key, entry);
+                diskBytes += entry.size;
+                spilled.add(entry);
+            } else {
+                evictions.increment();
+            }
+        }
+        iterator = disk.values().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            diskBytes -= entry.size;
+            delete(entry);
+            evictions.increment();
+        }
+        return spilled;
+    }
+
+    /**
+     * Writes bodies of the entries moved to disk tier to files, entries dropped or read back meanwhile are skipped.
+     */
+    private void spill(List<Entry> spilled) {
+        File directory = diskDirectory;
+        if (directory == null) {
+            //the disk tier has been turned off meanwhile, its entries are dropped by the next eviction
+            return;
+        }
+        for (Entry entry : spilled) {
+            byte[] body = entry.body;
+            synchronized (this) {
+                if (!entry.spilling || body == null) {
+                    continue;
+                }
+            }
+            File file = new File(directory, "response-" + fileSequence.incrementAndGet() + ".cache");
+            boolean written = false;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                 FileChannel channel = randomAccessFile.getChannel()) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, body.length);
+                buffer.put(ByteBuffer.wrap(body));
+                buffer.force();
+                written = true;
+            } catch (IOException e) {
+                log.warn("Failed to spill cached response {} to disk: {}", entry.key, e.getMessage());
+            }
+            synchronized (this) {
+                if (entry.spilling && written) {
+                    entry.spilling = false;
+                    entry.file = file;
+                    entry.body = null;
+                    continue;
+                }
+                if (entry.spilling && disk.remove(entry.key, entry)) {
+                    entry.spilling = false;
+                    diskBytes -= entry.size;
+                    evictions.increment();
+                }
+            }
+            //the entry has been dropped or read back meanwhile
+            file.delete();
+        }
+    }
+
+    /**
+     * Guarded by this
+     */
+    private void delete(Entry entry) {
+        File file = entry.file;
+        entry.file = null;
+        entry.spilling = false;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                log.debug("Failed to delete cached response {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        WebResponse load(WebRequest request) throws IOException;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final int statusCode;
+        private final String statusMessage;
+        private final List<NameValuePair> headers;
+        private final long size;
+        private final String etag;
+        private final String lastModified;
+        private volatile byte[] body;
+        private volatile File file;
+        private volatile long freshUntil;
+
+        /**
+         * Whether the entry is in disk tier, but its body isn't written yet, guarded by the cache
+         */
+        private boolean spilling;
+
+        private Entry(String key, int statusCode, String statusMessage, List<NameValuePair> headers, byte[] body,
+                      long freshUntil, String etag, String lastModified) {
+            this.key = key;
+            this.statusCode = statusCode;
+            this.statusMessage = statusMessage;
+            this.headers = headers;
+            this.body = body;
+            this.size = body.length;
+            this.freshUntil = freshUntil;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isFresh() {
+            return freshUntil > System.currentTimeMillis();
+        }
+
+        private WebResponse toResponse(byte[] body, WebRequest request) {
+            return new WebResponse(new WebResponseData(body, statusCode, statusMessage, headers), request, 0);
+        }
+    }
+}
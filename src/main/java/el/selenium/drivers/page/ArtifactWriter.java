@@ -0,0 +1,324 @@
+package el.selenium.drivers.page;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes screenshots and page dumps in background, so that capturing them costs the caller only taking the bytes.
+ * Pending bytes are bounded, on overflow the caller is blocked or the artifact is dropped following the overflow policy.
+ * Artifacts exceeding disk quota of their directory are dropped, compressed artifacts count by their compressed size.
+ * Pending artifacts of all the writers, which aren't closed, are flushed on JVM shutdown by single hook,
+ * waiting up to the shutdown timeout of each writer.
+ * Shared instance is used by all PageDrivers of the JVM, unless other is set.
+ */
+public class ArtifactWriter {
+
+    private final static Logger log = LoggerFactory.getLogger(ArtifactWriter.class);
+
+    /**
+     * Writers not closed yet, flushed on JVM shutdown as the writer threads are daemon.
+     * Weak, so that abandoned writer without pending artifacts isn't kept, guarded by itself
+     */
+    private final static Set<ArtifactWriter> unclosed = Collections.newSetFromMap(new WeakHashMap<>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ArtifactWriter::flushOnShutdown, "page-driver-artifact-flusher"));
+    }
+
+    /**
+     * Created after the registry of unclosed writers
+     */
+    private final static ArtifactWriter shared = new ArtifactWriter();
+
+    private final static int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    public enum OverflowPolicy {
+        /**
+         * Caller waits till enough pending bytes are written
+         */
+        BLOCK,
+        /**
+         * Artifact is dropped
+         */
+        DROP
+    }
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "page-driver-artifact-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Bytes written to each directory tree, including the ones found there on first write
+     */
+    private final Map<Path, AtomicLong> directorySizes = new ConcurrentHashMap<>();
+
+    private final Object pendingLock = new Object();
+    private long pendingBytes;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile long maxPendingBytes = 64 * 1024 * 1024;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private volatile long diskQuota = Long.MAX_VALUE;
+    private volatile boolean gzip = false;
+    private volatile long shutdownTimeout = TimeUnit.SECONDS.toNanos(30);
+
+    public ArtifactWriter() {
+        synchronized (unclosed) {
+            unclosed.add(this);
+        }
+    }
+
+    public static ArtifactWriter getShared() {
+        return shared;
+    }
+
+    /**
+     * Sets max bytes waiting to be written, single artifact exceeding it is accepted when nothing else is pending.
+     */
+    public void setMaxPendingBytes(long maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+        synchronized (pendingLock) {
+            pendingLock.notifyAll();
+        }
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        synchronized (pendingLock) {
+            pendingLock.notifyAll();
+        }
+    }
+
+    /**
+     * Sets max bytes of each directory tree artifacts are written to.
+     */
+    public void setDiskQuota(long diskQuota) {
+        this.diskQuota = diskQuota;
+    }
+
+    /**
+     * Sets max time JVM shutdown waits for pending artifacts to be written.
+     */
+    public void setShutdownTimeout(long shutdownTimeout, TimeUnit unit) {
+        this.shutdownTimeout = unit.toNanos(shutdownTimeout);
+    }
+
+    /**
+     * Compresses text artifacts, adding .gz extension to their files. Images are written as is.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Writes the bytes to the file in background, replacing the existing file.
+     *
+     * @return false if the artifact has been dropped
+     */
+    public boolean write(Path path, byte[] bytes) {
+        return submit(path, bytes, false, false);
+    }
+
+    /**
+     * Writes the text in UTF-8 to the file in background.
+     *
+     * @param append whether the text should be appended to the existing file
+     * @return false if the artifact has been dropped
+     */
+    public boolean write(Path path, String text, boolean append) {
+        boolean compressed = gzip;
+        Path target = compressed ? path.resolveSibling(path.getFileName() + ".gz") : path;
+        return submit(target, text.getBytes(StandardCharsets.UTF_8), compressed, append);
+    }
+
+    /**
+     * Waits till all the pending artifacts are written.
+     *
+     * @return false if the timeout has elapsed before
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (pendingLock) {
+            while (pendingBytes > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(pendingLock, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the pending artifacts and stops the writer, artifacts written afterwards are dropped.
+     *
+     * @return false if the timeout has elapsed before the pending artifacts are written
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        writer.shutdown();
+        synchronized (unclosed) {
+            unclosed.remove(this);
+        }
+        return flush(timeout, unit);
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getPendingBytes() {
+        synchronized (pendingLock) {
+            return pendingBytes;
+        }
+    }
+
+    static int getUnclosedCount() {
+        synchronized (unclosed) {
+            return unclosed.size();
+        }
+    }
+
+    /**
+     * Flushes the writers, which write in parallel, so each of them waits up to its timeout since the shutdown.
+     */
+    private static void flushOnShutdown() {
+        long startTime = System.nanoTime();
+        List<ArtifactWriter> writers;
+        synchronized (unclosed) {
+            writers = new ArrayList<>(unclosed);
+        }
+        try {
+            for (ArtifactWriter artifactWriter : writers) {
+                long remaining = startTime + artifactWriter.shutdownTimeout - System.nanoTime();
+                if (!artifactWriter.flush(remaining, TimeUnit.NANOSECONDS)) {
+                    log.warn("{} bytes of artifacts aren't written before shutdown", artifactWriter.getPendingBytes());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean submit(Path path, byte[] bytes, boolean compressed, boolean append) {
+        if (!reserve(bytes.length)) {
+            dropped.incrementAndGet();
+            log.warn("Artifact {} of {} bytes is dropped, {} bytes are pending", path, bytes.length, getPendingBytes());
+            return false;
+        }
+        try {
+            writer.execute(() -> {
+                try {
+                    store(path, bytes, compressed, append);
+                } finally {
+                    release(bytes.length);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(bytes.length);
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean reserve(long bytes) {
+        synchronized (pendingLock) {
+            while (pendingBytes > 0 && pendingBytes + bytes > maxPendingBytes) {
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    return false;
+                }
+                try {
+                    pendingLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            pendingBytes += bytes;
+            return true;
+        }
+    }
+
+    private void release(long bytes) {
+        synchronized (pendingLock) {
+            pendingBytes -= bytes;
+            pendingLock.notifyAll();
+        }
+    }
+
+    private void store(Path artifact, byte[] bytes, boolean compressed, boolean append) {
+        Path path = artifact.toAbsolutePath();
+        Path directory = path.getParent();
+        AtomicLong directorySize = directorySizes.computeIfAbsent(directory, ArtifactWriter::getSize);
+        try {
+            //appended gzip members are read as single stream
+            byte[] content = compressed ? compress(bytes) : bytes;
+            long previousSize = Files.exists(path) ? Files.size(path) : 0;
+            //replaced file frees its size
+            if (directorySize.get() + content.length - (append ? 0 : previousSize) > diskQuota) {
+                dropped.incrementAndGet();
+                log.warn("Artifact {} is dropped, disk quota {} of {} is exceeded", path, diskQuota, directory);
+                return;
+            }
+
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            directorySize.addAndGet(Files.size(path) - previousSize);
+            written.incrementAndGet();
+        } catch (IOException e) {
+            log.error("Failed to write artifact " + path, e);
+        }
+    }
+
+    private static byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.min(bytes.length, GZIP_BUFFER_SIZE));
+        try (OutputStream out = new GZIPOutputStream(compressed, GZIP_BUFFER_SIZE)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static AtomicLong getSize(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return new AtomicLong();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            return new AtomicLong(files
+                    .filter(Files::isRegularFile)
+                    .mapToLong(file -> file.toFile().length())
+                    .sum());
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to measure size of {}: {}", directory, e.getMessage());
+            return new AtomicLong();
+        }
+    }
+}
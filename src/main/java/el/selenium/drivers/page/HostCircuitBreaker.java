@@ -0,0 +1,199 @@
+package el.selenium.drivers.page;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker per host, failing fast for hosts which keep erroring.
+ * The circuit opens after failure threshold consecutive failures, stays open for open time
+ * and then lets single trial request through, which either closes it or opens it again.
+ * Trial request which reports no outcome within trial timeout is considered lost and another one is let through.
+ * Circuit is dropped once it's closed again, or once the host hasn't been requested for the expiry time.
+ * Shared instance is used by all PageDrivers of the JVM, unless other is set.
+ */
+public class HostCircuitBreaker {
+
+    private final static Logger log = LoggerFactory.getLogger(HostCircuitBreaker.class);
+
+    private final static HostCircuitBreaker shared = new HostCircuitBreaker();
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private volatile int failureThreshold = 5;
+    private volatile long openTime = TimeUnit.SECONDS.toNanos(30);
+    private volatile long trialTimeout = TimeUnit.MINUTES.toNanos(2);
+    private volatile long expiry = TimeUnit.MINUTES.toNanos(10);
+    private final AtomicLong expiredAt = new AtomicLong(System.nanoTime());
+
+    public static HostCircuitBreaker getShared() {
+        return shared;
+    }
+
+    /**
+     * Sets count of consecutive failures, which opens the circuit.
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Sets time, during which requests to the host are rejected after the circuit opens.
+     */
+    public void setOpenTime(long openTime, TimeUnit unit) {
+        this.openTime = unit.toNanos(openTime);
+    }
+
+    /**
+     * Sets time, after which trial request without outcome is given up and another one is allowed.
+     */
+    public void setTrialTimeout(long trialTimeout, TimeUnit unit) {
+        this.trialTimeout = unit.toNanos(trialTimeout);
+    }
+
+    /**
+     * Sets time after which circuit of host, which isn't requested anymore, is dropped.
+     */
+    public void setExpiry(long expiry, TimeUnit unit) {
+        this.expiry = unit.toNanos(expiry);
+    }
+
+    /**
+     * @return true if request to the host might be sent
+     */
+    public boolean allow(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null || circuit.allow(openTime, trialTimeout);
+    }
+
+    public void onSuccess(String host) {
+        //closed circuit is the same as no circuit
+        circuits.remove(host);
+    }
+
+    public void onFailure(String host) {
+        expire();
+        boolean[] opened = new boolean[1];
+        //counted within the map, so that the circuit isn't dropped meanwhile
+        circuits.compute(host, (name, circuit) -> {
+            Circuit failed = circuit == null ? new Circuit() : circuit;
+            opened[0] = failed.onFailure(failureThreshold);
+            return failed;
+        });
+        if (opened[0]) {
+            log.warn("Circuit of host {} is open", host);
+        }
+    }
+
+    /**
+     * Gives trial request up without outcome, e.g. when browser has failed instead of the host.
+     */
+    public void onAbort(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit != null) {
+            circuit.onAbort();
+        }
+    }
+
+    public State getState(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null ? State.CLOSED : circuit.getState();
+    }
+
+    public void reset(String host) {
+        circuits.remove(host);
+    }
+
+    int getHostCount() {
+        return circuits.size();
+    }
+
+    /**
+     * Drops circuits of hosts not requested for the expiry time, at most once per the expiry time.
+     */
+    private void expire() {
+        long now = System.nanoTime();
+        long expired = expiredAt.get();
+        long expiry = this.expiry;
+        if (now - expired < expiry || !expiredAt.compareAndSet(expired, now)) {
+            return;
+        }
+        long openTime = this.openTime;
+        long trialTimeout = this.trialTimeout;
+        circuits.keySet().forEach(host -> circuits.computeIfPresent(host,
+                (name, circuit) -> circuit.isExpired(now, expiry, openTime, trialTimeout) ? null : circuit));
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static class Circuit {
+        private State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+        private long trialStartedAt;
+        private long touchedAt;
+
+        synchronized boolean allow(long openTime, long trialTimeout) {
+            long now = System.nanoTime();
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now - openedAt < openTime) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    trialStartedAt = now;
+                    touchedAt = now;
+                    return true;
+                default:
+                    if (now - trialStartedAt < trialTimeout) {
+                        //trial request is still in flight
+                        return false;
+                    }
+                    trialStartedAt = now;
+                    touchedAt = now;
+                    return true;
+            }
+        }
+
+        synchronized void onAbort() {
+            if (state == State.HALF_OPEN) {
+                state = State.OPEN;
+                touchedAt = System.nanoTime();
+            }
+        }
+
+        /**
+         * @return true if the circuit has been opened by this failure
+         */
+        synchronized boolean onFailure(int failureThreshold) {
+            failures++;
+            touchedAt = System.nanoTime();
+            if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return true if nothing has happened to the circuit for the expiry time after it might have let a request through
+         */
+        synchronized boolean isExpired(long now, long expiry, long openTime, long trialTimeout) {
+            long wait = state == State.OPEN ? openTime : state == State.HALF_OPEN ? trialTimeout : 0;
+            return now - touchedAt >= wait + expiry;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package el.selenium.drivers.page;
+
+import el.selenium.exceptions.RuntimeExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Politeness scheduler for navigation, limiting requests per host.
+ * Each host has token bucket rate limit and max count of concurrent sessions,
+ * host answering 429 or 503 or responding slowly is backed off exponentially.
+ * State of host which has been idle for the expiry time is dropped, so that crawl of many hosts doesn't accumulate it.
+ * Shared instance is used by all PageDrivers of the JVM, unless other is set.
+ */
+public class HostScheduler {
+
+    private final static Logger log = LoggerFactory.getLogger(HostScheduler.class);
+
+    private final static HostScheduler shared = new HostScheduler();
+
+    /**
+     * Delay reported for host which has no free session, till one of them is released
+     */
+    private final static long SESSION_POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final Map<String, Double> rates = new ConcurrentHashMap<>();
+    private final Map<String, Integer> bursts = new ConcurrentHashMap<>();
+    private final Map<String, Integer> maxSessions = new ConcurrentHashMap<>();
+
+    private volatile double defaultRate = Double.POSITIVE_INFINITY;
+    private volatile int defaultBurst = 1;
+    private volatile int defaultMaxSessions = Integer.MAX_VALUE;
+    private volatile long slowTimeToFirstByte = TimeUnit.SECONDS.toNanos(10);
+    private volatile long initialBackoff = TimeUnit.SECONDS.toNanos(1);
+    private volatile long maxBackoff = TimeUnit.MINUTES.toNanos(5);
+    private volatile long expiry = TimeUnit.MINUTES.toNanos(10);
+    private final AtomicLong expiredAt = new AtomicLong(System.nanoTime());
+
+    public static HostScheduler getShared() {
+        return shared;
+    }
+
+    /**
+     * @return host of the URL or null if the URL has no host
+     */
+    public static String getHost(String url) {
+        try {
+            return new URI(url).getHost();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sets requests per second and burst size of the hosts without own rate.
+     */
+    public void setDefaultRate(double permitsPerSecond, int burst) {
+        this.defaultRate = permitsPerSecond;
+        this.defaultBurst = burst;
+        hosts.forEach((name, host) -> host.setRate(getRate(name), getBurst(name)));
+    }
+
+    public void setRate(String host, double permitsPerSecond, int burst) {
+        rates.put(host, permitsPerSecond);
+        bursts.put(host, burst);
+        Host state = hosts.get(host);
+        if (state != null) {
+            state.setRate(permitsPerSecond, burst);
+        }
+    }
+
+    /**
+     * Sets max count of page drivers opening pages of the same host at the same time.
+     */
+    public void setDefaultMaxSessions(int maxSessions) {
+        this.defaultMaxSessions = maxSessions;
+        hosts.forEach((name, host) -> host.setMaxSessions(getMaxSessions(name)));
+    }
+
+    public void setMaxSessions(String host, int sessions) {
+        maxSessions.put(host, sessions);
+        Host state = hosts.get(host);
+        if (state != null) {
+            state.setMaxSessions(sessions);
+        }
+    }
+
+    /**
+     * Sets time to first byte, starting from which the host is considered overloaded and backed off.
+     */
+    public void setSlowTimeToFirstByte(long slowTimeToFirstByte, TimeUnit unit) {
+        this.slowTimeToFirstByte = unit.toNanos(slowTimeToFirstByte);
+    }
+
+    /**
+     * Sets backoff of overloaded host, doubled on each consecutive overloaded response.
+     */
+    public void setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+        this.initialBackoff = unit.toNanos(initialBackoff);
+        this.maxBackoff = unit.toNanos(maxBackoff);
+    }
+
+    /**
+     * Sets time after which state of idle host is dropped.
+     */
+    public void setExpiry(long expiry, TimeUnit unit) {
+        this.expiry = unit.toNanos(expiry);
+    }
+
+    /**
+     * Waits till the host has free session and token, and takes them.
+     * The session should be released by {@link #release(String, Integer, Double)}.
+     */
+    public void acquire(String host) {
+        long delay;
+        while ((delay = tryAcquire(host)) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeExecutionException("Interrupted while waiting for host " + host, e);
+            }
+        }
+    }
+
+    /**
+     * Takes session and token of the host without waiting, if the host has them.
+     * The session should be released by {@link #release(String, Integer, Double)}.
+     *
+     * @return zero if the session has been taken, otherwise nanos till it might be taken
+     */
+    public long tryAcquire(String host) {
+        expire();
+        long[] delay = new long[1];
+        //taken within the map, so that the host isn't dropped meanwhile
+        hosts.compute(host, (name, state) -> {
+            Host acquired = state == null ? new Host(getRate(name), getBurst(name), getMaxSessions(name)) : state;
+            delay[0] = acquired.tryAcquire();
+            return acquired;
+        });
+        return delay[0];
+    }
+
+    /**
+     * Releases session of the host, backing the host off if the response shows it's overloaded.
+     *
+     * @param statusCode      status code of the response or null if unknown
+     * @param timeToFirstByte time to first byte in milliseconds or null if unknown
+     */
+    public void release(String host, Integer statusCode, Double timeToFirstByte) {
+        boolean overloaded = statusCode != null && (statusCode == 429 || statusCode == 503)
+                || timeToFirstByte != null && TimeUnit.MILLISECONDS.toNanos(timeToFirstByte.longValue()) >= slowTimeToFirstByte;
+        long backoff = getState(host).release(overloaded, initialBackoff, maxBackoff);
+        if (backoff > 0) {
+            log.warn("Host {} is overloaded, status {}, time to first byte {} ms, backing off for {} ms",
+                    host, statusCode, timeToFirstByte, TimeUnit.NANOSECONDS.toMillis(backoff));
+        }
+    }
+
+    /**
+     * Returns nanos till the host might be acquired without waiting, zero if it might be acquired now.
+     * Lets callers work on other hosts meanwhile, instead of waiting on this one.
+     */
+    public long getDelay(String host) {
+        Host state = hosts.get(host);
+        return state == null ? 0 : state.getDelay();
+    }
+
+    int getHostCount() {
+        return hosts.size();
+    }
+
+    private Host getState(String host) {
+        return hosts.computeIfAbsent(host, name -> new Host(getRate(name), getBurst(name), getMaxSessions(name)));
+    }
+
+    /**
+     * Drops hosts which have been idle for the expiry time, at most once per the expiry time.
+     */
+    private void expire() {
+        long now = System.nanoTime();
+        long expired = expiredAt.get();
+        long expiry = this.expiry;
+        if (now - expired < expiry || !expiredAt.compareAndSet(expired, now)) {
+            return;
+        }
+        hosts.keySet().forEach(name -> hosts.computeIfPresent(name, (key, state) -> state.isExpired(now, expiry) ? null : state));
+    }
+
+    private double getRate(String host) {
+        return rates.getOrDefault(host, defaultRate);
+    }
+
+    private int getBurst(String host) {
+        return bursts.getOrDefault(host, defaultBurst);
+    }
+
+    private int getMaxSessions(String host) {
+        return maxSessions.getOrDefault(host, defaultMaxSessions);
+    }
+
+    private static class Host {
+        private double rate;
+        private int burst;
+        private int maxSessions;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+        private int sessions;
+        private long pausedUntil = refilledAt;
+        private long backoff;
+        private long usedAt = refilledAt;
+
+        private Host(double rate, int burst, int maxSessions) {
+            this.rate = rate;
+            this.burst = burst;
+            this.maxSessions = maxSessions;
+            this.tokens = burst;
+        }
+
+        synchronized void setRate(double rate, int burst) {
+            refill();
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = Math.min(tokens, burst);
+        }
+
+        synchronized void setMaxSessions(int maxSessions) {
+            this.maxSessions = maxSessions;
+        }
+
+        /**
+         * @return zero if the session has been taken, otherwise nanos till it might be taken
+         */
+        synchronized long tryAcquire() {
+            long delay = getDelay();
+            if (delay > 0) {
+                return delay;
+            }
+            if (!Double.isInfinite(rate)) {
+                tokens--;
+            }
+            sessions++;
+            usedAt = System.nanoTime();
+            return 0;
+        }
+
+        /**
+         * @return true if the host has no session, no backoff and full tokens since the expiry time,
+         * so that dropping it doesn't change anything
+         */
+        synchronized boolean isExpired(long now, long expiry) {
+            if (sessions > 0 || backoff > 0 && pausedUntil - now > 0 || now - usedAt < expiry) {
+                return false;
+            }
+            refill();
+            return Double.isInfinite(rate) || tokens >= burst;
+        }
+
+        /**
+         * @return backoff started by this release, zero if there's none
+         */
+        synchronized long release(boolean overloaded, long initialBackoff, long maxBackoff) {
+            sessions--;
+            long started = 0;
+            if (overloaded) {
+                backoff = backoff == 0 ? initialBackoff : Math.min(maxBackoff, backoff * 2);
+                pausedUntil = System.nanoTime() + backoff;
+                started = backoff;
+            } else {
+                backoff = 0;
+            }
+            usedAt = System.nanoTime();
+            return started;
+        }
+
+        synchronized long getDelay() {
+            long now = System.nanoTime();
+            if (pausedUntil - now > 0) {
+                return pausedUntil - now;
+            }
+            if (sessions >= maxSessions) {
+                return SESSION_POLL_INTERVAL;
+            }
+            refill();
+            if (Double.isInfinite(rate) || tokens >= 1) {
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            if (!Double.isInfinite(rate)) {
+                tokens = Math.min(burst, tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+            }
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package el.selenium.drivers.page;
+
+import el.selenium.model.ElementDescription;
+import el.selenium.model.ListElementDescription;
+import org.openqa.selenium.WebElement;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolved elements of single PageDriver by descriptor path, so the same containers aren't looked up again.
+ * The cache is invalidated as soon as the page might have changed: on navigation, frame switches,
+ * executed scripts, interactions made through the PageDriver, stale elements and, for drivers running scripts,
+ * DOM mutations observed on the page. Holds max size least recently used paths.
+ * Changes which don't mutate the DOM, e.g. checked state or value set through WebElement directly,
+ * aren't detected, so the cache is disabled by default.
+ */
+public class LocatorCache {
+
+    private final static int DEFAULT_MAX_SIZE = 512;
+
+    /**
+     * Guarded by this, in access order
+     */
+    private final Map<String, WebElement> elements = new LinkedHashMap<String, WebElement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WebElement> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+    private volatile boolean enabled = false;
+
+    /**
+     * Mutation stamp of the page the elements have been resolved on, guarded by this
+     */
+    private String stamp;
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            invalidate();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns element of the first length descriptions of the path.
+     *
+     * @return element or null if it hasn't been cached
+     */
+    WebElement get(List<ElementDescription> path, int length) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (this) {
+            return elements.get(getKey(path, length));
+        }
+    }
+
+    void put(List<ElementDescription> path, int length, WebElement webElement) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            elements.put(getKey(path, length), webElement);
+        }
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Keeps the cached elements only if they've been resolved on the page of the same mutation stamp,
+     * the stamp is remembered for the elements cached next.
+     *
+     * @param stamp mutation stamp of the page, null if mutations can't be observed
+     */
+    synchronized void validate(String stamp) {
+        if (stamp == null || !stamp.equals(this.stamp)) {
+            invalidate();
+        }
+        this.stamp = stamp;
+    }
+
+    public synchronized void invalidate() {
+        stamp = null;
+        if (!elements.isEmpty()) {
+            elements.clear();
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Returns count of paths resolved without any element lookup.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns count of paths, which have been looked up at least partially.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public synchronized int size() {
+        return elements.size();
+    }
+
+    private static String getKey(List<ElementDescription> path, int length) {
+        StringBuilder key = new StringBuilder();
+        for (ElementDescription elementDescription : path.subList(0, length)) {
+            key.append(elementDescription.getSelector());
+            if (elementDescription instanceof ListElementDescription) {
+                key.append('[').append(((ListElementDescription) elementDescription).getIndex()).append(']');
+            }
+            key.append('\n');
+        }
+        return key.toString();
+    }
+}
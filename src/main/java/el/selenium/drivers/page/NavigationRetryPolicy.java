@@ -0,0 +1,63 @@
+package el.selenium.drivers.page;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how many times PageDriver tries to open URL and how long it waits between attempts.
+ * Waiting time grows exponentially from initial backoff up to max backoff,
+ * randomized by jitter so page drivers failing together don't retry together.
+ */
+public class NavigationRetryPolicy {
+
+    private int maxAttempts = 3;
+    private long initialBackoff = TimeUnit.MILLISECONDS.toNanos(500);
+    private long maxBackoff = TimeUnit.SECONDS.toNanos(10);
+    private double multiplier = 2;
+    private double jitter = 0.5;
+
+    /**
+     * Sets count of attempts, including the first one.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Max attempts should be positive " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setInitialBackoff(long initialBackoff, TimeUnit unit) {
+        this.initialBackoff = unit.toNanos(initialBackoff);
+    }
+
+    public void setMaxBackoff(long maxBackoff, TimeUnit unit) {
+        this.maxBackoff = unit.toNanos(maxBackoff);
+    }
+
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Sets part of the backoff, which is randomized, between 0 and 1.
+     */
+    public void setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter should be between 0 and 1 " + jitter);
+        }
+        this.jitter = jitter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns nanos to wait after the given failed attempt, starting from 1.
+     */
+    public long getBackoff(int attempt) {
+        double backoff = Math.min(maxBackoff, initialBackoff * Math.pow(multiplier, attempt - 1));
+        double randomized = backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble());
+        return (long) randomized;
+    }
+}
@@ -1,12 +1,18 @@
 package el.selenium.drivers.page;
 
-import com.google.common.base.Predicate;
+import el.selenium.drivers.ExtendedHtmlUnitDriver;
+import el.selenium.exceptions.HostThrottledException;
+import el.selenium.exceptions.HostUnavailableException;
+import el.selenium.exceptions.RuntimeExecutionException;
 import el.selenium.factory.WebDriverFactory;
 import el.selenium.factory.WebDriverFactoryAdapter;
 import el.selenium.model.*;
+import el.selenium.model.storage.BulkStorage;
 import el.selenium.model.storage.LocalStorageImpl;
 import el.selenium.model.storage.SessionStorageImpl;
 import el.selenium.utils.ElementDescriptionResolver;
+import el.selenium.utils.ElementQueryCompiler;
+import el.selenium.utils.ElementWaiter;
 import el.selenium.utils.Forms;
 import el.selenium.utils.SeleniumFunctions;
 import el.selenium.utils.CommandExecutor;
@@ -20,18 +26,16 @@ import org.openqa.selenium.*;
 import org.openqa.selenium.remote.UnreachableBrowserException;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class PageDriver implements AutoCloseable {
@@ -42,22 +46,106 @@ public class PageDriver implements AutoCloseable {
 
     public final static long DEFAULT_TIMEOUT = 25;
 
+    /**
+     * Messages of failures caused by the remote site
+     */
+    private final static List<String> SITE_FAILURES = Arrays.asList(
+            "java.io.FileNotFoundException",
+            "UnknownHostException",
+            "ConnectException",
+            "SocketTimeoutException",
+            "FailingHttpStatusCodeException",
+            "net::ERR_",
+            "Reached error page");
+
     private WebDriver driver;
     private WebDriverFactory.Browser browser;
     private ProfileStrategy profileStrategy;
 
-    private SessionStorage sessionStorage;
-    private LocalStorage localStorage;
+    private SessionStorageImpl sessionStorage;
+    private LocalStorageImpl localStorage;
+
+    /**
+     * Reads Navigation Timing Level 2 entry with fractional milliseconds relative to navigation start,
+     * falling back to Level 1 epoch milliseconds. Followed by the navigation start and the response status,
+     * which only Level 2 reports.
+     */
+    private final static String NAVIGATION_TIMING_SCRIPT =
+            "var p = window.performance;" +
+            "if (!p) return null;" +
+            "var n = p.getEntriesByType ? p.getEntriesByType('navigation')[0] : null;" +
+            "var t = n || p.timing;" +
+            "return [t.domainLookupStart, t.domainLookupEnd, t.connectStart, t.connectEnd, t.responseStart," +
+            " t.domContentLoadedEventEnd, t.loadEventEnd, n ? 0 : t.navigationStart, n && n.responseStatus ? n.responseStatus : null];";
+
+    /**
+     * Column of element texts in the table returned by {@link #getTexts(ElementDescriptorTree)}
+     */
+    public final static String TEXT_COLUMN = "text";
+
+    /**
+     * Reads text, in case it's asked, and then attributes of the elements, returning column per value.
+     * Properties are preferred over attributes, true boolean is returned as "true" and false as null.
+     */
+    private final static String READ_ELEMENTS_SCRIPT =
+            "var elements = arguments[0], names = arguments[1], columns = [];" +
+            "if (arguments[2]) {" +
+            " columns.push(elements.map(function(e) {" +
+            "  var text = e.innerText !== undefined ? e.innerText : e.textContent;" +
+            "  return text == null ? '' : String(text).replace(/^\\s+|\\s+$/g, '');" +
+            " }));" +
+            "}" +
+            "names.forEach(function(name) {" +
+            " columns.push(elements.map(function(e) {" +
+            "  var value = e[name];" +
+            "  if (typeof value === 'boolean') return value ? 'true' : null;" +
+            "  if (value === undefined || value === null || typeof value === 'object' || typeof value === 'function') value = e.getAttribute(name);" +
+            "  return value == null ? null : String(value);" +
+            " }));" +
+            "});" +
+            "return columns;";
+
+    /**
+     * Returns stamp, which changes on every DOM mutation of the current document and differs between documents.
+     * Installs mutation observer on the first call for the document, returns null if mutations can't be observed.
+     */
+    private final static String MUTATION_STAMP_SCRIPT =
+            "var d = document;" +
+            "if (!d.__elSeleniumMutations) {" +
+            " if (typeof MutationObserver === 'undefined') return null;" +
+            " var m = d.__elSeleniumMutations = {id: String(Math.random()).substring(2), count: 0};" +
+            " new MutationObserver(function() { m.count++; })" +
+            "  .observe(d, {childList: true, subtree: true, attributes: true, characterData: true});" +
+            "}" +
+            "return d.__elSeleniumMutations.id + ':' + d.__elSeleniumMutations.count;";
+
+    private final LocatorCache locatorCache = new LocatorCache();
+
+    private volatile boolean queryCompilation = true;
+
+    private volatile NavigationRetryPolicy navigationRetryPolicy = new NavigationRetryPolicy();
+    private volatile HostCircuitBreaker hostCircuitBreaker = HostCircuitBreaker.getShared();
+    private volatile HostScheduler hostScheduler = HostScheduler.getShared();
+    private volatile SessionTemplate sessionTemplate;
+    private boolean applyingSessionTemplate;
+    private volatile ArtifactWriter artifactWriter = ArtifactWriter.getShared();
 
     public PageDriver(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy) {
         this(UUID.randomUUID().toString(), browser, profileStrategy);
     }
 
     public PageDriver(String id, WebDriverFactory.Browser browser, ProfileStrategy profileStrategy) {
+        this(id, browser, profileStrategy, WebDriverFactoryAdapter.getWebDriver(browser, profileStrategy));
+    }
+
+    /**
+     * Wraps already launched driver, the browser and the strategy are used when the browser is restarted.
+     */
+    public PageDriver(String id, WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, WebDriver driver) {
         this.id = id;
         this.browser = browser;
         this.profileStrategy = profileStrategy;
-        this.driver = WebDriverFactoryAdapter.getWebDriver(browser, profileStrategy);
+        this.driver = driver;
     }
 
     public String getId() {
@@ -68,52 +156,269 @@ public class PageDriver implements AutoCloseable {
         return driver;
     }
 
+    public WebDriverFactory.Browser getBrowser() {
+        return browser;
+    }
+
+    public ProfileStrategy getProfileStrategy() {
+        return profileStrategy;
+    }
+
     /**
      * closes current browser, and opens new one instead of it,
      * with the same strategy.
      */
     public void restartBrowser() {
+        locatorCache.invalidate();
         try {
             close();
         } catch (Throwable e1) {
             log.error(e1.getMessage(), e1);
         } finally {
             this.driver = WebDriverFactoryAdapter.getWebDriver(browser, profileStrategy);
+            this.localStorage = null;
+            this.sessionStorage = null;
             log.debug("Initializing new web driver "  + id);
         }
+        applySessionTemplate();
+    }
+
+    /**
+     * Sets session template, which is applied to the page driver now and after each browser restart.
+     * Null template stops applying it, keeping the current session.
+     */
+    public void setSessionTemplate(SessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+        applySessionTemplate();
+    }
+
+    /**
+     * Applies the session template if any, so that the page driver starts with session of the template.
+     */
+    public void applySessionTemplate() {
+        SessionTemplate template = sessionTemplate;
+        //opening origin of the template might restart the browser, which applies the template again
+        if (template != null && !applyingSessionTemplate) {
+            applyingSessionTemplate = true;
+            try {
+                template.apply(this);
+            } catch (RuntimeException e) {
+                log.error("Failed to apply session template to " + id, e);
+            } finally {
+                applyingSessionTemplate = false;
+            }
+        }
+    }
+
+    public void setNavigationRetryPolicy(NavigationRetryPolicy navigationRetryPolicy) {
+        this.navigationRetryPolicy = navigationRetryPolicy;
+    }
+
+    public void setHostCircuitBreaker(HostCircuitBreaker hostCircuitBreaker) {
+        this.hostCircuitBreaker = hostCircuitBreaker;
     }
 
+    public void setHostScheduler(HostScheduler hostScheduler) {
+        this.hostScheduler = hostScheduler;
+    }
+
+    /**
+     * Opens the URL, retrying with backoff as described by navigation retry policy.
+     * Browser is restarted only for browser failures, failures of the remote site are counted
+     * by host circuit breaker, requests to host with open circuit fail fast.
+     * Each attempt takes session of the host scheduler without waiting for it,
+     * so that the page driver isn't held while the host is throttled.
+     *
+     * @throws HostUnavailableException if circuit of the host is open
+     * @throws HostThrottledException if the host scheduler doesn't let the page be opened now
+     * @throws RuntimeExecutionException if all the attempts have failed
+     */
     public ProcessedRequest goToURL(String url) {
-        long startTime = System.currentTimeMillis();
-        ProcessedRequest processedRequest = new ProcessedRequest(url);
-        try {
-            driver.get(url);
-        } catch (UnreachableBrowserException e) {
-            log.error(e.getMessage(), e);
-            restartBrowser();
-            goToURL(url);
-        } catch (WebDriverException e) {
-            if (e.getMessage().contains("java.io.FileNotFoundException")) {
-                log.error(e.getMessage(), e);
-                restartBrowser();
-                goToURL(url);
-            } else if (e.getMessage().contains("SyntaxError: An invalid or illegal string was specified.")) {
+        long startTime = System.nanoTime();
+        ProcessedRequest processedRequest = new ProcessedRequest(url, LocalDateTime.now());
+        String host = HostScheduler.getHost(url);
+        NavigationRetryPolicy retryPolicy = navigationRetryPolicy;
+        for (int attempt = 1; ; attempt++) {
+            if (host != null && !hostCircuitBreaker.allow(host)) {
+                throw new HostUnavailableException(host);
+            }
+            WebDriverException e;
+            try {
+                e = navigate(url, host, processedRequest);
+            } catch (RuntimeException | Error failure) {
+                //the attempt has been allowed, so the circuit should not wait for its outcome
+                if (host != null) {
+                    hostCircuitBreaker.onAbort(host);
+                }
+                throw failure;
+            }
+            if (e == null) {
+                if (host != null) {
+                    hostCircuitBreaker.onSuccess(host);
+                }
+                break;
+            }
+            if (e.getMessage() != null && e.getMessage().contains("SyntaxError: An invalid or illegal string was specified.")) {
                 log.error("SyntaxError: An Invalid initial url is: " + url);
                 log.error(e.getMessage(), e);
-            } else {
-                log.error(e.getMessage(), e);
+                if (host != null) {
+                    hostCircuitBreaker.onAbort(host);
+                }
+                break;
+            }
+
+            boolean siteFailure = isSiteFailure(e);
+            log.error("Attempt {} of {} to open {} has failed: {}", attempt, retryPolicy.getMaxAttempts(), url, e.getMessage());
+            if (host != null) {
+                if (siteFailure) {
+                    hostCircuitBreaker.onFailure(host);
+                } else {
+                    hostCircuitBreaker.onAbort(host);
+                }
+            }
+            if (!siteFailure) {
                 restartBrowser();
-                goToURL(url);
             }
+            if (attempt >= retryPolicy.getMaxAttempts()) {
+                throw new RuntimeExecutionException("Failed to open " + url + " in " + attempt + " attempts", e);
+            }
+            backoff(retryPolicy.getBackoff(attempt));
         }
-        long difference = System.currentTimeMillis() - startTime;
-        long differenceInSeconds = TimeUnit.MILLISECONDS.convert(difference, TimeUnit.SECONDS);
-        log.debug("Go to URL: {} took {} seconds", url, differenceInSeconds);
-        processedRequest.setLatencyBySeconds(differenceInSeconds);
+        long latency = System.nanoTime() - startTime;
+        log.debug("Go to URL: {} took {} ms", url, TimeUnit.NANOSECONDS.toMillis(latency));
+        processedRequest.setLatencyNanos(latency);
+        processedRequest.setEndTime(processedRequest.getStartTime().plusNanos(latency));
         processedRequest.setFinalURL(driver.getCurrentUrl());
         return processedRequest;
     }
 
+    /**
+     * Opens the URL once within session of the host scheduler,
+     * status and timing of the response are reported back to the scheduler.
+     *
+     * @return failure or null if the page has been opened
+     */
+    private WebDriverException navigate(String url, String host, ProcessedRequest processedRequest) {
+        if (host != null) {
+            long delay = hostScheduler.tryAcquire(host);
+            if (delay > 0) {
+                throw new HostThrottledException(host, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+        locatorCache.invalidate();
+        long startTime = System.nanoTime();
+        Double timeToFirstByte = null;
+        try {
+            driver.get(url);
+            List<?> entry = getNavigationEntry();
+            NavigationTiming navigationTiming = getNavigationTiming(entry);
+            processedRequest.setNavigationTiming(navigationTiming);
+            processedRequest.setStatusCode(getStatusCode(entry));
+            timeToFirstByte = navigationTiming == null ? null : navigationTiming.getTimeToFirstByte();
+            return null;
+        } catch (WebDriverException e) {
+            if (e instanceof TimeoutException) {
+                timeToFirstByte = (System.nanoTime() - startTime) / 1_000_000.0;
+            }
+            return e;
+        } finally {
+            if (host != null) {
+                hostScheduler.release(host, processedRequest.getStatusCode(), timeToFirstByte);
+            }
+        }
+    }
+
+    /**
+     * Returns timing of the last navigation, either measured by HtmlUnit web connection
+     * or read from Navigation Timing of the browser.
+     *
+     * @return navigation timing or null if the browser doesn't report it
+     */
+    public NavigationTiming getNavigationTiming() {
+        return getNavigationTiming(getNavigationEntry());
+    }
+
+    private NavigationTiming getNavigationTiming(List<?> entry) {
+        if (driver instanceof ExtendedHtmlUnitDriver) {
+            return ((ExtendedHtmlUnitDriver) driver).getNavigationTiming();
+        }
+        if (entry == null) {
+            return null;
+        }
+        return new NavigationTiming(
+                getDuration(entry.get(0), entry.get(1)),
+                getDuration(entry.get(2), entry.get(3)),
+                getDuration(entry.get(7), entry.get(4)),
+                getDuration(entry.get(7), entry.get(5)),
+                getDuration(entry.get(7), entry.get(6)));
+    }
+
+    private Integer getStatusCode(List<?> entry) {
+        if (driver instanceof ExtendedHtmlUnitDriver) {
+            return ((ExtendedHtmlUnitDriver) driver).getStatusCode();
+        }
+        if (entry == null || !(entry.get(8) instanceof Number)) {
+            return null;
+        }
+        return ((Number) entry.get(8)).intValue();
+    }
+
+    /**
+     * Reads navigation entry of the browser, HtmlUnit measures navigation on its own.
+     *
+     * @return navigation entry or null if the browser doesn't report it
+     */
+    private List<?> getNavigationEntry() {
+        if (driver instanceof ExtendedHtmlUnitDriver || !isJavascriptEnabled()) {
+            return null;
+        }
+        try {
+            Object result = ((JavascriptExecutor) driver).executeScript(NAVIGATION_TIMING_SCRIPT);
+            if (!(result instanceof List) || ((List<?>) result).size() != 9) {
+                return null;
+            }
+            return (List<?>) result;
+        } catch (WebDriverException e) {
+            log.debug("Navigation timing isn't available: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return milliseconds between the points or null if any of them hasn't happened
+     */
+    private static Double getDuration(Object start, Object end) {
+        if (!(start instanceof Number) || !(end instanceof Number)) {
+            return null;
+        }
+        double duration = ((Number) end).doubleValue() - ((Number) start).doubleValue();
+        return ((Number) end).doubleValue() <= 0 || duration < 0 ? null : duration;
+    }
+
+    /**
+     * Tells whether the failure is caused by the remote site rather than by the browser,
+     * restarting the browser doesn't help such failures.
+     */
+    private boolean isSiteFailure(WebDriverException e) {
+        if (e instanceof UnreachableBrowserException) {
+            return false;
+        }
+        if (e instanceof TimeoutException) {
+            return true;
+        }
+        String message = e.getMessage();
+        return message != null && SITE_FAILURES.stream().anyMatch(message::contains);
+    }
+
+    private static void backoff(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeExecutionException("Interrupted while waiting to retry navigation", e);
+        }
+    }
+
     public ProcessedRequest goToURL(String url, BiFunction<PageDriver, ProcessedRequest, Boolean>... postFunction) {
         ProcessedRequest processedRequest = goToURL(url);
         Arrays.stream(postFunction)
@@ -128,8 +433,9 @@ public class PageDriver implements AutoCloseable {
 
     public WebElementProxy getWebElement(ElementDescriptorTree elementDescriptorTree) {
         try {
-            return ElementDescriptionResolver.getWebElement(driver, elementDescriptorTree);
+            return resolveWebElement(elementDescriptorTree);
         } catch (StaleElementReferenceException e) {
+            locatorCache.invalidate();
             return getWebElement(elementDescriptorTree);
         } catch (InvalidSelectorException e) {
             //chrome issue
@@ -141,18 +447,224 @@ public class PageDriver implements AutoCloseable {
         }
     }
 
+    /**
+     * Resolves the tree starting from the longest path cached by locator cache, caching each resolved step.
+     */
+    private WebElementProxy resolveWebElement(ElementDescriptorTree elementDescriptorTree) {
+        if (locatorCache.isEnabled()) {
+            locatorCache.validate(getMutationStamp());
+        }
+        List<ElementDescription> path = elementDescriptorTree.getElementDescriptions();
+        WebElementProxy webElement = null;
+        int resolved = 0;
+        for (int length = path.size(); length > 0; length--) {
+            WebElement cached = locatorCache.get(path, length);
+            if (cached != null) {
+                webElement = new WebElementProxy(cached, new ElementDescriptorTree(getPrefix(path, length)));
+                resolved = length;
+                break;
+            }
+        }
+        if (resolved == path.size()) {
+            locatorCache.recordHit();
+            return webElement;
+        }
+        locatorCache.recordMiss();
+        WebElement compiled = findCompiled(webElement, path.subList(resolved, path.size()));
+        if (compiled != null) {
+            locatorCache.put(path, path.size(), compiled);
+            return new WebElementProxy(compiled, new ElementDescriptorTree(elementDescriptorTree));
+        }
+        for (int length = resolved + 1; length <= path.size(); length++) {
+            webElement = ElementDescriptionResolver.getWebElement(driver, webElement, path.get(length - 1));
+            locatorCache.put(path, length, webElement.getWebElementHolder());
+        }
+        return webElement;
+    }
+
+    /**
+     * Returns mutation stamp of the current document, pages of drivers not running scripts
+     * change only by navigation and interactions, which invalidate locator cache anyway.
+     *
+     * @return stamp or null if DOM mutations of the page can't be observed
+     */
+    private String getMutationStamp() {
+        if (!isJavascriptEnabled()) {
+            return "";
+        }
+        try {
+            Object stamp = ((JavascriptExecutor) driver).executeScript(MUTATION_STAMP_SCRIPT);
+            return stamp == null ? null : stamp.toString();
+        } catch (WebDriverException e) {
+            log.debug("Failed to observe DOM mutations: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the descriptions in single script call starting from the parent element or from the document.
+     *
+     * @return element or null if the descriptions can't be compiled or the element isn't found,
+     * so the caller should fall back to resolving step by step, which waits for the elements and reports the failed step
+     */
+    private WebElement findCompiled(WebElementProxy parentElement, List<ElementDescription> elementDescriptions) {
+        List<Map<String, Object>> steps = compileQuery(elementDescriptions);
+        if (steps == null) {
+            return null;
+        }
+        try {
+            return ElementQueryCompiler.findElement((JavascriptExecutor) driver,
+                    parentElement == null ? null : parentElement.getWebElementHolder(), steps);
+        } catch (StaleElementReferenceException e) {
+            throw e;
+        } catch (WebDriverException e) {
+            log.debug("Failed to resolve element by compiled query, resolving step by step: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private List<Map<String, Object>> compileQuery(List<ElementDescription> elementDescriptions) {
+        return queryCompilation && isJavascriptEnabled() ? ElementQueryCompiler.compile(elementDescriptions) : null;
+    }
+
+    /**
+     * Enables resolving descriptor trees in single script call, enabled by default.
+     * Has no effect for drivers without JavaScript, which always resolve step by step.
+     */
+    public void setQueryCompilation(boolean queryCompilation) {
+        this.queryCompilation = queryCompilation;
+    }
+
+    private static ElementDescriptorTree getPrefix(List<ElementDescription> path, int length) {
+        ElementDescriptorTree prefix = new ElementDescriptorTree(path.get(0));
+        path.subList(1, length).forEach(elementDescription -> prefix.getElementDescriptions().add(elementDescription));
+        return prefix;
+    }
+
+    /**
+     * Resolves stale element again, bypassing locator cache, which is holding the stale one.
+     */
+    private WebElement relocate(ElementDescriptorTree elementDescriptorTree) {
+        locatorCache.invalidate();
+        return getWebElement(elementDescriptorTree).getWebElementHolder();
+    }
+
+    public LocatorCache getLocatorCache() {
+        return locatorCache;
+    }
+
     public List<WebElementProxy> getWebElements(By selector) {
-        return ElementDescriptionResolver.getWebElements(driver, new ElementDescriptorTree(selector));
+        return getWebElements(new ElementDescriptorTree(selector));
     }
 
     public List<WebElementProxy> getWebElements(ElementDescriptorTree elementDescriptorTree) {
+        List<ElementDescription> path = elementDescriptorTree.getElementDescriptions();
+        ElementDescription last = path.get(path.size() - 1);
+        List<Map<String, Object>> steps = last instanceof ListElementDescription ? null : compileQuery(path);
+        if (steps != null) {
+            try {
+                List<WebElement> elements = ElementQueryCompiler.findElements((JavascriptExecutor) driver, null, steps);
+                if (elements != null) {
+                    ElementDescriptorTree parent = path.size() > 1 ? getPrefix(path, path.size() - 1) : null;
+                    return IntStream.range(0, elements.size())
+                            .mapToObj(i -> {
+                                ListElementDescription listElementDescription = new ListElementDescription(last.getSelector(), i);
+                                return new WebElementProxy(elements.get(i), parent != null ?
+                                        new ElementDescriptorTree(parent, listElementDescription) :
+                                        new ElementDescriptorTree(listElementDescription));
+                            }).collect(Collectors.toList());
+                }
+            } catch (WebDriverException e) {
+                log.debug("Failed to resolve elements by compiled query, resolving step by step: {}", e.getMessage());
+            }
+        }
         return ElementDescriptionResolver.getWebElements(driver, elementDescriptorTree);
     }
 
+    /**
+     * Returns visible texts of all the elements matching the tree, read in single script call.
+     */
+    public List<String> getTexts(ElementDescriptorTree elementDescriptorTree) {
+        return readElements(getWebElements(elementDescriptorTree), true).getColumn(TEXT_COLUMN);
+    }
+
+    /**
+     * Returns attributes of all the elements matching the tree, read in single script call.
+     * Like {@link WebElement#getAttribute(String)}, properties are preferred over attributes of the same name.
+     *
+     * @return table with column per attribute name
+     */
+    public ElementTable getAttributes(ElementDescriptorTree elementDescriptorTree, String... names) {
+        return readElements(getWebElements(elementDescriptorTree), false, names);
+    }
+
+    /**
+     * Reads texts and attributes of the elements in single script call,
+     * falls back to reading element by element for drivers without JavaScript.
+     */
+    private ElementTable readElements(List<WebElementProxy> webElements, boolean text, String... names) {
+        ElementTable elementTable = new ElementTable(webElements.size());
+        if (webElements.isEmpty()) {
+            if (text) {
+                elementTable.setColumn(TEXT_COLUMN, new ArrayList<>());
+            }
+            Arrays.stream(names).forEach(name -> elementTable.setColumn(name, new ArrayList<>()));
+            return elementTable;
+        }
+
+        if (isJavascriptEnabled()) {
+            List<WebElement> elements = webElements.stream()
+                    .map(WebElementProxy::getWebElementHolder)
+                    .collect(Collectors.toList());
+            try {
+                Object result = ((JavascriptExecutor) driver).executeScript(READ_ELEMENTS_SCRIPT, elements, Arrays.asList(names), text);
+                if (result instanceof List && ((List<?>) result).size() == names.length + (text ? 1 : 0)) {
+                    List<?> columns = (List<?>) result;
+                    int column = 0;
+                    if (text) {
+                        elementTable.setColumn(TEXT_COLUMN, toStrings(columns.get(column++)));
+                    }
+                    for (String name : names) {
+                        elementTable.setColumn(name, toStrings(columns.get(column++)));
+                    }
+                    return elementTable;
+                }
+            } catch (WebDriverException e) {
+                log.debug("Failed to read elements by script, reading one by one: {}", e.getMessage());
+            }
+        }
+
+        if (text) {
+            elementTable.setColumn(TEXT_COLUMN, webElements.stream()
+                    .map(webElement -> getElement(webElement, WebElement::getText))
+                    .collect(Collectors.toList()));
+        }
+        for (String name : names) {
+            elementTable.setColumn(name, webElements.stream()
+                    .map(webElement -> getElement(webElement, element -> element.getAttribute(name)))
+                    .collect(Collectors.toList()));
+        }
+        return elementTable;
+    }
+
+    private static List<String> toStrings(Object values) {
+        return ((List<?>) values).stream()
+                .map(value -> value == null ? null : String.valueOf(value))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return whether the page driver runs scripts, so that work might be batched into single script call
+     */
+    public boolean isJavascriptEnabled() {
+        return profileStrategy != ProfileStrategy.NON_JS && driver instanceof JavascriptExecutor;
+    }
+
     public <R> R getElement(ElementDescriptorTree elementDescriptorTree, Function<WebElement, R> function) {
         try {
             return getElement(getWebElement(elementDescriptorTree), function);
         } catch (StaleElementReferenceException e) {
+            locatorCache.invalidate();
             return getElement(getWebElement(elementDescriptorTree), function);
         }
     }
@@ -161,7 +673,7 @@ public class PageDriver implements AutoCloseable {
         try {
             return function.apply(webElementProxy);
         } catch (StaleElementReferenceException e) {
-            webElementProxy.setWebElementHolder(getWebElement(webElementProxy).getWebElementHolder());
+            webElementProxy.setWebElementHolder(relocate(webElementProxy));
             return getElement(webElementProxy, function);
         }
     }
@@ -170,22 +682,26 @@ public class PageDriver implements AutoCloseable {
         try {
             return ElementDescriptionResolver.getWebElement(driver, parentElement, new ElementDescription(selector));
         } catch (StaleElementReferenceException e) {
-            parentElement.setWebElementHolder(getWebElement(parentElement).getWebElementHolder());
+            parentElement.setWebElementHolder(relocate(parentElement));
             return getWebElement(parentElement, selector);
         }
     }
 
+    /**
+     * Waits till the whole tree matches and its final element is visible.
+     */
     public WebElementProxy waitWebElement(ElementDescriptorTree elementDescriptorTree, long timeout) {
-        waitElement(elementDescriptorTree.getTopElementDescription().getSelector(), timeout);
-        return getWebElement(elementDescriptorTree);
+        WebElement webElement = waitVisible(null, elementDescriptorTree.getElementDescriptions(), true, timeout);
+        return new WebElementProxy(webElement, new ElementDescriptorTree(elementDescriptorTree));
     }
 
     public WebElementProxy waitWebElement(WebElementProxy parentElement, By selector, long timeout) {
         try {
-            (new WebDriverWait(driver, timeout))
-                    .until((Predicate<WebDriver>) driver1 -> !parentElement.findElements(selector).isEmpty());
-            return ElementDescriptionResolver.getWebElement(driver, parentElement, new ElementDescription(selector));
+            WebElement webElement = ElementWaiter.waitElement(driver, parentElement.getWebElementHolder(),
+                    Collections.singletonList(new ElementDescription(selector)), false, timeout, isJavascriptEnabled());
+            return new WebElementProxy(webElement, new ElementDescriptorTree(parentElement, selector));
         } catch (StaleElementReferenceException e) {
+            locatorCache.invalidate();
             parentElement.setWebElementHolder(waitWebElement(parentElement, timeout).getWebElementHolder());
             return waitWebElement(parentElement, selector, timeout);
         }
@@ -195,7 +711,7 @@ public class PageDriver implements AutoCloseable {
         try {
             return ElementDescriptionResolver.getWebElements(driver, parentElement, new ElementDescription(selector));
         } catch (StaleElementReferenceException e) {
-            parentElement.setWebElementHolder(getWebElement(parentElement).getWebElementHolder());
+            parentElement.setWebElementHolder(relocate(parentElement));
             return getWebElements(parentElement, selector);
         }
     }
@@ -205,6 +721,7 @@ public class PageDriver implements AutoCloseable {
             WebElementProxy webElement = getWebElement(elementDescriptorTree);
             return getAttribute(webElement, function, attributeName);
         } catch (StaleElementReferenceException e) {
+            locatorCache.invalidate();
             return getAttribute(elementDescriptorTree, function, attributeName);
         }
     }
@@ -222,7 +739,7 @@ public class PageDriver implements AutoCloseable {
         try {
             return function.apply(webElementProxy);
         } catch (StaleElementReferenceException e) {
-            webElementProxy.setWebElementHolder(getWebElement(webElementProxy).getWebElementHolder());
+            webElementProxy.setWebElementHolder(relocate(webElementProxy));
             return getAttribute(webElementProxy, function);
         }
     }
@@ -231,7 +748,7 @@ public class PageDriver implements AutoCloseable {
         try {
             return function.apply(webElementProxy, attributeName);
         } catch (StaleElementReferenceException e) {
-            webElementProxy.setWebElementHolder(getWebElement(webElementProxy).getWebElementHolder());
+            webElementProxy.setWebElementHolder(relocate(webElementProxy));
             return getAttribute(webElementProxy, function, attributeName);
         }
     }
@@ -245,7 +762,7 @@ public class PageDriver implements AutoCloseable {
             WebElementProxy webElement = ElementDescriptionResolver.getWebElement(driver, parentElement, elementDescriptorTree);
             return function.apply(webElement, attributeName);
         } catch (StaleElementReferenceException e) {
-            parentElement.setWebElementHolder(getWebElement(parentElement).getWebElementHolder());
+            parentElement.setWebElementHolder(relocate(parentElement));
             return getAttribute(parentElement, elementDescriptorTree, function, attributeName);
         }
     }
@@ -259,7 +776,7 @@ public class PageDriver implements AutoCloseable {
             WebElementProxy webElement = ElementDescriptionResolver.getWebElement(driver, parentElement, elementDescriptorTree);
             return function.apply(webElement);
         } catch (StaleElementReferenceException e) {
-            parentElement.setWebElementHolder(getWebElement(parentElement).getWebElementHolder());
+            parentElement.setWebElementHolder(relocate(parentElement));
             return getAttribute(parentElement, elementDescriptorTree, function);
         }
     }
@@ -276,7 +793,11 @@ public class PageDriver implements AutoCloseable {
             cleanWebElement = ((WebElementProxy) webElement).getWebElement();
         }
         Actions hoverOverRegistrar = builder.moveToElement(cleanWebElement);
-        hoverOverRegistrar.perform();
+        try {
+            hoverOverRegistrar.perform();
+        } finally {
+            locatorCache.invalidate();
+        }
     }
 
     public WebDriver switchToFrame(String iframeID) {
@@ -284,6 +805,7 @@ public class PageDriver implements AutoCloseable {
     }
 
     public WebDriver switchToFrame(String iframeID, long timeOut) {
+        locatorCache.invalidate();
         return waitCondition(ExpectedConditions.frameToBeAvailableAndSwitchToIt(iframeID), timeOut);
     }
 
@@ -291,17 +813,19 @@ public class PageDriver implements AutoCloseable {
         if(switchDefaultBefore) {
             switchToDefaultContent();
         }
+        locatorCache.invalidate();
         return waitCondition(ExpectedConditions.frameToBeAvailableAndSwitchToIt(iframeID), timeOut);
     }
 
     public WebDriver switchToDefaultContent() {
+        locatorCache.invalidate();
         return driver.switchTo().defaultContent();
     }
 
     public WebElementProxy getElementFromIframe(String iframeID, Element element) {
         switchToFrame(iframeID);
         WebElement foundElement = driver.findElement(element.getBySelector());
-        driver.switchTo().defaultContent();
+        switchToDefaultContent();
         return new WebElementProxy(foundElement, element.getBySelector());
     }
 
@@ -327,6 +851,51 @@ public class PageDriver implements AutoCloseable {
         }
     }
 
+    /**
+     * Checks presence and visibility of all the selectors in single call, without waiting.
+     */
+    public Map<By, ElementState> probe(By... selectors) {
+        List<ElementState> states = ElementWaiter.probe(driver, Arrays.stream(selectors)
+                .map(selector -> Collections.singletonList(new ElementDescription(selector)))
+                .collect(Collectors.toList()), isJavascriptEnabled());
+        Map<By, ElementState> probe = new LinkedHashMap<>();
+        for (int i = 0; i < selectors.length; i++) {
+            probe.put(selectors[i], states.get(i));
+        }
+        return probe;
+    }
+
+    /**
+     * Waits till any of the selectors is visible, checking all of them at once.
+     *
+     * @return the element of the first visible selector in the given order
+     */
+    public WebElementProxy waitAny(long timeout, By... selectors) {
+        return waitAny(timeout, Arrays.stream(selectors).map(ElementDescriptorTree::new).toArray(ElementDescriptorTree[]::new));
+    }
+
+    public WebElementProxy waitAny(ElementDescriptorTree... elementDescriptorTrees) {
+        return waitAny(DEFAULT_TIMEOUT, elementDescriptorTrees);
+    }
+
+    /**
+     * Waits till final element of any of the trees is visible, checking all of them at once,
+     * so detecting page variant takes single wait instead of timeout per variant.
+     *
+     * @return the element of the first visible tree in the given order
+     */
+    public WebElementProxy waitAny(long timeout, ElementDescriptorTree... elementDescriptorTrees) {
+        List<WebElement> webElements = waitAnyVisible(Arrays.stream(elementDescriptorTrees)
+                .map(ElementDescriptorTree::getElementDescriptions)
+                .collect(Collectors.toList()), timeout);
+        for (int i = 0; i < elementDescriptorTrees.length; i++) {
+            if (webElements.get(i) != null) {
+                return new WebElementProxy(webElements.get(i), new ElementDescriptorTree(elementDescriptorTrees[i]));
+            }
+        }
+        throw new TimeoutException("None of the elements is visible");
+    }
+
     public boolean isElementDisplayed(WebElementProxy parentElement, By by) {
         try {
             WebElement webElement = parentElement.findElement(by);
@@ -346,16 +915,19 @@ public class PageDriver implements AutoCloseable {
     }
 
     public void makeVisible(String cssSelector) {
+        locatorCache.invalidate();
         JavascriptExecutor executor = (JavascriptExecutor) driver;
         executor.executeScript("document.querySelector('" + cssSelector + "').style.display='block';");
         executor.executeScript("document.querySelector('" + cssSelector + "').style.visibility='visible';");
     }
 
     public void executeScript(String js) {
+        locatorCache.invalidate();
         ((JavascriptExecutor) driver).executeScript(js);
     }
 
     public void executeScript(WebElement webElement, String js) {
+        locatorCache.invalidate();
         if (webElement instanceof WebElementProxy) {
             ((JavascriptExecutor) driver).executeScript(js, (WebElement) ((WebElementProxy) webElement).getWebElementHolder());
         } else {
@@ -364,27 +936,55 @@ public class PageDriver implements AutoCloseable {
     }
 
     public WebElementProxy waitElement(By bySelector) {
-        WebElement webElement = this.waitCondition(ExpectedConditions.visibilityOfElementLocated(bySelector));
-        return new WebElementProxy(webElement, bySelector);
+        return waitElement(bySelector, DEFAULT_TIMEOUT);
     }
 
     public WebElementProxy waitElement(By bySelector, long timeout) {
-        WebElement webElement = this.waitCondition(ExpectedConditions.visibilityOfElementLocated(bySelector), timeout);
+        WebElement webElement = waitVisible(null, Collections.singletonList(new ElementDescription(bySelector)), true, timeout);
         return new WebElementProxy(webElement, bySelector);
     }
 
     public List<WebElementProxy> waitElements(By bySelector) {
-        this.waitCondition(ExpectedConditions.visibilityOfElementLocated(bySelector));
+        waitElement(bySelector);
         return this.getWebElements(new ElementDescriptorTree(bySelector));
     }
 
+    /**
+     * Waits for the elements by mutation observer, polling only if the driver has no JavaScript.
+     */
+    private WebElement waitVisible(WebElement context, List<ElementDescription> path, boolean visible, long timeout) {
+        try {
+            return ElementWaiter.waitElement(driver, context, path, visible, timeout, isJavascriptEnabled());
+        } catch (InvalidSelectorException e) {
+            //chrome issue
+            if (e.getMessage().contains("TypeError: Failed to execute 'createNSResolver' on 'Document': parameter 1 is not of type 'Node'")) {
+                return waitVisible(context, path, visible, timeout);
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private List<WebElement> waitAnyVisible(List<List<ElementDescription>> paths, long timeout) {
+        try {
+            return ElementWaiter.waitAny(driver, null, paths, true, timeout, isJavascriptEnabled());
+        } catch (InvalidSelectorException e) {
+            //chrome issue
+            if (e.getMessage().contains("TypeError: Failed to execute 'createNSResolver' on 'Document': parameter 1 is not of type 'Node'")) {
+                return waitAnyVisible(paths, timeout);
+            } else {
+                throw e;
+            }
+        }
+    }
+
     public String waitText(By bySelector) {
         return waitText(bySelector, DEFAULT_TIMEOUT);
     }
 
     public String waitText(By selector, long timeout) {
         try {
-            return this.waitCondition(ExpectedConditions.visibilityOfElementLocated(selector), timeout).getText();
+            return waitElement(selector, timeout).getText();
         } catch (StaleElementReferenceException e) {
             log.warn("Attempting to recover from StaleElementReferenceException ..." + selector);
             return waitText(selector, timeout);
@@ -404,7 +1004,7 @@ public class PageDriver implements AutoCloseable {
 
     public <T> T waitCondition(ExpectedCondition<T> expectedCondition, long timeout) {
         try {
-            return (new WebDriverWait(driver, timeout)).until(expectedCondition);
+            return ElementWaiter.waitCondition(driver, expectedCondition, timeout, isJavascriptEnabled());
         } catch (StaleElementReferenceException e) {
             log.warn("Attempting to recover from StaleElementReferenceException ..." + expectedCondition);
             return waitCondition(expectedCondition, timeout);
@@ -452,6 +1052,14 @@ public class PageDriver implements AutoCloseable {
     }
 
     public void click(WebElement webElement) {
+        try {
+            clickElement(webElement);
+        } finally {
+            locatorCache.invalidate();
+        }
+    }
+
+    private void clickElement(WebElement webElement) {
         try {
             webElement.click();
         } catch (Exception e) {
@@ -482,10 +1090,8 @@ public class PageDriver implements AutoCloseable {
             DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd.hh.mm");
             String dateTmeFormat = LocalDateTime.now().format(dateTimeFormatter);
             fileName += ".date." + dateTmeFormat;
-            FileOutputStream out = new FileOutputStream(dirName + "/" + fileName + "_d.png");
             byte[] screenshotAs = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-            out.write(screenshotAs);
-            out.close();
+            artifactWriter.write(Paths.get(dirName + "/" + fileName + "_d.png"), screenshotAs);
 
             //and now save the page
             savePage(new File(dirName + "/" + fileName + ".html"));
@@ -507,22 +1113,18 @@ public class PageDriver implements AutoCloseable {
         executeScript("return window.stop");
     }
 
+    /**
+     * Appends source of the page to the file in UTF-8, the file is written in background by the artifact writer.
+     */
     public void savePage(File file) {
-        FileWriter writer = null;
-        try {
-            writer = new FileWriter(file, true);
-            writer.write(driver.getPageSource());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    log.error(e.getMessage(), e);
-                }
-            }
-        }
+        artifactWriter.write(file.toPath(), driver.getPageSource(), true);
+    }
+
+    /**
+     * Sets writer of screenshots and page sources, shared writer is used by default.
+     */
+    public void setArtifactWriter(ArtifactWriter artifactWriter) {
+        this.artifactWriter = artifactWriter;
     }
 
     public Forms formHelper() {
@@ -536,6 +1138,16 @@ public class PageDriver implements AutoCloseable {
         return sessionStorage;
     }
 
+    /**
+     * Returns session storage, which is read and written as a whole in single script call.
+     */
+    public BulkStorage getBulkSessionStorage() {
+        if (sessionStorage == null) {
+            sessionStorage = new SessionStorageImpl(driver);
+        }
+        return sessionStorage;
+    }
+
     public LocalStorage getLocalStorage() {
         if (localStorage == null) {
             localStorage = new LocalStorageImpl(driver);
@@ -543,6 +1155,16 @@ public class PageDriver implements AutoCloseable {
         return localStorage;
     }
 
+    /**
+     * Returns local storage, which is read and written as a whole in single script call.
+     */
+    public BulkStorage getBulkLocalStorage() {
+        if (localStorage == null) {
+            localStorage = new LocalStorageImpl(driver);
+        }
+        return localStorage;
+    }
+
     public void cleanAllCookies() {
         driver.manage().deleteAllCookies();
     }
@@ -0,0 +1,198 @@
+package el.selenium.drivers.page;
+
+import el.selenium.exceptions.RuntimeExecutionException;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.WebDriverException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Session state of warmed page driver: cookies, local storage and session storage of its origin,
+ * captured once and applied to other page drivers, so they start e.g. authenticated without repeating the warm up.
+ * Template with initializer refreshes itself on the page driver it's applied to,
+ * as soon as any of its cookies expires or the template gets older than max age.
+ */
+public class SessionTemplate {
+
+    private final static Logger log = LoggerFactory.getLogger(SessionTemplate.class);
+
+    private final Consumer<PageDriver> initializer;
+
+    private volatile State state;
+    private volatile long maxAge = Long.MAX_VALUE;
+    private volatile long expiryMargin = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Creates template, which is captured by {@link #capture(PageDriver)} and never refreshed.
+     */
+    public SessionTemplate() {
+        this(null);
+    }
+
+    /**
+     * Creates template, which runs the initializer (e.g. logging in) on the first page driver it's applied to
+     * and captures its state, then refreshes the same way once expired.
+     */
+    public SessionTemplate(Consumer<PageDriver> initializer) {
+        this.initializer = initializer;
+    }
+
+    /**
+     * Sets max time the captured state is applied, after which the template is refreshed.
+     */
+    public void setMaxAge(long maxAge, TimeUnit unit) {
+        this.maxAge = unit.toMillis(maxAge);
+    }
+
+    /**
+     * Sets time before cookie expiry, starting from which the template is considered expired.
+     */
+    public void setExpiryMargin(long expiryMargin, TimeUnit unit) {
+        this.expiryMargin = unit.toMillis(expiryMargin);
+    }
+
+    /**
+     * Captures cookies and storages of the current page of the page driver.
+     */
+    public void capture(PageDriver pageDriver) {
+        String url = pageDriver.getDriver().getCurrentUrl();
+        Set<Cookie> cookies = pageDriver.getDriver().manage().getCookies();
+        Map<String, String> localStorage = Collections.emptyMap();
+        Map<String, String> sessionStorage = Collections.emptyMap();
+        if (pageDriver.isJavascriptEnabled()) {
+            try {
+                localStorage = pageDriver.getBulkLocalStorage().snapshot();
+                sessionStorage = pageDriver.getBulkSessionStorage().snapshot();
+            } catch (WebDriverException e) {
+                //storage might be disabled for the current page
+                log.debug("Failed to capture storage of {}: {}", url, e.getMessage());
+            }
+        }
+        state = new State(getOrigin(url), cookies, localStorage, sessionStorage);
+        log.debug("Captured session template of {} with {} cookies", state.origin, cookies.size());
+    }
+
+    /**
+     * Runs the initializer on the page driver and captures its state.
+     */
+    public synchronized void refresh(PageDriver pageDriver) {
+        if (initializer == null) {
+            throw new IllegalStateException("Session template without initializer can't be refreshed");
+        }
+        initializer.accept(pageDriver);
+        capture(pageDriver);
+    }
+
+    /**
+     * Applies the captured state to the page driver, opening origin of the template for that
+     * the same way as any other URL, through host scheduler and circuit breaker of the page driver.
+     * Expired template with initializer is refreshed on this page driver instead.
+     */
+    public void apply(PageDriver pageDriver) {
+        State current = state;
+        if (initializer != null && (current == null || isExpired(current))) {
+            synchronized (this) {
+                current = state;
+                if (current == null || isExpired(current)) {
+                    refresh(pageDriver);
+                    return;
+                }
+            }
+        }
+        if (current == null) {
+            throw new IllegalStateException("Session template hasn't been captured");
+        }
+        if (isExpired(current)) {
+            log.warn("Applying expired session template of {}", current.origin);
+        }
+
+        pageDriver.goToURL(current.origin);
+        for (Cookie cookie : current.cookies) {
+            try {
+                pageDriver.getDriver().manage().addCookie(cookie);
+            } catch (WebDriverException e) {
+                log.debug("Failed to apply cookie {} of {}: {}", cookie.getName(), current.origin, e.getMessage());
+            }
+        }
+        if (pageDriver.isJavascriptEnabled()) {
+            try {
+                if (!current.localStorage.isEmpty()) {
+                    pageDriver.getBulkLocalStorage().restore(current.localStorage);
+                }
+                if (!current.sessionStorage.isEmpty()) {
+                    pageDriver.getBulkSessionStorage().restore(current.sessionStorage);
+                }
+            } catch (WebDriverException e) {
+                log.debug("Failed to apply storage of {}: {}", current.origin, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return whether the template has no state yet, or any of its cookies has expired, or it's older than max age
+     */
+    public boolean isExpired() {
+        State current = state;
+        return current == null || isExpired(current);
+    }
+
+    /**
+     * @return epoch millis, at which the template expires, null if it hasn't been captured
+     */
+    public Long getExpiry() {
+        State current = state;
+        return current == null ? null : getExpiry(current);
+    }
+
+    private boolean isExpired(State state) {
+        return System.currentTimeMillis() >= getExpiry(state);
+    }
+
+    private long getExpiry(State state) {
+        long expiry = maxAge == Long.MAX_VALUE ? Long.MAX_VALUE : state.capturedAt + maxAge;
+        if (state.cookieExpiry != Long.MAX_VALUE) {
+            expiry = Math.min(expiry, state.cookieExpiry - expiryMargin);
+        }
+        return expiry;
+    }
+
+    private static String getOrigin(String url) {
+        try {
+            URL parsed = new URL(url);
+            return new URL(parsed.getProtocol(), parsed.getHost(), parsed.getPort(), "/").toString();
+        } catch (MalformedURLException e) {
+            throw new RuntimeExecutionException("Failed to capture session template of " + url, e);
+        }
+    }
+
+    private static class State {
+        private final String origin;
+        private final Set<Cookie> cookies;
+        private final Map<String, String> localStorage;
+        private final Map<String, String> sessionStorage;
+        private final long capturedAt = System.currentTimeMillis();
+        /**
+         * Earliest expiry of the cookies, session cookies don't expire
+         */
+        private final long cookieExpiry;
+
+        private State(String origin, Set<Cookie> cookies, Map<String, String> localStorage, Map<String, String> sessionStorage) {
+            this.origin = origin;
+            this.cookies = Collections.unmodifiableSet(new HashSet<>(cookies));
+            this.localStorage = Collections.unmodifiableMap(new LinkedHashMap<>(localStorage));
+            this.sessionStorage = Collections.unmodifiableMap(new LinkedHashMap<>(sessionStorage));
+            this.cookieExpiry = cookies.stream()
+                    .map(Cookie::getExpiry)
+                    .filter(Objects::nonNull)
+                    .mapToLong(Date::getTime)
+                    .min()
+                    .orElse(Long.MAX_VALUE);
+        }
+    }
+}
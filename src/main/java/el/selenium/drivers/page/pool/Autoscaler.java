@@ -0,0 +1,83 @@
+package el.selenium.drivers.page.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Calculates capacity of the pool from its observed load, following the autoscaling policy.
+ * Not thread safe, evaluated by the pool maintainer only.
+ */
+class Autoscaler {
+
+    private final static Logger log = LoggerFactory.getLogger(Autoscaler.class);
+
+    private final AutoscalingPolicy policy;
+
+    private long lastScaleUp;
+    private long lastScaleDown;
+
+    /**
+     * Count of consecutive checks with low load
+     */
+    private int calmChecks;
+
+    Autoscaler(AutoscalingPolicy policy) {
+        this.policy = policy;
+        this.lastScaleUp = System.nanoTime() - policy.getScaleUpCooldown();
+        this.lastScaleDown = System.nanoTime() - policy.getScaleDownCooldown();
+    }
+
+    int clamp(int capacity) {
+        return Math.max(policy.getMinSize(), Math.min(policy.getMaxSize(), capacity));
+    }
+
+    /**
+     * @param capacity       current capacity of the pool
+     * @param waiting        count of waiting threads
+     * @param acquireLatency average time in nanos acquisitions have waited in the queue since the previous check
+     * @param idle           count of idle page drivers
+     * @return new capacity of the pool
+     */
+    int evaluate(int capacity, int waiting, long acquireLatency, int idle) {
+        long now = System.nanoTime();
+        long freeMemory = getFreeMemory();
+        boolean lowMemory = freeMemory >= 0 && freeMemory < policy.getMinFreeMemory();
+        boolean overloaded = waiting >= policy.getScaleUpQueueLength() || acquireLatency >= policy.getScaleUpLatency();
+        boolean calm = waiting == 0 && idle > 0 && acquireLatency < policy.getScaleDownLatency();
+        calmChecks = calm ? calmChecks + 1 : 0;
+
+        if (overloaded && !lowMemory && capacity < policy.getMaxSize()
+                && now - lastScaleUp >= policy.getScaleUpCooldown()) {
+            int step = Math.max(1, Math.min(waiting, policy.getScaleUpStep()));
+            lastScaleUp = now;
+            log.debug("Scaling up from {}, waiting {}, acquire latency {} ns", capacity, waiting, acquireLatency);
+            return clamp(capacity + step);
+        }
+
+        if ((lowMemory || calmChecks >= policy.getScaleDownChecks()) && capacity > policy.getMinSize()
+                && now - lastScaleDown >= policy.getScaleDownCooldown()
+                && now - lastScaleUp >= policy.getScaleDownCooldown()) {
+            calmChecks = 0;
+            lastScaleDown = now;
+            log.debug("Scaling down from {}, free memory {} bytes", capacity, freeMemory);
+            return clamp(capacity - 1);
+        }
+
+        return capacity;
+    }
+
+    /**
+     * @return free physical memory of the host or -1 if it's unknown
+     */
+    @SuppressWarnings("deprecation")
+    private static long getFreeMemory() {
+        OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getFreePhysicalMemorySize();
+        }
+        return -1;
+    }
+}
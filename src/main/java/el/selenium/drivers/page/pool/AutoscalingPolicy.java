@@ -0,0 +1,121 @@
+package el.selenium.drivers.page.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes when PageDriverPool grows or shrinks its capacity within [minSize, maxSize].
+ * The pool grows when threads are waiting or acquiring takes too long and host has enough free memory,
+ * it shrinks when the load has stayed low for several consecutive checks or host memory runs low.
+ */
+public class AutoscalingPolicy {
+
+    private final int minSize;
+    private final int maxSize;
+
+    private int scaleUpQueueLength = 1;
+    private int scaleUpStep = 2;
+    private long scaleUpLatency = TimeUnit.SECONDS.toNanos(1);
+    private long scaleDownLatency = TimeUnit.MILLISECONDS.toNanos(100);
+    private int scaleDownChecks = 6;
+    private long scaleUpCooldown = TimeUnit.SECONDS.toNanos(10);
+    private long scaleDownCooldown = TimeUnit.SECONDS.toNanos(60);
+    private long minFreeMemory = 512L * 1024 * 1024;
+
+    public AutoscalingPolicy(int minSize, int maxSize) {
+        if (minSize < 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid autoscaling range [" + minSize + ", " + maxSize + "]");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Sets count of waiting threads, starting from which the pool grows.
+     */
+    public void setScaleUpQueueLength(int scaleUpQueueLength) {
+        this.scaleUpQueueLength = scaleUpQueueLength;
+    }
+
+    /**
+     * Sets max count of page drivers added at once.
+     */
+    public void setScaleUpStep(int scaleUpStep) {
+        this.scaleUpStep = scaleUpStep;
+    }
+
+    /**
+     * Sets average time acquisitions wait in the queue, starting from which the pool grows.
+     */
+    public void setScaleUpLatency(long scaleUpLatency, TimeUnit unit) {
+        this.scaleUpLatency = unit.toNanos(scaleUpLatency);
+    }
+
+    /**
+     * Sets average time acquisitions wait in the queue, below which the load is considered low.
+     */
+    public void setScaleDownLatency(long scaleDownLatency, TimeUnit unit) {
+        this.scaleDownLatency = unit.toNanos(scaleDownLatency);
+    }
+
+    /**
+     * Sets count of consecutive checks with low load, after which the pool shrinks.
+     */
+    public void setScaleDownChecks(int scaleDownChecks) {
+        this.scaleDownChecks = scaleDownChecks;
+    }
+
+    public void setScaleUpCooldown(long scaleUpCooldown, TimeUnit unit) {
+        this.scaleUpCooldown = unit.toNanos(scaleUpCooldown);
+    }
+
+    public void setScaleDownCooldown(long scaleDownCooldown, TimeUnit unit) {
+        this.scaleDownCooldown = unit.toNanos(scaleDownCooldown);
+    }
+
+    /**
+     * Sets free physical memory of the host in bytes, below which the pool doesn't grow and shrinks instead.
+     */
+    public void setMinFreeMemory(long minFreeMemory) {
+        this.minFreeMemory = minFreeMemory;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getScaleUpQueueLength() {
+        return scaleUpQueueLength;
+    }
+
+    public int getScaleUpStep() {
+        return scaleUpStep;
+    }
+
+    public long getScaleUpLatency() {
+        return scaleUpLatency;
+    }
+
+    public long getScaleDownLatency() {
+        return scaleDownLatency;
+    }
+
+    public int getScaleDownChecks() {
+        return scaleDownChecks;
+    }
+
+    public long getScaleUpCooldown() {
+        return scaleUpCooldown;
+    }
+
+    public long getScaleDownCooldown() {
+        return scaleDownCooldown;
+    }
+
+    public long getMinFreeMemory() {
+        return minFreeMemory;
+    }
+}
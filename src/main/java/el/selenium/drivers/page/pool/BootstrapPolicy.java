@@ -0,0 +1,64 @@
+package el.selenium.drivers.page.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how PageDriverPool launches its initial page drivers.
+ * At most launch concurrency browsers are started at the same time, the constructor returns
+ * as soon as min ready page drivers are idle or startup timeout elapses, the rest are launched in background.
+ */
+public class BootstrapPolicy {
+
+    private int launchConcurrency = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int minReady = Integer.MAX_VALUE;
+    private long startupTimeout = TimeUnit.MINUTES.toNanos(5);
+    private int launchAttempts = 3;
+
+    /**
+     * Sets count of browsers launched at the same time.
+     */
+    public void setLaunchConcurrency(int launchConcurrency) {
+        if (launchConcurrency <= 0) {
+            throw new IllegalArgumentException("Launch concurrency should be positive " + launchConcurrency);
+        }
+        this.launchConcurrency = launchConcurrency;
+    }
+
+    /**
+     * Sets count of page drivers, which should be ready before the constructor returns.
+     * By default the constructor waits for all of them.
+     */
+    public void setMinReady(int minReady) {
+        this.minReady = minReady;
+    }
+
+    /**
+     * Sets max time the constructor waits for min ready page drivers.
+     */
+    public void setStartupTimeout(long startupTimeout, TimeUnit unit) {
+        this.startupTimeout = unit.toNanos(startupTimeout);
+    }
+
+    /**
+     * Sets count of attempts to launch each page driver before giving its place up.
+     */
+    public void setLaunchAttempts(int launchAttempts) {
+        this.launchAttempts = launchAttempts;
+    }
+
+    public int getLaunchConcurrency() {
+        return launchConcurrency;
+    }
+
+    public int getMinReady() {
+        return minReady;
+    }
+
+    public long getStartupTimeout() {
+        return startupTimeout;
+    }
+
+    public int getLaunchAttempts() {
+        return launchAttempts;
+    }
+}
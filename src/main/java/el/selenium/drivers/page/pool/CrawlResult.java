@@ -0,0 +1,53 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.model.ProcessedRequest;
+
+/**
+ * Result of crawling single URL, either extracted value or the failure.
+ */
+public class CrawlResult<R> {
+    private final String url;
+    private final ProcessedRequest processedRequest;
+    private final R value;
+    private final Throwable error;
+
+    CrawlResult(String url, ProcessedRequest processedRequest, R value, Throwable error) {
+        this.url = url;
+        this.processedRequest = processedRequest;
+        this.value = value;
+        this.error = error;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return processed request or null if the page hasn't been opened
+     */
+    public ProcessedRequest getProcessedRequest() {
+        return processedRequest;
+    }
+
+    public R getValue() {
+        return value;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "CrawlResult{" +
+                "url='" + url + '\'' +
+                ", processedRequest=" + processedRequest +
+                ", value=" + value +
+                ", error=" + error +
+                '}';
+    }
+}
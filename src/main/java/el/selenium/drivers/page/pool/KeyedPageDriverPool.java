@@ -0,0 +1,233 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.PageDriver;
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ProfileStrategy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeyedPageDriverPool contains PageDriverPool per browser and profile strategy,
+ * all of them sharing the same total budget of live page drivers.
+ * Each key might have guaranteed minimum, which other keys can't use,
+ * and maximum of live page drivers. Idle page drivers of one key are closed
+ * in favor of another key, which has waiting threads and no budget left.
+ * The KeyedPageDriverPool is thread safe.
+ */
+public class KeyedPageDriverPool {
+
+    private final Map<Key, PageDriverPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Guarded by this
+     */
+    private final Map<Key, Integer> minPerKey = new HashMap<>();
+    private final Map<Key, Integer> maxPerKey = new HashMap<>();
+    private final Map<Key, Integer> livePerKey = new HashMap<>();
+    private int maxTotal;
+    private int total;
+
+    public KeyedPageDriverPool(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        synchronized (this) {
+            this.maxTotal = maxTotal;
+        }
+        signalWaiting(null);
+    }
+
+    /**
+     * Sets count of live page drivers, which is reserved for the key and can't be reclaimed by other keys.
+     */
+    public void setMinPerKey(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, int min) {
+        synchronized (this) {
+            minPerKey.put(new Key(browser, profileStrategy), min);
+        }
+    }
+
+    public void setMaxPerKey(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, int max) {
+        Key key = new Key(browser, profileStrategy);
+        synchronized (this) {
+            maxPerKey.put(key, max);
+        }
+        getPool(key).setMaxPoolSize(max);
+    }
+
+    /**
+     * Returns pool of the key, which might be used for configuring it or taking page drivers directly.
+     */
+    public PageDriverPool getPool(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy) {
+        return getPool(new Key(browser, profileStrategy));
+    }
+
+    public PageDriver take(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy) {
+        return getPool(browser, profileStrategy).take();
+    }
+
+    public PageDriver take(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, long timeout, TimeUnit unit) throws InterruptedException {
+        return getPool(browser, profileStrategy).take(timeout, unit);
+    }
+
+    public CompletableFuture<PageDriver> takeAsync(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy) {
+        return getPool(browser, profileStrategy).takeAsync();
+    }
+
+    public void free(PageDriver pageDriver) {
+        if (pageDriver == null) {
+            return;
+        }
+        PageDriverPool pool = pools.get(new Key(pageDriver.getBrowser(), pageDriver.getProfileStrategy()));
+        if (pool == null) {
+            throw new IllegalArgumentException("PageDriver doesn't belong to the pool " + pageDriver.getId());
+        }
+        pool.free(pageDriver);
+    }
+
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    public void destroy() {
+        pools.values().forEach(PageDriverPool::destroy);
+        pools.clear();
+    }
+
+    private PageDriverPool getPool(Key key) {
+        return pools.computeIfAbsent(key, k -> {
+            PageDriverPool pool = createPool(k.browser, k.profileStrategy, new KeyBudget(k));
+            pool.setMaxPoolSize(Integer.MAX_VALUE);
+            return pool;
+        });
+    }
+
+    /**
+     * Creates empty pool of the browser and the profile strategy, limited by the budget.
+     */
+    PageDriverPool createPool(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, PageDriverBudget budget) {
+        return new PageDriverPool(browser, profileStrategy, 0, new BootstrapPolicy(), budget);
+    }
+
+    private synchronized boolean tryAcquire(Key key) {
+        int live = livePerKey.getOrDefault(key, 0);
+        if (live >= maxPerKey.getOrDefault(key, Integer.MAX_VALUE)) {
+            return false;
+        }
+
+        //budget reserved for minimums of other keys
+        int reserved = 0;
+        for (Map.Entry<Key, Integer> min : minPerKey.entrySet()) {
+            if (!min.getKey().equals(key)) {
+                reserved += Math.max(0, min.getValue() - livePerKey.getOrDefault(min.getKey(), 0));
+            }
+        }
+        if (total + reserved >= maxTotal) {
+            return false;
+        }
+
+        livePerKey.put(key, live + 1);
+        total++;
+        return true;
+    }
+
+    private synchronized void release(Key key) {
+        livePerKey.merge(key, -1, Integer::sum);
+        total--;
+    }
+
+    private synchronized boolean isReclaimable(Key key) {
+        return livePerKey.getOrDefault(key, 0) > minPerKey.getOrDefault(key, 0);
+    }
+
+    private synchronized boolean isBelowMax(Key key) {
+        return livePerKey.getOrDefault(key, 0) < maxPerKey.getOrDefault(key, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Closes idle page drivers of other keys, until the budget is acquired for the key.
+     */
+    private boolean reclaim(Key key) {
+        for (Map.Entry<Key, PageDriverPool> pool : pools.entrySet()) {
+            Key other = pool.getKey();
+            if (other.equals(key) || !isReclaimable(other)) {
+                continue;
+            }
+            if (!isBelowMax(key)) {
+                return false;
+            }
+            while (isReclaimable(other) && pool.getValue().evictIdlePageDriver()) {
+                release(other);
+                if (tryAcquire(key)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wakes up pools, which are waiting for the budget, except the given one.
+     */
+    private void signalWaiting(Key except) {
+        pools.forEach((key, pool) -> {
+            if (!key.equals(except) && pool.hasWaiters()) {
+                pool.signal();
+            }
+        });
+    }
+
+    private class KeyBudget implements PageDriverBudget {
+
+        private final Key key;
+
+        private KeyBudget(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean acquire(boolean reclaim) {
+            return tryAcquire(key) || (reclaim && reclaim(key));
+        }
+
+        @Override
+        public void release() {
+            KeyedPageDriverPool.this.release(key);
+            signalWaiting(null);
+        }
+
+        @Override
+        public void idle() {
+            signalWaiting(key);
+        }
+    }
+
+    private static class Key {
+        private final WebDriverFactory.Browser browser;
+        private final ProfileStrategy profileStrategy;
+
+        private Key(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy) {
+            this.browser = browser;
+            this.profileStrategy = profileStrategy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return browser == key.browser && profileStrategy == key.profileStrategy;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(browser, profileStrategy);
+        }
+    }
+}
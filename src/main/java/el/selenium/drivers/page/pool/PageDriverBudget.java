@@ -0,0 +1,36 @@
+package el.selenium.drivers.page.pool;
+
+/**
+ * Limits count of live page drivers, which might be shared by several pools.
+ * Every initialized page driver acquires one unit of the budget and releases it when closed.
+ */
+interface PageDriverBudget {
+
+    PageDriverBudget UNLIMITED = new PageDriverBudget() {
+        @Override
+        public boolean acquire(boolean reclaim) {
+            return true;
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public void idle() {
+        }
+    };
+
+    /**
+     * @param reclaim whether idle page drivers of other pools might be closed to free the budget
+     * @return true if new page driver might be initialized
+     */
+    boolean acquire(boolean reclaim);
+
+    void release();
+
+    /**
+     * Notifies that page driver has become idle, so its budget might be reclaimed by other pools.
+     */
+    void idle();
+}
@@ -0,0 +1,228 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.HostScheduler;
+import el.selenium.drivers.page.PageDriver;
+import el.selenium.exceptions.HostThrottledException;
+import el.selenium.exceptions.RuntimeExecutionException;
+import el.selenium.model.ProcessedRequest;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * PageDriverCrawler opens URLs on page drivers of the pool and extracts value from each page.
+ * At most max in flight URLs are processed at the same time, the next URLs are read from the source
+ * only when the results are consumed. Results are emitted in completion order,
+ * failure of single URL is returned as its result and doesn't stop the crawl.
+ * URLs of hosts delayed by the host scheduler wait without holding page driver,
+ * leaving page drivers of the pool to other hosts meanwhile, URL of host throttled after the page driver
+ * has been taken is put back to wait the same way.
+ */
+public class PageDriverCrawler {
+
+    /**
+     * Seconds after which idle threads of the crawl end, so that abandoned crawl doesn't keep them
+     */
+    private final static long THREAD_KEEP_ALIVE = 30;
+
+    private final PageDriverPool pageDriverPool;
+
+    private volatile int maxInFlight = 10;
+    private volatile int priority = PageDriverPool.DEFAULT_PRIORITY;
+    private volatile String tenant = PageDriverPool.DEFAULT_TENANT;
+    private volatile HostScheduler hostScheduler = HostScheduler.getShared();
+
+    public PageDriverCrawler(PageDriverPool pageDriverPool) {
+        this.pageDriverPool = pageDriverPool;
+    }
+
+    /**
+     * Sets max count of URLs processed at the same time.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Max in flight should be positive " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Sets priority and tenant, on behalf of which page drivers are taken from the pool.
+     */
+    public void setPriority(int priority, String tenant) {
+        this.priority = priority;
+        this.tenant = tenant;
+    }
+
+    /**
+     * Sets host scheduler, which is consulted before taking page driver for URL.
+     * It should be the same one, which page drivers of the pool use.
+     */
+    public void setHostScheduler(HostScheduler hostScheduler) {
+        this.hostScheduler = hostScheduler;
+    }
+
+    public <R> Stream<CrawlResult<R>> crawl(Stream<String> urls, BiFunction<PageDriver, ProcessedRequest, R> extractor) {
+        return crawl(urls.iterator(), extractor).onClose(urls::close);
+    }
+
+    /**
+     * Crawls the URLs lazily, closing the stream cancels URLs which are still in flight.
+     * Stream which isn't consumed to the end, e.g. by limit() or findFirst(), should be closed,
+     * otherwise the URLs in flight are still processed and threads of the crawl end only after being idle.
+     */
+    public <R> Stream<CrawlResult<R>> crawl(Iterator<String> urls, BiFunction<PageDriver, ProcessedRequest, R> extractor) {
+        CrawlIterator<R> iterator = new CrawlIterator<>(urls, extractor, maxInFlight);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private <R> CrawlResult<R> visit(PageDriver pageDriver, String url, BiFunction<PageDriver, ProcessedRequest, R> extractor) {
+        ProcessedRequest processedRequest = pageDriver.goToURL(url);
+        R result = extractor.apply(pageDriver, processedRequest);
+        return new CrawlResult<>(url, processedRequest, result, null);
+    }
+
+    private class CrawlIterator<R> implements Iterator<CrawlResult<R>> {
+
+        private final Iterator<String> urls;
+        private final BiFunction<PageDriver, ProcessedRequest, R> extractor;
+        private final int maxInFlight;
+        private final BlockingQueue<CrawlResult<R>> completed = new LinkedBlockingQueue<>();
+        private final ThreadPoolExecutor executor;
+
+        /**
+         * Reschedules URLs of delayed hosts
+         */
+        private final ScheduledThreadPoolExecutor delayer;
+        private final Set<CompletableFuture<PageDriver>> taken = ConcurrentHashMap.newKeySet();
+        private int inFlight;
+
+        private CrawlIterator(Iterator<String> urls, BiFunction<PageDriver, ProcessedRequest, R> extractor, int maxInFlight) {
+            this.urls = urls;
+            this.extractor = extractor;
+            this.maxInFlight = maxInFlight;
+            this.executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "page-driver-crawler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.delayer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "page-driver-crawler-delayer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            //the iterator might be abandoned without being closed
+            executor.allowCoreThreadTimeOut(true);
+            delayer.setKeepAliveTime(THREAD_KEEP_ALIVE, TimeUnit.SECONDS);
+            delayer.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (inFlight < maxInFlight && urls.hasNext()) {
+                submit(urls.next());
+            }
+            if (inFlight == 0) {
+                executor.shutdown();
+                delayer.shutdown();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public CrawlResult<R> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                CrawlResult<R> result = completed.take();
+                inFlight--;
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeExecutionException("Interrupted while waiting for crawl result", e);
+            }
+        }
+
+        private void submit(String url) {
+            inFlight++;
+            schedule(url);
+        }
+
+        /**
+         * Takes page driver for the URL as soon as its host isn't delayed by the host scheduler.
+         */
+        private void schedule(String url) {
+            String host = HostScheduler.getHost(url);
+            long delay = host == null ? 0 : hostScheduler.getDelay(host);
+            if (delay <= 0) {
+                take(url);
+                return;
+            }
+            delay(url, delay);
+        }
+
+        private void delay(String url, long delay) {
+            try {
+                delayer.schedule(() -> schedule(url), delay, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException rejected) {
+                //the crawl has been closed meanwhile
+                completed.add(failure(url, rejected));
+            }
+        }
+
+        private void take(String url) {
+            CompletableFuture<PageDriver> taking = pageDriverPool.takeAsync(priority, tenant);
+            taking.whenComplete((pageDriver, e) -> {
+                taken.remove(taking);
+                if (e != null) {
+                    completed.add(failure(url, e));
+                    return;
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            completed.add(visit(pageDriver, url, extractor));
+                        } catch (HostThrottledException throttled) {
+                            //other page drivers have taken the host meanwhile
+                            delay(url, throttled.getRetryAfter(TimeUnit.NANOSECONDS));
+                        } catch (Throwable visitError) {
+                            completed.add(failure(url, visitError));
+                        } finally {
+                            pageDriverPool.free(pageDriver);
+                        }
+                    });
+                } catch (RejectedExecutionException rejected) {
+                    //the crawl has been closed meanwhile
+                    pageDriverPool.free(pageDriver);
+                    completed.add(failure(url, rejected));
+                }
+            });
+            if (!taking.isDone()) {
+                taken.add(taking);
+            }
+        }
+
+        private CrawlResult<R> failure(String url, Throwable e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            return new CrawlResult<>(url, null, null, cause);
+        }
+
+        private void close() {
+            delayer.shutdownNow();
+            executor.shutdownNow();
+            //gives places in the pool queue up
+            taken.forEach(taking -> taking.cancel(false));
+        }
+    }
+}
@@ -3,64 +3,172 @@ package el.selenium.drivers.page.pool;
 import el.selenium.factory.WebDriverFactory;
 import el.selenium.model.ProfileStrategy;
 import el.selenium.drivers.page.PageDriver;
+import el.selenium.drivers.page.SessionTemplate;
+import el.selenium.exceptions.RuntimeExecutionException;
+import el.selenium.utils.CommandExecutor;
 import org.openqa.selenium.WebDriverException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.lang.ref.WeakReference;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 /**
  * PageDriverPool contains pool of PageDrivers.
- * The PageDriverPool is thread safe.
+ * The PageDriverPool is thread safe, taking and freeing page drivers doesn't hold any pool wide lock.
  */
 public class PageDriverPool {
 
     private final static Logger log = LoggerFactory.getLogger(PageDriverPool.class);
 
+    public final static int DEFAULT_PRIORITY = 0;
+
+    public final static String DEFAULT_TENANT = "default";
+
+    /**
+     * Seconds between replenishing and eviction runs
+     */
+    private final static long MAINTENANCE_INTERVAL = 5;
+
+    private final static int CLEANER_THREADS = 2;
+
     /**
      * This variable let's the same thread to get the same page wrapper
      **/
     private ThreadLocal<String> threadLocal = ThreadLocal.withInitial(() -> UUID.randomUUID().toString());
 
     /**
-     * This pooling contains all the page wrappers
+     * Last page driver used by the thread, it's preferred over other idle ones when the thread takes again
+     */
+    private ThreadLocal<PooledPageDriver> lastUsed = new ThreadLocal<>();
+
+    /**
+     * All the page drivers owned by the pool, either idle or busy, by page driver id
      */
-    private volatile List<PageDriver> pageDriverPool = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, PooledPageDriver> pageDrivers = new ConcurrentHashMap<>();
 
-    private volatile Map<String, PageDriver> busyPageWrappers = new HashMap<>();
+    /**
+     * Idle page drivers, the most recently freed one is at the head.
+     * Might contain page drivers already claimed by someone else, those are skipped.
+     */
+    private final Deque<PooledPageDriver> idlePageDrivers = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Busy page drivers by reference they've been taken with
+     */
+    private final Map<String, PooledPageDriver> busyPageDrivers = new ConcurrentHashMap<>();
 
     /**
-     * Those are extended page wrappers, which created in case all page wrappers from pageDriverPool are busy
+     * Count of busy page drivers including the ones being initialized
      */
-    private volatile Map<String, PageDriver> extendedPageWrappers = new HashMap<>();
+    private final AtomicInteger busyCount = new AtomicInteger();
 
     /**
-     * Reference should be the id of pageWrapper
+     * Count of idle page drivers, excluding the ones already claimed but not removed from the deque yet
      */
-    private volatile Map<String, AtomicInteger> referenceCounter = new HashMap<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Count of page drivers being initialized in background to keep min idle
+     */
+    private final AtomicInteger warmingCount = new AtomicInteger();
+
+    /**
+     * Count of all the page drivers of the pool, either busy, idle or warming.
+     * Place in it is reserved before page driver is launched, so that max pool size is never exceeded.
+     */
+    private final AtomicInteger totalCount = new AtomicInteger();
+
+    /**
+     * Time acquisitions have waited in the queue since the last maintenance run, used for autoscaling
+     */
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+
+    /**
+     * Threads waiting for page driver
+     */
+    private final WaiterQueue waiters = new WaiterQueue();
+
+    /**
+     * Count of page drivers held by each tenant
+     */
+    private final Map<String, AtomicInteger> heldByTenant = new ConcurrentHashMap<>();
+    private final Map<String, Integer> tenantQuotas = new ConcurrentHashMap<>();
+    private final Map<String, Integer> tenantWeights = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes page drivers for waiters, so they don't block the thread which has freed the slot
+     */
+    private final ExecutorService initializer = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "page-driver-initializer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Resets and closes freed page drivers, so free() doesn't wait for the browser
+     */
+    private final ExecutorService cleaner = Executors.newFixedThreadPool(CLEANER_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "page-driver-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Keeps min idle page drivers ready and evicts the ones exceeding max idle
+     */
+    private final ScheduledExecutorService maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "page-driver-pool-maintainer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private volatile int tryingLimit = 10;
     private volatile int maxPoolSize = 30;
     private volatile boolean expandable = true;
     private volatile boolean shareReference = true;
     private volatile boolean cleanAfterUsage = false;
+    private volatile ResetLevel resetLevel = ResetLevel.STORAGE;
+    private volatile int minIdle = 0;
+    private volatile int maxIdle = Integer.MAX_VALUE;
+    private volatile long idleEvictionNanos = TimeUnit.MINUTES.toNanos(5);
+    private volatile String warmUpURL;
+    private volatile PageDriverValidator validator = PageDriverValidators.currentUrl();
+    private volatile long validationTimeout = TimeUnit.SECONDS.toMillis(10);
+    private volatile boolean testOnBorrow = false;
+    private volatile boolean testOnReturn = false;
+    private volatile boolean testWhileIdle = false;
+    private volatile Autoscaler autoscaler;
+    private volatile SessionTemplate sessionTemplate;
 
     private volatile WebDriverFactory.Browser browser;
     private volatile ProfileStrategy profileStrategy;
 
+    private final PageDriverBudget budget;
+
     public PageDriverPool(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, int poolSize) {
+        this(browser, profileStrategy, poolSize, new BootstrapPolicy());
+    }
+
+    /**
+     * Launches pool size page drivers following the bootstrap policy,
+     * page drivers failed to launch don't prevent the pool from being created.
+     */
+    public PageDriverPool(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, int poolSize, BootstrapPolicy bootstrapPolicy) {
+        this(browser, profileStrategy, poolSize, bootstrapPolicy, PageDriverBudget.UNLIMITED);
+    }
+
+    PageDriverPool(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, int poolSize, BootstrapPolicy bootstrapPolicy, PageDriverBudget budget) {
         this.browser = browser;
         this.profileStrategy = profileStrategy;
+        this.budget = budget;
 
-        IntStream.range(0, poolSize)
-                .parallel()
-                .forEach(i -> {
-                    String reference = getReference();
-                    PageDriver pageDriver = new PageDriver(reference, browser, profileStrategy);
-                    pageDriverPool.add(pageDriver);
-                });
+        bootstrap(poolSize, bootstrapPolicy);
+        maintainer.scheduleWithFixedDelay(new Maintenance(this), MAINTENANCE_INTERVAL, MAINTENANCE_INTERVAL, TimeUnit.SECONDS);
     }
 
     public void setExpandable(boolean expandable) {
@@ -68,121 +176,1003 @@ public class PageDriverPool {
     }
 
     public void setMaxPoolSize(int maxPoolSize) {
-        this.maxPoolSize = maxPoolSize;
+        Autoscaler scaler = autoscaler;
+        this.maxPoolSize = scaler != null ? scaler.clamp(maxPoolSize) : maxPoolSize;
+        dispatch();
+    }
+
+    /**
+     * Lets the pool adjust max pool size within the policy range, following the observed load.
+     * Null policy turns autoscaling off, keeping the current max pool size.
+     */
+    public void setAutoscalingPolicy(AutoscalingPolicy autoscalingPolicy) {
+        if (autoscalingPolicy == null) {
+            autoscaler = null;
+            return;
+        }
+        Autoscaler scaler = new Autoscaler(autoscalingPolicy);
+        autoscaler = scaler;
+        maxPoolSize = scaler.clamp(maxPoolSize);
+        dispatch();
     }
 
     public void setShareReference(boolean shareReference) {
         this.shareReference = shareReference;
     }
 
+    /**
+     * Resets page driver after usage in background, before returning it to idle ones.
+     */
     public void setCleanAfterUsage(boolean cleanAfterUsage) {
         this.cleanAfterUsage = cleanAfterUsage;
     }
 
+    public void setResetLevel(ResetLevel resetLevel) {
+        this.resetLevel = resetLevel;
+    }
+
+    /**
+     * Sets session template applied to new page drivers, to page drivers reset after usage and after browser restarts,
+     * so that page drivers start with the session of the template instead of warming up each of them.
+     * Page drivers already in the pool get the template on their next reset.
+     */
+    public void setSessionTemplate(SessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * Sets count of idle page drivers, which are initialized in background ahead of demand.
+     */
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+        replenish();
+    }
+
+    /**
+     * Sets count of idle page drivers, above which idle page drivers are closed
+     * after being idle for the idle eviction time.
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    public void setIdleEvictionTime(long idleEvictionTime, TimeUnit unit) {
+        this.idleEvictionNanos = unit.toNanos(idleEvictionTime);
+    }
+
+    /**
+     * Sets URL, which page drivers initialized in background open before becoming idle,
+     * so DNS, TLS and browser cache are primed before the first real request.
+     */
+    public void setWarmUpURL(String warmUpURL) {
+        this.warmUpURL = warmUpURL;
+    }
+
+    /**
+     * Sets liveness probe used for testing page drivers, by default current URL is requested.
+     */
+    public void setValidator(PageDriverValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Sets the time after which not responding page driver is considered hung.
+     */
+    public void setValidationTimeout(long validationTimeout, TimeUnit unit) {
+        this.validationTimeout = unit.toMillis(validationTimeout);
+    }
+
+    /**
+     * Validates idle page driver before handing it over, invalid one is replaced and another one is taken.
+     */
+    public void setTestOnBorrow(boolean testOnBorrow) {
+        this.testOnBorrow = testOnBorrow;
+    }
+
+    /**
+     * Validates page driver when it's freed, invalid one is replaced instead of returning to idle ones.
+     */
+    public void setTestOnReturn(boolean testOnReturn) {
+        this.testOnReturn = testOnReturn;
+    }
+
+    /**
+     * Validates idle page drivers in background, replacing dead or hung ones.
+     */
+    public void setTestWhileIdle(boolean testWhileIdle) {
+        this.testWhileIdle = testWhileIdle;
+    }
+
+    /**
+     * Limits count of page drivers, which the tenant might hold at the same time.
+     */
+    public void setTenantQuota(String tenant, int quota) {
+        tenantQuotas.put(tenant, quota);
+        dispatch();
+    }
+
+    /**
+     * Sets weight of the tenant, tenants of the same priority get page drivers in proportion of their weights.
+     */
+    public void setTenantWeight(String tenant, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight should be positive " + weight);
+        }
+        tenantWeights.put(tenant, weight);
+    }
+
+    /**
+     * Returns count of page drivers held by each tenant.
+     */
+    public Map<String, Integer> getHeldByTenant() {
+        Map<String, Integer> held = new HashMap<>();
+        heldByTenant.forEach((tenant, count) -> {
+            if (count.get() > 0) {
+                held.put(tenant, count.get());
+            }
+        });
+        return held;
+    }
+
+    /**
+     * Returns count of threads and futures waiting for page driver by tenant.
+     */
+    public Map<String, Integer> getWaitingByTenant() {
+        return waiters.countByTenant();
+    }
+
+    /**
+     * Takes page driver from the pool, waits as long as needed
+     * in case all page drivers are busy and max pool size is reached.
+     */
     public PageDriver take() {
+        return take(DEFAULT_PRIORITY, DEFAULT_TENANT);
+    }
+
+    /**
+     * Takes page driver for the tenant, waits as long as needed.
+     * Waiters of higher priority are served first.
+     */
+    public PageDriver take(int priority, String tenant) {
+        try {
+            return take(priority, tenant, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeExecutionException("Interrupted while waiting for PageDriver", e);
+        }
+    }
+
+    /**
+     * Takes page driver from the pool without waiting for other threads to free theirs.
+     * New page driver might still be initialized in case max pool size isn't reached yet.
+     *
+     * @return page driver or null if all page drivers are busy
+     */
+    public PageDriver tryTake() {
         String reference = getReference();
+        PageDriver pageDriver = pollPageDriver(reference, DEFAULT_TENANT);
+        if (pageDriver != null) {
+            return pageDriver;
+        }
+        if (reserveNew(DEFAULT_TENANT)) {
+            return initPageDriver(reference, DEFAULT_TENANT);
+        }
+        return null;
+    }
 
-        //at first checking if there is already ready pageWrapper
-        synchronized (this) {
-            PageDriver pageDriver = null;
-            if (referenceCounter.get(reference) != null) {
-                pageDriver = busyPageWrappers.get(reference);
-                if (pageDriver == null) {
-                    pageDriver = extendedPageWrappers.get(reference);
-                }
-                referenceCounter.get(reference).incrementAndGet();
-            } else if (!pageDriverPool.isEmpty()) {
-                pageDriver = pageDriverPool.remove(0);
-                registerPageWrapper(pageDriver.getId(), pageDriver, false);
+    /**
+     * Takes page driver from the pool, waiting up to the given time for a page driver to be freed.
+     * Waiting threads are woken up as soon as page driver is freed.
+     *
+     * @return page driver or null if timeout elapsed before any page driver became available
+     */
+    public PageDriver take(long timeout, TimeUnit unit) throws InterruptedException {
+        return take(DEFAULT_PRIORITY, DEFAULT_TENANT, timeout, unit);
+    }
+
+    /**
+     * Takes page driver for the tenant, waiting up to the given time.
+     * Waiters of higher priority are served first, tenants of the same priority are served
+     * in weighted-fair order within their quotas, waiters of the same tenant in FIFO order.
+     *
+     * @return page driver or null if timeout elapsed before any page driver became available
+     */
+    public PageDriver take(int priority, String tenant, long timeout, TimeUnit unit) throws InterruptedException {
+        String reference = getReference();
+        PageDriver pageDriver = pollPageDriver(reference, tenant);
+        if (pageDriver != null) {
+            recordWait(0);
+            return pageDriver;
+        }
+        if (reserveNew(tenant)) {
+            recordWait(0);
+            return initPageDriver(reference, tenant);
+        }
+
+        Waiter waiter = new Waiter(reference, priority, tenant);
+        waiters.offer(waiter);
+        dispatch();
+
+        try {
+            return waiter.future.get(timeout, unit);
+        } catch (TimeoutException e) {
+            if (abandon(waiter)) {
+                log.debug("No PageDriver has been freed in {} {}", timeout, unit);
+                return null;
             }
-            if (pageDriver != null) {
-                return pageDriver;
+            //has been served meanwhile
+            return waiter.future.join();
+        } catch (InterruptedException e) {
+            if (!abandon(waiter)) {
+                //has been served meanwhile, giving back what was received
+                waiter.future.thenAccept(this::free);
             }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new RuntimeExecutionException(e.getCause());
+        }
+    }
+
+    /**
+     * Takes page driver from the pool without blocking the caller.
+     * The future completes as soon as page driver is freed or new one is initialized,
+     * pending futures are served in the same order as blocked threads.
+     * Page driver taken this way is never shared by reference and should be freed by the caller,
+     * cancelling the future gives the place in the queue up.
+     */
+    public CompletableFuture<PageDriver> takeAsync() {
+        return takeAsync(DEFAULT_PRIORITY, DEFAULT_TENANT);
+    }
+
+    /**
+     * Takes page driver for the tenant without blocking the caller,
+     * served in the same order as {@link #take(int, String, long, TimeUnit)}.
+     */
+    public CompletableFuture<PageDriver> takeAsync(int priority, String tenant) {
+        Waiter waiter = new Waiter(UUID.randomUUID().toString(), priority, tenant);
+        PageDriver pageDriver = pollPageDriver(waiter.reference, tenant);
+        if (pageDriver != null) {
+            recordWait(0);
+            return CompletableFuture.completedFuture(pageDriver);
+        }
+        if (reserveNew(tenant)) {
+            recordWait(0);
+            waiter.served.set(true);
+            initPageDriverAsync(waiter);
+            return waiter.future;
         }
 
-        //no initialized pageWrapper is available, initializing new one
-        boolean initPageWrapper = false;
-        synchronized (this) {
-            if (busyPageWrappers.size() + extendedPageWrappers.size() < maxPoolSize) {
-                initPageWrapper = true;
-                if (!expandable) {
-                    extendedPageWrappers.put(reference, null);
-                } else {
-                    busyPageWrappers.put(reference, null);
-                }
+        waiters.offer(waiter);
+        waiter.future.whenComplete((result, e) -> {
+            if (waiter.future.isCancelled() && waiter.served.compareAndSet(false, true)) {
+                //the caller has given up, so no page driver is launched for it
+                waiters.remove(waiter);
             }
-        }
+        });
+        dispatch();
+        return waiter.future;
+    }
 
-        if (!initPageWrapper) {
+    /**
+     * Takes page driver asynchronously, runs the work with it and frees
+     * the page driver as soon as the work completes, either normally or exceptionally.
+     */
+    public <T> CompletableFuture<T> withDriver(Function<PageDriver, CompletableFuture<T>> work) {
+        return takeAsync().thenCompose(pageDriver -> {
+            CompletableFuture<T> result;
             try {
-                log.debug("No PageWrapper is available, sleeping 40 seconds");
-                TimeUnit.SECONDS.sleep(40);
-            } catch (InterruptedException e) {
-                log.error(e.getMessage(), e);
+                result = work.apply(pageDriver);
+            } catch (Throwable e) {
+                free(pageDriver);
+                throw e;
             }
-            return take();
+            return result.whenComplete((value, e) -> free(pageDriver));
+        });
+    }
+
+    /**
+     * Removes waiter from the queue.
+     *
+     * @return false if waiter has already been served
+     */
+    private boolean abandon(Waiter waiter) {
+        waiter.served.set(true);
+        waiters.remove(waiter);
+        return waiter.future.cancel(false);
+    }
+
+    /**
+     * Returns page driver already taken by the same reference or any idle one.
+     * Idle page drivers aren't taken over the waiting threads.
+     */
+    private PageDriver pollPageDriver(String reference, String tenant) {
+        PooledPageDriver pooledPageDriver = busyPageDrivers.get(reference);
+        if (pooledPageDriver != null) {
+            pooledPageDriver.retain();
+            return pooledPageDriver.getPageDriver();
+        }
+        if (!waiters.isEmpty() || !tryHold(tenant)) {
+            return null;
+        }
+
+        PooledPageDriver lastUsedPageDriver = lastUsed.get();
+        if (lastUsedPageDriver != null && claim(lastUsedPageDriver)) {
+            idlePageDrivers.removeFirstOccurrence(lastUsedPageDriver);
+            pooledPageDriver = lastUsedPageDriver;
         } else {
-            //now initializing new pageWrapper
-            PageDriver pageDriver = null;
+            pooledPageDriver = claimIdle();
+        }
+        while (pooledPageDriver != null && !isValidOnBorrow(pooledPageDriver)) {
+            pooledPageDriver = claimIdle();
+        }
+        if (pooledPageDriver == null) {
+            releaseHold(tenant);
+            return null;
+        }
+        lease(pooledPageDriver, reference, tenant);
+        lastUsed.set(pooledPageDriver);
+        return pooledPageDriver.getPageDriver();
+    }
+
+    /**
+     * Claims idle page driver and counts it as busy.
+     */
+    private boolean claim(PooledPageDriver pooledPageDriver) {
+        if (pooledPageDriver.claim()) {
+            busyCount.incrementAndGet();
+            idleCount.decrementAndGet();
+            if (idleCount.get() + warmingCount.get() < minIdle) {
+                initializer.execute(this::replenish);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Claims any idle page driver, the caller validates it on borrow.
+     */
+    private PooledPageDriver claimIdle() {
+        PooledPageDriver pooledPageDriver;
+        while ((pooledPageDriver = idlePageDrivers.pollFirst()) != null) {
+            if (claim(pooledPageDriver)) {
+                return pooledPageDriver;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Validates already claimed page driver in case testing on borrow is enabled,
+     * invalid page driver is replaced by new idle one in background.
+     */
+    private boolean isValidOnBorrow(PooledPageDriver pooledPageDriver) {
+        if (!testOnBorrow || isValid(pooledPageDriver)) {
+            return true;
+        }
+        replace(pooledPageDriver);
+        busyCount.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * Runs the validator, giving up after validation timeout, so hung browser is considered invalid as well.
+     */
+    private boolean isValid(PooledPageDriver pooledPageDriver) {
+        PageDriverValidator pageDriverValidator = validator;
+        Future<Boolean> validation = initializer.submit(() -> pageDriverValidator.isValid(pooledPageDriver.getPageDriver()));
+        try {
+            return validation.get(validationTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            validation.cancel(true);
+            log.warn("PageDriver {} hasn't responded in {} ms", pooledPageDriver.getPageDriver().getId(), validationTimeout);
+            return false;
+        } catch (ExecutionException e) {
+            log.warn(e.getMessage(), e);
+            return false;
+        } catch (InterruptedException e) {
+            validation.cancel(true);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Closes already claimed page driver and initializes new idle one instead of it in background,
+     * the new page driver takes place of the closed one in the total count.
+     */
+    private void replace(PooledPageDriver pooledPageDriver) {
+        PageDriver pageDriver = pooledPageDriver.getPageDriver();
+        log.warn("Replacing invalid PageDriver {}", pageDriver.getId());
+        pageDrivers.remove(pageDriver.getId());
+        warmingCount.incrementAndGet();
+        initializer.execute(() -> {
+            CommandExecutor.executeOnIsolation(pageDriver::close);
+            initIdlePageDriver();
+        });
+    }
+
+    private void lease(PooledPageDriver pooledPageDriver, String reference, String tenant) {
+        pooledPageDriver.lease(reference, tenant);
+        busyPageDrivers.put(reference, pooledPageDriver);
+    }
+
+    /**
+     * Counts one more page driver held by the tenant, in case its quota isn't reached yet.
+     */
+    private boolean tryHold(String tenant) {
+        AtomicInteger held = heldByTenant.computeIfAbsent(tenant, t -> new AtomicInteger());
+        int quota = tenantQuotas.getOrDefault(tenant, Integer.MAX_VALUE);
+        while (true) {
+            int count = held.get();
+            if (count >= quota) {
+                return false;
+            }
+            if (held.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseHold(String tenant) {
+        AtomicInteger held = heldByTenant.get(tenant);
+        if (held != null) {
+            held.decrementAndGet();
+        }
+    }
+
+    private boolean isUnderQuota(String tenant) {
+        AtomicInteger held = heldByTenant.get(tenant);
+        return held == null || held.get() < tenantQuotas.getOrDefault(tenant, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Share of the pool held by the tenant, normalized by its weight.
+     */
+    private double getShare(String tenant) {
+        AtomicInteger held = heldByTenant.get(tenant);
+        return held == null ? 0 : (double) held.get() / tenantWeights.getOrDefault(tenant, 1);
+    }
+
+    /**
+     * Reserves place for new page driver of the tenant, in case nobody is waiting
+     * and neither max pool size nor the tenant quota is reached.
+     */
+    private boolean reserveNew(String tenant) {
+        if (!waiters.isEmpty() || !tryHold(tenant)) {
+            return false;
+        }
+        if (reserveSlot()) {
+            return true;
+        }
+        releaseHold(tenant);
+        return false;
+    }
+
+    /**
+     * Reserves place for new busy page driver, in case max pool size isn't reached yet.
+     */
+    private boolean reserveSlot() {
+        if (!reserveTotal()) {
+            return false;
+        }
+        if (!budget.acquire(true)) {
+            totalCount.decrementAndGet();
+            return false;
+        }
+        busyCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Releases place of busy page driver, which has left the pool.
+     */
+    private void releaseSlot() {
+        busyCount.decrementAndGet();
+        totalCount.decrementAndGet();
+        dispatch();
+    }
+
+    /**
+     * Reserves place for one more page driver of the pool, in case max pool size isn't reached yet.
+     * Busy, idle and warming page drivers are counted, waiters are served by idle and warming ones as soon as they are ready.
+     */
+    private boolean reserveTotal() {
+        while (true) {
+            int count = totalCount.get();
+            if (count >= maxPoolSize) {
+                return false;
+            }
+            if (totalCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Initializes new page driver in already reserved slot.
+     */
+    private PageDriver initPageDriver(String reference, String tenant) {
+        PageDriver pageDriver = null;
+        try {
             while (tryingLimit > 0) {
                 try {
-                    pageDriver = new PageDriver(reference, browser, profileStrategy);
+                    pageDriver = launch();
                     break;
                 } catch (WebDriverException e) {
                     tryingLimit--;
-                    if (tryingLimit <= 0) {
-                        throw new RuntimeException("No PageWrapper is available and trying limit is exceeded");
+                }
+            }
+            if (pageDriver == null) {
+                throw new RuntimeException("No PageWrapper is available and trying limit is exceeded");
+            }
+            pageDriver.setSessionTemplate(sessionTemplate);
+        } catch (RuntimeException e) {
+            if (pageDriver != null) {
+                CommandExecutor.executeOnIsolation(pageDriver::close);
+            }
+            releaseHold(tenant);
+            budget.release();
+            releaseSlot();
+            throw e;
+        }
+        PooledPageDriver pooledPageDriver = new PooledPageDriver(pageDriver, !expandable);
+        pageDrivers.put(pageDriver.getId(), pooledPageDriver);
+        lease(pooledPageDriver, reference, tenant);
+        return pageDriver;
+    }
+
+    /**
+     * Initializes new page driver for the waiter in already reserved slot, without blocking the caller.
+     */
+    private void initPageDriverAsync(Waiter waiter) {
+        CompletableFuture.supplyAsync(() -> initPageDriver(waiter.reference, waiter.tenant), initializer)
+                .whenComplete((pageDriver, e) -> {
+                    if (e != null) {
+                        waiter.future.completeExceptionally(e);
+                    } else if (!waiter.future.complete(pageDriver)) {
+                        //waiter has given up meanwhile
+                        free(pageDriver);
                     }
+                });
+    }
+
+    /**
+     * Serves waiting threads by priority, tenant share and order of arrival,
+     * either handing over idle page driver or reserving slot for initializing new one.
+     * Might run concurrently from several threads, each waiter is served only by the one
+     * which has switched its served flag.
+     */
+    private void dispatch() {
+        Waiter waiter;
+        while ((waiter = waiters.peek(this::isUnderQuota, this::getShare)) != null) {
+            if (!tryHold(waiter.tenant)) {
+                //quota has just been reached by someone else
+                continue;
+            }
+
+            PooledPageDriver pooledPageDriver = claimIdle();
+            if (pooledPageDriver != null) {
+                if (!waiter.served.compareAndSet(false, true)) {
+                    waiters.remove(waiter);
+                    releaseHold(waiter.tenant);
+                    returnToIdle(pooledPageDriver);
+                    continue;
+                }
+                waiters.remove(waiter);
+                recordWait(System.nanoTime() - waiter.arrival);
+                if (testOnBorrow) {
+                    //validated in background, so that the thread freeing page driver doesn't wait for the browser
+                    Waiter servedWaiter = waiter;
+                    PooledPageDriver claimedPageDriver = pooledPageDriver;
+                    initializer.execute(() -> handOverValid(servedWaiter, claimedPageDriver));
+                } else {
+                    handOver(waiter, pooledPageDriver);
                 }
+            } else if (reserveSlot()) {
+                if (!waiter.served.compareAndSet(false, true)) {
+                    waiters.remove(waiter);
+                    releaseHold(waiter.tenant);
+                    busyCount.decrementAndGet();
+                    totalCount.decrementAndGet();
+                    budget.release();
+                    continue;
+                }
+                waiters.remove(waiter);
+                recordWait(System.nanoTime() - waiter.arrival);
+                initPageDriverAsync(waiter);
+            } else {
+                releaseHold(waiter.tenant);
+                return;
             }
-            registerPageWrapper(reference, pageDriver, !expandable);
-            return pageDriver;
         }
     }
 
-    private synchronized void registerPageWrapper(String reference, PageDriver pageDriver, boolean isExtended) {
-        //should be added to extension
-        if (isExtended) {
-            extendedPageWrappers.put(reference, pageDriver);
-        } else {
-            busyPageWrappers.put(reference, pageDriver);
+    private void handOver(Waiter waiter, PooledPageDriver pooledPageDriver) {
+        lease(pooledPageDriver, waiter.reference, waiter.tenant);
+        if (!waiter.future.complete(pooledPageDriver.getPageDriver())) {
+            //waiter has given up meanwhile
+            free(pooledPageDriver.getPageDriver());
         }
+    }
 
-        //add in reference counter
-        if (referenceCounter.get(reference) != null) {
-            referenceCounter.get(reference).incrementAndGet();
-        } else {
-            referenceCounter.put(reference, new AtomicInteger(1));
+    /**
+     * Validates claimed page driver and hands it over to the waiter,
+     * invalid page driver is closed and new one is initialized for the waiter in its place.
+     */
+    private void handOverValid(Waiter waiter, PooledPageDriver pooledPageDriver) {
+        if (isValid(pooledPageDriver)) {
+            handOver(waiter, pooledPageDriver);
+            return;
+        }
+        PageDriver invalidPageDriver = pooledPageDriver.getPageDriver();
+        log.warn("Replacing invalid PageDriver {}", invalidPageDriver.getId());
+        pageDrivers.remove(invalidPageDriver.getId());
+        CommandExecutor.executeOnIsolation(invalidPageDriver::close);
+
+        PageDriver pageDriver;
+        try {
+            pageDriver = initPageDriver(waiter.reference, waiter.tenant);
+        } catch (RuntimeException e) {
+            waiter.future.completeExceptionally(e);
+            return;
+        }
+        if (!waiter.future.complete(pageDriver)) {
+            free(pageDriver);
         }
     }
 
-    public synchronized void free(PageDriver pageDriver) {
-        if (pageDriver == null) {
+    private void returnToIdle(PooledPageDriver pooledPageDriver) {
+        offerIdle(pooledPageDriver);
+        busyCount.decrementAndGet();
+        budget.idle();
+    }
+
+    private void offerIdle(PooledPageDriver pooledPageDriver) {
+        idleCount.incrementAndGet();
+        pooledPageDriver.markIdle();
+        idlePageDrivers.offerFirst(pooledPageDriver);
+    }
+
+    /**
+     * Records time the acquisition has spent in the queue, excluding initialization of new page driver.
+     */
+    private void recordWait(long nanos) {
+        waitNanos.add(nanos);
+        waitCount.increment();
+    }
+
+    private void maintain() {
+        try {
+            autoscale();
+            evictIdle();
+            if (testWhileIdle) {
+                validateIdle();
+            }
+            replenish();
+        } catch (Throwable e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adjusts max pool size to the observed load, closing idle page drivers exceeding it.
+     */
+    private void autoscale() {
+        long count = waitCount.sumThenReset();
+        long nanos = waitNanos.sumThenReset();
+        Autoscaler scaler = autoscaler;
+        if (scaler == null) {
             return;
         }
 
-        if (cleanAfterUsage) {
-            try {
-                pageDriver.cleanFullStorage();
-            } catch (WebDriverException e) {
-                if (!e.getMessage().contains("is disabled")) {
-                    log.error(e.getMessage(), e);
-                    pageDriver.restartBrowser();
+        int capacity = maxPoolSize;
+        int newCapacity = scaler.evaluate(capacity, waiters.size(), count == 0 ? 0 : nanos / count, idleCount.get());
+        if (newCapacity == capacity) {
+            return;
+        }
+        maxPoolSize = newCapacity;
+        if (newCapacity > capacity) {
+            dispatch();
+            return;
+        }
+        while (totalCount.get() > newCapacity && evictIdlePageDriver()) {
+            budget.release();
+        }
+    }
+
+    /**
+     * Initializes page drivers in background, until min idle page drivers are ready or max pool size is reached.
+     */
+    private void replenish() {
+        while (idleCount.get() + warmingCount.get() < minIdle) {
+            if (!reserveTotal()) {
+                return;
+            }
+            if (!budget.acquire(false)) {
+                totalCount.decrementAndGet();
+                return;
+            }
+            warmingCount.incrementAndGet();
+            initializer.execute(this::initIdlePageDriver);
+        }
+    }
+
+    /**
+     * Launches page drivers on dedicated executor with bounded concurrency,
+     * waits till min ready of them are idle or startup timeout elapses, the rest keep launching in background.
+     */
+    private void bootstrap(int poolSize, BootstrapPolicy bootstrapPolicy) {
+        ExecutorService launcher = Executors.newFixedThreadPool(bootstrapPolicy.getLaunchConcurrency(), runnable -> {
+            Thread thread = new Thread(runnable, "page-driver-launcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int minReady = Math.min(poolSize, bootstrapPolicy.getMinReady());
+        CountDownLatch ready = new CountDownLatch(minReady);
+        List<CompletableFuture<Boolean>> launches = new ArrayList<>();
+        for (int i = 0; i < poolSize && budget.acquire(false); i++) {
+            totalCount.incrementAndGet();
+            warmingCount.incrementAndGet();
+            launches.add(CompletableFuture.supplyAsync(() -> initIdlePageDriver(bootstrapPolicy.getLaunchAttempts()), launcher)
+                    .whenComplete((launched, e) -> {
+                        if (Boolean.TRUE.equals(launched)) {
+                            ready.countDown();
+                        }
+                    }));
+        }
+        launcher.shutdown();
+
+        //nothing to wait for if too many launches have failed
+        CompletableFuture.allOf(launches.toArray(new CompletableFuture<?>[launches.size()]))
+                .whenComplete((result, e) -> {
+                    while (ready.getCount() > 0) {
+                        ready.countDown();
+                    }
+                });
+
+        try {
+            if (!ready.await(bootstrapPolicy.getStartupTimeout(), TimeUnit.NANOSECONDS)) {
+                log.warn("Only {} of {} PageDrivers are ready after startup timeout, launching the rest in background",
+                        idleCount.get(), minReady);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for PageDrivers to launch, launching the rest in background");
+        }
+    }
+
+    /**
+     * Launches new page driver with the browser and the profile strategy of the pool.
+     */
+    PageDriver launch() {
+        return new PageDriver(browser, profileStrategy);
+    }
+
+    private boolean initIdlePageDriver() {
+        return initIdlePageDriver(1);
+    }
+
+    /**
+     * Initializes idle page driver in the place already reserved in warming count and budget.
+     *
+     * @return true if page driver has been initialized
+     */
+    private boolean initIdlePageDriver(int attempts) {
+        PageDriver pageDriver = null;
+        try {
+            for (int attempt = 1; pageDriver == null; attempt++) {
+                try {
+                    pageDriver = launch();
+                } catch (WebDriverException e) {
+                    if (attempt >= attempts) {
+                        throw e;
+                    }
+                    log.warn("Failed to launch PageDriver, attempt {} of {}", attempt, attempts);
                 }
             }
+            if (maintainer.isShutdown()) {
+                //the pool has been destroyed meanwhile
+                pageDriver.close();
+                budget.release();
+                totalCount.decrementAndGet();
+                return false;
+            }
+            pageDriver.setSessionTemplate(sessionTemplate);
+            PageDriver warmPageDriver = pageDriver;
+            String url = warmUpURL;
+            if (url != null) {
+                CommandExecutor.executeOnIsolation(() -> warmPageDriver.goToURL(url));
+            }
+            PooledPageDriver pooledPageDriver = new PooledPageDriver(pageDriver, false);
+            pageDrivers.put(pageDriver.getId(), pooledPageDriver);
+            offerIdle(pooledPageDriver);
+            log.debug("Initialized idle PageDriver {}", pageDriver.getId());
+        } catch (RuntimeException e) {
+            log.error(e.getMessage(), e);
+            if (pageDriver != null) {
+                CommandExecutor.executeOnIsolation(pageDriver::close);
+            }
+            budget.release();
+            totalCount.decrementAndGet();
+            return false;
+        } finally {
+            warmingCount.decrementAndGet();
+            dispatch();
         }
+        return true;
+    }
 
-        String reference = pageDriver.getId();
-        int referenceCount = referenceCounter.get(reference).decrementAndGet();
-        if (referenceCount <= 0) {
-            referenceCounter.remove(reference);
-            PageDriver remove = busyPageWrappers.remove(reference);
-            if (remove != null) {
-                pageDriverPool.add(pageDriver);
+    /**
+     * Validates idle page drivers one by one, replacing dead or hung ones with new page drivers.
+     */
+    private void validateIdle() {
+        for (PooledPageDriver pooledPageDriver : idlePageDrivers) {
+            if (!pooledPageDriver.claim()) {
+                continue;
+            }
+            //removed before validating, so that claimIdle() doesn't poll and drop it meanwhile
+            idlePageDrivers.removeFirstOccurrence(pooledPageDriver);
+            if (isValid(pooledPageDriver)) {
+                pooledPageDriver.unclaim();
+                idlePageDrivers.offerFirst(pooledPageDriver);
             } else {
-                extendedPageWrappers.remove(reference);
-                pageDriver.close();
+                replace(pooledPageDriver);
+                idleCount.decrementAndGet();
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Closes the least recently used page drivers, which exceed max idle and have been idle long enough.
+     */
+    private void evictIdle() {
+        Iterator<PooledPageDriver> iterator = idlePageDrivers.descendingIterator();
+        while (iterator.hasNext() && idleCount.get() > maxIdle) {
+            PooledPageDriver pooledPageDriver = iterator.next();
+            if (pooledPageDriver.getIdleNanos() < idleEvictionNanos || !pooledPageDriver.claim()) {
+                continue;
+            }
+            idleCount.decrementAndGet();
+            idlePageDrivers.removeFirstOccurrence(pooledPageDriver);
+            pageDrivers.remove(pooledPageDriver.getPageDriver().getId());
+            log.debug("Evicting idle PageDriver {}", pooledPageDriver.getPageDriver().getId());
+            CommandExecutor.executeOnIsolation(pooledPageDriver.getPageDriver()::close);
+            budget.release();
+            totalCount.decrementAndGet();
+        }
+    }
+
+    boolean hasWaiters() {
+        return !waiters.isEmpty();
+    }
+
+    /**
+     * Serves waiting threads, in case page driver or budget has become available outside of this pool.
+     */
+    void signal() {
+        dispatch();
+    }
+
+    /**
+     * Closes the least recently used idle page driver, without releasing its budget,
+     * so the budget might be passed over to another pool.
+     *
+     * @return false if there is no idle page driver
+     */
+    boolean evictIdlePageDriver() {
+        Iterator<PooledPageDriver> iterator = idlePageDrivers.descendingIterator();
+        while (iterator.hasNext()) {
+            PooledPageDriver pooledPageDriver = iterator.next();
+            if (!pooledPageDriver.claim()) {
+                continue;
+            }
+            idleCount.decrementAndGet();
+            totalCount.decrementAndGet();
+            idlePageDrivers.removeFirstOccurrence(pooledPageDriver);
+            PageDriver pageDriver = pooledPageDriver.getPageDriver();
+            pageDrivers.remove(pageDriver.getId());
+            log.debug("Reclaiming idle PageDriver {}", pageDriver.getId());
+            initializer.execute(() -> CommandExecutor.executeOnIsolation(pageDriver::close));
+            return true;
+        }
+        return false;
+    }
+
+    public void free(PageDriver pageDriver) {
+        if (pageDriver == null) {
+            return;
+        }
+
+        PooledPageDriver pooledPageDriver = pageDrivers.get(pageDriver.getId());
+        if (pooledPageDriver == null) {
+            log.warn("PageDriver {} doesn't belong to the pool", pageDriver.getId());
+            return;
+        }
+        int references = pooledPageDriver.release();
+        if (references > 0) {
+            return;
+        } else if (references < 0) {
+            log.warn("PageDriver {} has already been freed", pageDriver.getId());
+            return;
+        }
+        busyPageDrivers.remove(pooledPageDriver.getReference(), pooledPageDriver);
+        releaseHold(pooledPageDriver.getTenant());
+
+        if (cleanAfterUsage || testOnReturn || pooledPageDriver.isExtended()) {
+            //browser work is done in background, page driver stays busy till then
+            cleaner.execute(() -> recycle(pooledPageDriver));
+        } else {
+            returnToIdle(pooledPageDriver);
+            dispatch();
+        }
+    }
+
+    /**
+     * Resets freed page driver and only then returns it to idle ones,
+     * page driver which can't be reset or is invalid is replaced, extended page drivers are closed instead.
+     */
+    private void recycle(PooledPageDriver pooledPageDriver) {
+        PageDriver pageDriver = pooledPageDriver.getPageDriver();
+        if (pooledPageDriver.isExtended()) {
+            pageDrivers.remove(pageDriver.getId());
+            CommandExecutor.executeOnIsolation(pageDriver::close);
+            budget.release();
+            releaseSlot();
+            return;
+        }
+
+        boolean reusable;
+        try {
+            reusable = (!cleanAfterUsage || reset(pageDriver)) && (!testOnReturn || isValid(pooledPageDriver));
+        } catch (RuntimeException e) {
+            log.error(e.getMessage(), e);
+            reusable = false;
+        }
+        if (reusable) {
+            returnToIdle(pooledPageDriver);
+            dispatch();
+            return;
+        }
+        try {
+            //the replacement takes place of the page driver
+            replace(pooledPageDriver);
+        } finally {
+            busyCount.decrementAndGet();
+            dispatch();
+        }
+    }
+
+    /**
+     * Resets the page driver following the reset level, restarting the browser in case the reset fails.
+     *
+     * @return false if neither the reset nor the restart has succeeded
+     */
+    private boolean reset(PageDriver pageDriver) {
+        //template is applied once, after the reset or the restart
+        pageDriver.setSessionTemplate(null);
+        try {
+            try {
+                resetLevel.reset(pageDriver);
+                return true;
+            } catch (RuntimeException e) {
+                String message = e.getMessage();
+                if (e instanceof WebDriverException && message != null && message.contains("is disabled")) {
+                    return true;
+                }
+                log.error("Failed to reset PageDriver " + pageDriver.getId(), e);
             }
+            try {
+                pageDriver.restartBrowser();
+                return true;
+            } catch (RuntimeException e) {
+                log.error("Failed to restart PageDriver " + pageDriver.getId(), e);
+                return false;
+            }
+        } finally {
+            pageDriver.setSessionTemplate(sessionTemplate);
         }
     }
 
@@ -194,11 +1184,25 @@ public class PageDriverPool {
         }
     }
 
+    /**
+     * Closes all the page drivers and stops the pool threads.
+     * Pools which are no longer used should be destroyed explicitly, finalization is only a fallback.
+     */
     public void destroy() {
-        referenceCounter.clear();
-        pageDriverPool.forEach(PageDriver::close);
-        busyPageWrappers.values().forEach(PageDriver::close);
-        extendedPageWrappers.values().forEach(PageDriver::close);
+        for (Waiter waiter : waiters.drain()) {
+            waiter.served.set(true);
+            waiter.future.completeExceptionally(new IllegalStateException("PageDriverPool has been destroyed"));
+        }
+        maintainer.shutdownNow();
+        cleaner.shutdownNow();
+        initializer.shutdownNow();
+        idlePageDrivers.clear();
+        busyPageDrivers.clear();
+        pageDrivers.values().forEach(pooledPageDriver -> {
+            pooledPageDriver.getPageDriver().close();
+            budget.release();
+        });
+        pageDrivers.clear();
     }
 
     @Override
@@ -209,4 +1213,25 @@ public class PageDriverPool {
             super.finalize();
         }
     }
+
+    /**
+     * Runs maintenance of the pool, referencing it weakly so that the scheduled task
+     * doesn't keep abandoned pool reachable and its finalization can destroy it.
+     */
+    private static class Maintenance implements Runnable {
+
+        private final WeakReference<PageDriverPool> pool;
+
+        Maintenance(PageDriverPool pool) {
+            this.pool = new WeakReference<>(pool);
+        }
+
+        @Override
+        public void run() {
+            PageDriverPool pageDriverPool = pool.get();
+            if (pageDriverPool != null) {
+                pageDriverPool.maintain();
+            }
+        }
+    }
 }
@@ -0,0 +1,12 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.PageDriver;
+
+/**
+ * Checks whether pooled PageDriver's browser is still alive and responsive.
+ */
+@FunctionalInterface
+public interface PageDriverValidator {
+
+    boolean isValid(PageDriver pageDriver);
+}
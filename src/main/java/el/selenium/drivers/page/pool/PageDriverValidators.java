@@ -0,0 +1,38 @@
+package el.selenium.drivers.page.pool;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriverException;
+
+/**
+ * Cheap liveness probes for pooled page drivers.
+ */
+public class PageDriverValidators {
+
+    /**
+     * Asks the browser for the current URL, works for all browsers and profiles.
+     */
+    public static PageDriverValidator currentUrl() {
+        return pageDriver -> {
+            try {
+                pageDriver.getDriver().getCurrentUrl();
+                return true;
+            } catch (WebDriverException e) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Executes trivial script in the browser, shouldn't be used with NON_JS profile.
+     */
+    public static PageDriverValidator script() {
+        return pageDriver -> {
+            try {
+                Object result = ((JavascriptExecutor) pageDriver.getDriver()).executeScript("return 1");
+                return result instanceof Number && ((Number) result).intValue() == 1;
+            } catch (WebDriverException e) {
+                return false;
+            }
+        };
+    }
+}
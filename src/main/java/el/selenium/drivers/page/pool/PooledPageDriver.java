@@ -0,0 +1,101 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.PageDriver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds pooling state of single PageDriver.
+ * The page driver is owned by whoever manages to switch idle flag from true to false.
+ */
+class PooledPageDriver {
+
+    private final PageDriver pageDriver;
+
+    /**
+     * Extended page drivers are closed instead of returning to the pool after usage
+     */
+    private final boolean extended;
+
+    private final AtomicBoolean idle = new AtomicBoolean();
+
+    /**
+     * Count of holders sharing the same reference
+     */
+    private final AtomicInteger references = new AtomicInteger();
+
+    private volatile String reference;
+
+    /**
+     * Tenant holding the page driver
+     */
+    private volatile String tenant;
+
+    /**
+     * System nano time when the page driver became idle last time
+     */
+    private volatile long idleSince;
+
+    PooledPageDriver(PageDriver pageDriver, boolean extended) {
+        this.pageDriver = pageDriver;
+        this.extended = extended;
+    }
+
+    PageDriver getPageDriver() {
+        return pageDriver;
+    }
+
+    boolean isExtended() {
+        return extended;
+    }
+
+    /**
+     * @return true if the page driver was idle and now is owned by the caller
+     */
+    boolean claim() {
+        return idle.compareAndSet(true, false);
+    }
+
+    void markIdle() {
+        idleSince = System.nanoTime();
+        idle.set(true);
+    }
+
+    /**
+     * Gives claimed page driver back without resetting its idle time.
+     */
+    void unclaim() {
+        idle.set(true);
+    }
+
+    long getIdleNanos() {
+        return System.nanoTime() - idleSince;
+    }
+
+    boolean isIdle() {
+        return idle.get();
+    }
+
+    void lease(String reference, String tenant) {
+        this.reference = reference;
+        this.tenant = tenant;
+        references.set(1);
+    }
+
+    String getReference() {
+        return reference;
+    }
+
+    String getTenant() {
+        return tenant;
+    }
+
+    int retain() {
+        return references.incrementAndGet();
+    }
+
+    int release() {
+        return references.decrementAndGet();
+    }
+}
@@ -0,0 +1,35 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.PageDriver;
+import el.selenium.utils.CommandExecutor;
+
+/**
+ * Describes how deep page driver is reset after usage, before it's given to the next holder.
+ * Each level includes the previous ones.
+ */
+public enum ResetLevel {
+    COOKIES {
+        @Override
+        public void reset(PageDriver pageDriver) {
+            pageDriver.cleanAllCookies();
+        }
+    },
+    STORAGE {
+        @Override
+        public void reset(PageDriver pageDriver) {
+            COOKIES.reset(pageDriver);
+            //storage might be disabled for the current page
+            CommandExecutor.executeOnIsolation(() -> pageDriver.getLocalStorage().clear());
+            CommandExecutor.executeOnIsolation(() -> pageDriver.getSessionStorage().clear());
+        }
+    },
+    BLANK_PAGE {
+        @Override
+        public void reset(PageDriver pageDriver) {
+            STORAGE.reset(pageDriver);
+            pageDriver.getDriver().get("about:blank");
+        }
+    };
+
+    public abstract void reset(PageDriver pageDriver);
+}
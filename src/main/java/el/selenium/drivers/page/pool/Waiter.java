@@ -0,0 +1,31 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.PageDriver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread or future waiting for page driver.
+ * Waiter is served only by the one which has switched its served flag.
+ */
+class Waiter {
+
+    final String reference;
+    final int priority;
+    final String tenant;
+    final CompletableFuture<PageDriver> future = new CompletableFuture<>();
+    final AtomicBoolean served = new AtomicBoolean();
+    final long arrival = System.nanoTime();
+
+    /**
+     * Order of arrival, assigned by the queue
+     */
+    long sequence;
+
+    Waiter(String reference, int priority, String tenant) {
+        this.reference = reference;
+        this.priority = priority;
+        this.tenant = tenant;
+    }
+}
@@ -0,0 +1,126 @@
+package el.selenium.drivers.page.pool;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Queue of waiters ordered by priority, tenants of the same priority are served in weighted-fair order
+ * and waiters of the same tenant in FIFO order.
+ * Held only for queue bookkeeping, never while talking to the browser.
+ */
+class WaiterQueue {
+
+    /**
+     * Waiters by priority, the highest first, then by tenant
+     */
+    private final NavigableMap<Integer, Map<String, Deque<Waiter>>> waiters = new TreeMap<>(Comparator.reverseOrder());
+
+    private long sequence;
+
+    private volatile int size;
+
+    synchronized void offer(Waiter waiter) {
+        waiter.sequence = sequence++;
+        waiters.computeIfAbsent(waiter.priority, priority -> new LinkedHashMap<>())
+                .computeIfAbsent(waiter.tenant, tenant -> new ArrayDeque<>())
+                .offerLast(waiter);
+        size++;
+    }
+
+    synchronized boolean remove(Waiter waiter) {
+        Map<String, Deque<Waiter>> tenants = waiters.get(waiter.priority);
+        if (tenants == null) {
+            return false;
+        }
+        Deque<Waiter> tenantWaiters = tenants.get(waiter.tenant);
+        if (tenantWaiters == null || !tenantWaiters.remove(waiter)) {
+            return false;
+        }
+        size--;
+        if (tenantWaiters.isEmpty()) {
+            tenants.remove(waiter.tenant);
+            if (tenants.isEmpty()) {
+                waiters.remove(waiter.priority);
+            }
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the next waiter to serve, dropping already served and cancelled ones.
+     * Waiters of the highest priority go first, unless none of their tenants is eligible,
+     * among tenants of the same priority the one with the lowest share goes first,
+     * ties are resolved by order of arrival.
+     *
+     * @param eligible tells whether the tenant might take one more page driver
+     * @param share    current share of the tenant, normalized by its weight
+     */
+    synchronized Waiter peek(Predicate<String> eligible, ToDoubleFunction<String> share) {
+        Iterator<Map<String, Deque<Waiter>>> priorities = waiters.values().iterator();
+        while (priorities.hasNext()) {
+            Map<String, Deque<Waiter>> tenants = priorities.next();
+            Waiter next = null;
+            double nextShare = 0;
+            Iterator<Map.Entry<String, Deque<Waiter>>> iterator = tenants.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Deque<Waiter>> tenant = iterator.next();
+                Deque<Waiter> tenantWaiters = tenant.getValue();
+                while (!tenantWaiters.isEmpty() && isGone(tenantWaiters.peekFirst())) {
+                    tenantWaiters.pollFirst();
+                    size--;
+                }
+                if (tenantWaiters.isEmpty()) {
+                    iterator.remove();
+                    continue;
+                }
+                if (!eligible.test(tenant.getKey())) {
+                    continue;
+                }
+                Waiter head = tenantWaiters.peekFirst();
+                double headShare = share.applyAsDouble(tenant.getKey());
+                if (next == null || headShare < nextShare || (headShare == nextShare && head.sequence < next.sequence)) {
+                    next = head;
+                    nextShare = headShare;
+                }
+            }
+            if (tenants.isEmpty()) {
+                priorities.remove();
+            }
+            if (next != null) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the waiter has been served or has given up
+     */
+    private static boolean isGone(Waiter waiter) {
+        return waiter.served.get() || waiter.future.isCancelled();
+    }
+
+    synchronized List<Waiter> drain() {
+        List<Waiter> drained = new ArrayList<>();
+        waiters.values().forEach(tenants -> tenants.values().forEach(drained::addAll));
+        waiters.clear();
+        size = 0;
+        return drained;
+    }
+
+    synchronized Map<String, Integer> countByTenant() {
+        Map<String, Integer> counts = new HashMap<>();
+        waiters.values().forEach(tenants -> tenants.forEach((tenant, tenantWaiters) ->
+                counts.merge(tenant, tenantWaiters.size(), Integer::sum)));
+        return counts;
+    }
+}
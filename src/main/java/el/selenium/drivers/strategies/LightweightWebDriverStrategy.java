@@ -0,0 +1,26 @@
+package el.selenium.drivers.strategies;
+
+
+import el.selenium.model.ResourceType;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class LightweightWebDriverStrategy implements WebDriverStrategy {
+
+    private final ResourceBlockingPolicy resourceBlockingPolicy = new ResourceBlockingPolicy();
+
+    public LightweightWebDriverStrategy() {
+        resourceBlockingPolicy.setBlockedTypes(ResourceType.IMAGE, ResourceType.FONT, ResourceType.MEDIA, ResourceType.STYLESHEET);
+    }
+
+    @Override
+    public Map<String, Object> getPreferences() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public ResourceBlockingPolicy getResourceBlockingPolicy() {
+        return resourceBlockingPolicy;
+    }
+}
@@ -12,8 +12,15 @@ public class NonJsWebDriverStrategy implements WebDriverStrategy {
         PREFERENCES.put("javascript.enabled", false);
     }
 
+    private final ResourceBlockingPolicy resourceBlockingPolicy = new ResourceBlockingPolicy();
+
     @Override
     public Map<String, Object> getPreferences() {
         return PREFERENCES;
     }
+
+    @Override
+    public ResourceBlockingPolicy getResourceBlockingPolicy() {
+        return resourceBlockingPolicy;
+    }
 }
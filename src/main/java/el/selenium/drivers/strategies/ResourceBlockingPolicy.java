@@ -0,0 +1,125 @@
+package el.selenium.drivers.strategies;
+
+import el.selenium.model.ResourceType;
+
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Describes subresources, which page drivers of the profile strategy don't load.
+ * Resources of blocked types and resources of blocked domains are blocked, in case allowed domains
+ * are set, resources of all other domains are blocked as well. Domains match their subdomains too.
+ * Blocked requests and bytes are counted only by HtmlUnit drivers, which intercept requests within the JVM.
+ * Other browsers block the resources in their own process, so the counters stay zero for them.
+ */
+public class ResourceBlockingPolicy {
+
+    private volatile Set<ResourceType> blockedTypes = Collections.emptySet();
+    private volatile Set<String> blockedDomains = Collections.emptySet();
+    private volatile Set<String> allowedDomains = Collections.emptySet();
+
+    private final LongAdder blockedRequests = new LongAdder();
+    private final LongAdder blockedBytes = new LongAdder();
+
+    public void setBlockedTypes(ResourceType... blockedTypes) {
+        this.blockedTypes = blockedTypes.length == 0
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(blockedTypes)));
+    }
+
+    public void setBlockedDomains(String... blockedDomains) {
+        this.blockedDomains = toDomains(blockedDomains);
+    }
+
+    /**
+     * Sets the only domains, resources of which are loaded, empty allows all the domains.
+     */
+    public void setAllowedDomains(String... allowedDomains) {
+        this.allowedDomains = toDomains(allowedDomains);
+    }
+
+    public Set<ResourceType> getBlockedTypes() {
+        return blockedTypes;
+    }
+
+    public Set<String> getBlockedDomains() {
+        return blockedDomains;
+    }
+
+    public Set<String> getAllowedDomains() {
+        return allowedDomains;
+    }
+
+    public boolean isBlocking(ResourceType resourceType) {
+        return blockedTypes.contains(resourceType);
+    }
+
+    public boolean isEmpty() {
+        return blockedTypes.isEmpty() && blockedDomains.isEmpty() && allowedDomains.isEmpty();
+    }
+
+    /**
+     * Tells whether the resource is blocked by its domain or by type recognized from the URL.
+     */
+    public boolean isBlocked(URL url) {
+        return isBlockedHost(url.getHost()) || blockedTypes.stream().anyMatch(type -> type.matchesPath(url.getPath()));
+    }
+
+    public boolean isBlockedHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        String domain = host.toLowerCase();
+        if (!allowedDomains.isEmpty() && !matches(allowedDomains, domain)) {
+            return true;
+        }
+        return matches(blockedDomains, domain);
+    }
+
+    public boolean isBlockedContentType(String contentType) {
+        return blockedTypes.stream().anyMatch(type -> type.matchesContentType(contentType));
+    }
+
+    /**
+     * Counts blocked request.
+     *
+     * @param bytes bytes of the blocked response, zero if it hasn't been downloaded
+     */
+    public void recordBlocked(long bytes) {
+        blockedRequests.increment();
+        blockedBytes.add(Math.max(0, bytes));
+    }
+
+    /**
+     * Returns count of requests blocked by HtmlUnit drivers of the policy.
+     */
+    public long getBlockedRequests() {
+        return blockedRequests.sum();
+    }
+
+    /**
+     * Returns bytes of responses, which have been downloaded and discarded.
+     * Requests blocked before being sent don't have known size.
+     */
+    public long getBlockedBytes() {
+        return blockedBytes.sum();
+    }
+
+    private static boolean matches(Set<String> domains, String host) {
+        for (String domain : domains) {
+            if (host.equals(domain) || host.endsWith("." + domain)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> toDomains(String... domains) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String domain : domains) {
+            result.add(domain.toLowerCase());
+        }
+        return Collections.unmodifiableSet(result);
+    }
+}
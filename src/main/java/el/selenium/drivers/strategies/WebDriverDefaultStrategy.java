@@ -6,8 +6,15 @@ import java.util.Map;
 
 public class WebDriverDefaultStrategy implements WebDriverStrategy {
 
+    private final ResourceBlockingPolicy resourceBlockingPolicy = new ResourceBlockingPolicy();
+
     @Override
     public Map<String, Object> getPreferences() {
         return Collections.emptyMap();
     }
+
+    @Override
+    public ResourceBlockingPolicy getResourceBlockingPolicy() {
+        return resourceBlockingPolicy;
+    }
 }
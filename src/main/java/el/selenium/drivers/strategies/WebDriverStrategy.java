@@ -5,4 +5,9 @@ import java.util.Map;
 public interface WebDriverStrategy {
 
     Map<String, Object> getPreferences();
+
+    /**
+     * Returns policy of subresources, which page drivers of the strategy don't load.
+     */
+    ResourceBlockingPolicy getResourceBlockingPolicy();
 }
@@ -7,6 +7,7 @@ public class WebDriverStrategyProvider {
 
     private static WebDriverDefaultStrategy webDriverDefaultStrategy = new WebDriverDefaultStrategy();
     private static NonJsWebDriverStrategy nonJsWebDriverStrategy = new NonJsWebDriverStrategy();
+    private static LightweightWebDriverStrategy lightweightWebDriverStrategy = new LightweightWebDriverStrategy();
 
     public static WebDriverStrategy getStrategy(ProfileStrategy profileStrategy) {
         WebDriverStrategy webDriverStrategy = null;
@@ -17,6 +18,9 @@ public class WebDriverStrategyProvider {
             case NON_JS:
                 webDriverStrategy = nonJsWebDriverStrategy;
                 break;
+            case LIGHTWEIGHT:
+                webDriverStrategy = lightweightWebDriverStrategy;
+                break;
             default:
                 new RuntimeException("WebDriver strategy hasn't been found for profile: " + profileStrategy);
         }
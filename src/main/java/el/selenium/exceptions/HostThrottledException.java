@@ -0,0 +1,29 @@
+package el.selenium.exceptions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown when the host scheduler doesn't let the page be opened now,
+ * so that the caller might free the page driver and retry the URL after the delay.
+ */
+public class HostThrottledException extends RuntimeExecutionException {
+
+    private final static long serialVersionUID = 1L;
+
+    private final String host;
+    private final long retryAfter;
+
+    public HostThrottledException(String host, long retryAfter, TimeUnit unit) {
+        super("Host " + host + " is throttled for " + unit.toMillis(retryAfter) + " ms", null);
+        this.host = host;
+        this.retryAfter = unit.toNanos(retryAfter);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public long getRetryAfter(TimeUnit unit) {
+        return unit.convert(retryAfter, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,20 @@
+package el.selenium.exceptions;
+
+/**
+ * Thrown when the host keeps failing and requests to it are rejected without opening the page.
+ */
+public class HostUnavailableException extends RuntimeExecutionException {
+
+    private final static long serialVersionUID = 1L;
+
+    private final String host;
+
+    public HostUnavailableException(String host) {
+        super("Host " + host + " is unavailable, circuit is open", null);
+        this.host = host;
+    }
+
+    public String getHost() {
+        return host;
+    }
+}
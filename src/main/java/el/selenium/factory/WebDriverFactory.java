@@ -2,6 +2,8 @@ package el.selenium.factory;
 
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import el.selenium.drivers.ExtendedHtmlUnitDriver;
+import el.selenium.drivers.strategies.ResourceBlockingPolicy;
+import el.selenium.model.ResourceType;
 import org.openqa.selenium.Platform;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
@@ -15,20 +17,44 @@ import org.openqa.selenium.phantomjs.PhantomJSDriverService;
 import org.openqa.selenium.remote.CapabilityType;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
-import java.util.Arrays;
-import java.util.Map;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class WebDriverFactory {
 
+    /**
+     * Script timeout in seconds of created HtmlUnit drivers, other drivers keep their default
+     */
+    private final static long HTML_UNIT_SCRIPT_TIMEOUT = 150;
+
+    /**
+     * Default script timeout of WebDriver in seconds
+     */
+    private final static long DEFAULT_SCRIPT_TIMEOUT = 30;
+
     public static WebDriver getDriver(Browser browser, Map<String, Object> preferences) {
-        return browser.getDriver(preferences);
+        return getDriver(browser, preferences, new ResourceBlockingPolicy());
+    }
+
+    public static WebDriver getDriver(Browser browser, Map<String, Object> preferences, ResourceBlockingPolicy blockingPolicy) {
+        return browser.getDriver(preferences, blockingPolicy);
+    }
+
+    /**
+     * Returns script timeout in millis the driver has been created with,
+     * so that it might be set back after being changed for single script.
+     */
+    public static long getScriptTimeout(WebDriver driver) {
+        return TimeUnit.SECONDS.toMillis(driver instanceof HtmlUnitDriver ? HTML_UNIT_SCRIPT_TIMEOUT : DEFAULT_SCRIPT_TIMEOUT);
     }
 
     public enum Browser {
         CHROME {
             @Override
-            WebDriver getDriver(Map<String, Object> preferences) {
+            WebDriver getDriver(Map<String, Object> preferences, ResourceBlockingPolicy blockingPolicy) {
                 if (preferences.containsKey("webdriver.chrome.driver")) {
                     System.setProperty("webdriver.chrome.driver", String.valueOf(preferences.get("webdriver.chrome.driver")));
                 }
@@ -59,13 +85,15 @@ public class WebDriverFactory {
                         "--disable-impl-side-painting"
                 ));
 
+                addBlockingOptions(chromeOptions, blockingPolicy);
+
                 capabilities.setCapability(ChromeOptions.CAPABILITY, chromeOptions);
                 return new ChromeDriver(capabilities);
             }
         },
         FIREFOX {
             @Override
-            WebDriver getDriver(Map<String, Object> preferences) {
+            WebDriver getDriver(Map<String, Object> preferences, ResourceBlockingPolicy blockingPolicy) {
                 FirefoxProfile profile = new ProfilesIni().getProfile("default");
                 profile.setPreference("intl.accept_languages", "en-US, en");
                 profile.setPreference("font.language.group", "x-western");
@@ -76,6 +104,26 @@ public class WebDriverFactory {
                 profile.setPreference("browser.cache.offline.enable", false);
                 profile.setPreference("network.http.use-cache", false);
 
+                if (blockingPolicy.isBlocking(ResourceType.IMAGE)) {
+                    profile.setPreference("permissions.default.image", 2);
+                }
+                if (blockingPolicy.isBlocking(ResourceType.STYLESHEET)) {
+                    profile.setPreference("permissions.default.stylesheet", 2);
+                }
+                if (blockingPolicy.isBlocking(ResourceType.FONT)) {
+                    profile.setPreference("browser.display.use_document_fonts", 0);
+                    profile.setPreference("gfx.downloadable_fonts.enabled", false);
+                }
+                if (blockingPolicy.isBlocking(ResourceType.MEDIA)) {
+                    profile.setPreference("media.autoplay.enabled", false);
+                    profile.setPreference("media.preload.default", 0);
+                }
+                if (!blockingPolicy.getBlockedDomains().isEmpty() || !blockingPolicy.getAllowedDomains().isEmpty()) {
+                    //blocked domains are sent to unreachable proxy
+                    profile.setPreference("network.proxy.type", 2);
+                    profile.setPreference("network.proxy.autoconfig_url", "data:text/javascript," + encode(getProxyAutoConfig(blockingPolicy)));
+                }
+
                 for (Map.Entry<String, Object> preference : preferences.entrySet()) {
                     Object value = preference.getValue();
                     if (value instanceof Boolean) {
@@ -99,11 +147,12 @@ public class WebDriverFactory {
         },
         HTML_UNIT {
             @Override
-            WebDriver getDriver(Map<String, Object> preferences) {
+            WebDriver getDriver(Map<String, Object> preferences, ResourceBlockingPolicy blockingPolicy) {
                 BrowserVersion browser = BrowserVersion.FIREFOX_45;
-                HtmlUnitDriver htmlUnitDriver = new ExtendedHtmlUnitDriver(browser);
+                ExtendedHtmlUnitDriver htmlUnitDriver = new ExtendedHtmlUnitDriver(browser);
+                htmlUnitDriver.setResourceBlockingPolicy(blockingPolicy);
                 htmlUnitDriver.manage().timeouts().pageLoadTimeout(150, TimeUnit.SECONDS);
-                htmlUnitDriver.manage().timeouts().setScriptTimeout(150, TimeUnit.SECONDS);
+                htmlUnitDriver.manage().timeouts().setScriptTimeout(HTML_UNIT_SCRIPT_TIMEOUT, TimeUnit.SECONDS);
                 if (preferences.containsKey("javascript.enabled") && !(boolean) preferences.get("javascript.enabled")) {
                     htmlUnitDriver.setJavascriptEnabled(false);
                 } else {
@@ -115,7 +164,7 @@ public class WebDriverFactory {
         },
         PHANTOM_JS {
             @Override
-            WebDriver getDriver(Map<String, Object> preferences) {
+            WebDriver getDriver(Map<String, Object> preferences, ResourceBlockingPolicy blockingPolicy) {
                 // prepare capabilities
                 DesiredCapabilities capabilities = new DesiredCapabilities();
                 capabilities.setCapability(
@@ -127,15 +176,126 @@ public class WebDriverFactory {
                 capabilities.setCapability("takesScreenshot", true);    //< yeah, GhostDriver haz screenshots!
                 capabilities.setCapability("phantomjs.page.settings.userAgent", "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:25.0) Gecko/20100101 Firefox/25.0");
 
+                if (blockingPolicy.isBlocking(ResourceType.IMAGE)) {
+                    capabilities.setCapability("phantomjs.page.settings.loadImages", false);
+                }
+
                 // Launch driver (will take care and ownership of the phantomjs process)
-                return new PhantomJSDriver(capabilities);
+                PhantomJSDriver phantomJSDriver = new PhantomJSDriver(capabilities);
+                if (!blockingPolicy.isEmpty()) {
+                    phantomJSDriver.executePhantomJS(getPhantomJSBlockingScript(blockingPolicy));
+                }
+                return phantomJSDriver;
             }
         };
 
-        abstract WebDriver getDriver(Map<String, Object> preferences);
+        abstract WebDriver getDriver(Map<String, Object> preferences, ResourceBlockingPolicy blockingPolicy);
 
         public static Browser getDefault() {
             return FIREFOX;
         }
     }
+
+    /**
+     * Blocks images, remote fonts, autoplayed media and domains of the policy in Chrome.
+     * Chrome has no switch for stylesheets and for media started by the page, they're still loaded.
+     */
+    static void addBlockingOptions(ChromeOptions chromeOptions, ResourceBlockingPolicy blockingPolicy) {
+        if (blockingPolicy.isBlocking(ResourceType.IMAGE)) {
+            addPreferences(chromeOptions, Collections.singletonMap("profile.managed_default_content_settings.images", 2));
+            chromeOptions.addArguments("--blink-settings=imagesEnabled=false");
+        }
+        if (blockingPolicy.isBlocking(ResourceType.FONT)) {
+            chromeOptions.addArguments("--disable-remote-fonts");
+        }
+        if (blockingPolicy.isBlocking(ResourceType.MEDIA)) {
+            chromeOptions.addArguments("--autoplay-policy=user-gesture-required");
+        }
+        String hostResolverRules = getHostResolverRules(blockingPolicy);
+        if (hostResolverRules != null) {
+            chromeOptions.addArguments("--host-resolver-rules=" + hostResolverRules);
+        }
+    }
+
+    /**
+     * Adds the preferences to the Chrome preferences of the options, keeping the ones set before.
+     */
+    @SuppressWarnings("unchecked")
+    static void addPreferences(ChromeOptions chromeOptions, Map<String, Object> preferences) {
+        Object existing = chromeOptions.getExperimentalOption("prefs");
+        Map<String, Object> chromePreferences = existing instanceof Map ? new HashMap<>((Map<String, Object>) existing) : new HashMap<>();
+        chromePreferences.putAll(preferences);
+        chromeOptions.setExperimentalOption("prefs", chromePreferences);
+    }
+
+    /**
+     * Maps blocked domains to unresolvable address, in case of allowed domains maps all other domains instead.
+     */
+    private static String getHostResolverRules(ResourceBlockingPolicy blockingPolicy) {
+        List<String> rules = new ArrayList<>();
+        if (!blockingPolicy.getAllowedDomains().isEmpty()) {
+            rules.add("MAP * ~NOTFOUND");
+            for (String domain : blockingPolicy.getAllowedDomains()) {
+                if (!blockingPolicy.isBlockedHost(domain)) {
+                    rules.add("EXCLUDE " + domain);
+                    rules.add("EXCLUDE *." + domain);
+                }
+            }
+        } else {
+            for (String domain : blockingPolicy.getBlockedDomains()) {
+                rules.add("MAP " + domain + " ~NOTFOUND");
+                rules.add("MAP *." + domain + " ~NOTFOUND");
+            }
+        }
+        return rules.isEmpty() ? null : String.join(", ", rules);
+    }
+
+    private static String getProxyAutoConfig(ResourceBlockingPolicy blockingPolicy) {
+        return "function FindProxyForURL(url, host) {" +
+                getDomainCheck(blockingPolicy) +
+                " return blocked ? 'PROXY 127.0.0.1:9' : 'DIRECT'; }";
+    }
+
+    /**
+     * Aborts requests of blocked domains and types, counted by URL extension, in page of PhantomJS.
+     */
+    private static String getPhantomJSBlockingScript(ResourceBlockingPolicy blockingPolicy) {
+        List<String> extensions = new ArrayList<>();
+        blockingPolicy.getBlockedTypes().forEach(type -> extensions.addAll(type.getExtensions()));
+        return "var page = this;" +
+                "var extensions = " + toJsArray(extensions) + ";" +
+                "page.onResourceRequested = function(requestData, networkRequest) {" +
+                " if (requestData.id === 1) return;" +
+                " var url = requestData.url; var host = url.split('/')[2] || ''; host = host.split(':')[0].toLowerCase();" +
+                getDomainCheck(blockingPolicy) +
+                " var path = url.split('?')[0].split('#')[0].toLowerCase();" +
+                " var extension = path.lastIndexOf('.') > path.lastIndexOf('/') ? path.substring(path.lastIndexOf('.') + 1) : '';" +
+                " if (blocked || extensions.indexOf(extension) >= 0) networkRequest.abort();" +
+                "};";
+    }
+
+    /**
+     * Declares blocked variable, telling whether host is blocked by domain lists of the policy.
+     */
+    private static String getDomainCheck(ResourceBlockingPolicy blockingPolicy) {
+        return " var matches = function(domains) { for (var i = 0; i < domains.length; i++) {" +
+                " if (host === domains[i] || host.slice(-domains[i].length - 1) === '.' + domains[i]) return true; }" +
+                " return false; };" +
+                " var allowed = " + toJsArray(blockingPolicy.getAllowedDomains()) + ";" +
+                " var blocked = (allowed.length > 0 && !matches(allowed)) || matches(" + toJsArray(blockingPolicy.getBlockedDomains()) + ");";
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toJsArray(Collection<String> values) {
+        return values.stream()
+                .map(value -> "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
 }
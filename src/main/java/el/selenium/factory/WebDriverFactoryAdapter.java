@@ -11,6 +11,6 @@ public class WebDriverFactoryAdapter {
 
     public static WebDriver getWebDriver(Browser browser, ProfileStrategy profileStrategy) {
         WebDriverStrategy strategy = WebDriverStrategyProvider.getStrategy(profileStrategy);
-        return WebDriverFactory.getDriver(browser, strategy.getPreferences());
+        return WebDriverFactory.getDriver(browser, strategy.getPreferences(), strategy.getResourceBlockingPolicy());
     }
 }
@@ -0,0 +1,21 @@
+package el.selenium.model;
+
+/**
+ * State of the element on the page, found by probe.
+ */
+public enum ElementState {
+    ABSENT,
+    /**
+     * Element is present, but isn't displayed
+     */
+    PRESENT,
+    VISIBLE;
+
+    public boolean isPresent() {
+        return this != ABSENT;
+    }
+
+    public boolean isVisible() {
+        return this == VISIBLE;
+    }
+}
@@ -0,0 +1,64 @@
+package el.selenium.model;
+
+import java.util.*;
+
+/**
+ * Values of several elements read at once, stored by column.
+ * Each column holds one value per element, in order of the elements.
+ */
+public class ElementTable {
+
+    private final Map<String, List<String>> columns = new LinkedHashMap<>();
+    private final int size;
+
+    public ElementTable(int size) {
+        this.size = size;
+    }
+
+    public void setColumn(String name, List<String> values) {
+        if (values.size() != size) {
+            throw new IllegalArgumentException("Column " + name + " has " + values.size() + " values instead of " + size);
+        }
+        columns.put(name, values);
+    }
+
+    /**
+     * Returns count of elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    public Set<String> getColumnNames() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    public List<String> getColumn(String name) {
+        List<String> values = columns.get(name);
+        if (values == null) {
+            throw new IllegalArgumentException("No column " + name);
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    public String getValue(int index, String name) {
+        return getColumn(name).get(index);
+    }
+
+    /**
+     * Returns values of single element by column name.
+     */
+    public Map<String, String> getRow(int index) {
+        Map<String, String> row = new LinkedHashMap<>();
+        columns.forEach((name, values) -> row.put(name, values.get(index)));
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return "ElementTable{" +
+                "size=" + size +
+                ", columns=" + columns +
+                '}';
+    }
+}
@@ -0,0 +1,56 @@
+package el.selenium.model;
+
+import org.apache.http.annotation.Immutable;
+
+/**
+ * Breakdown of page load time, all values are milliseconds.
+ * DNS and connect are durations of the phases, the rest are measured from navigation start.
+ * Phases, which the browser doesn't report, are null.
+ */
+@Immutable
+public class NavigationTiming {
+    private final Double dns;
+    private final Double connect;
+    private final Double timeToFirstByte;
+    private final Double domContentLoaded;
+    private final Double load;
+
+    public NavigationTiming(Double dns, Double connect, Double timeToFirstByte, Double domContentLoaded, Double load) {
+        this.dns = dns;
+        this.connect = connect;
+        this.timeToFirstByte = timeToFirstByte;
+        this.domContentLoaded = domContentLoaded;
+        this.load = load;
+    }
+
+    public Double getDns() {
+        return dns;
+    }
+
+    public Double getConnect() {
+        return connect;
+    }
+
+    public Double getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    public Double getDomContentLoaded() {
+        return domContentLoaded;
+    }
+
+    public Double getLoad() {
+        return load;
+    }
+
+    @Override
+    public String toString() {
+        return "NavigationTiming{" +
+                "dns=" + dns +
+                ", connect=" + connect +
+                ", timeToFirstByte=" + timeToFirstByte +
+                ", domContentLoaded=" + domContentLoaded +
+                ", load=" + load +
+                '}';
+    }
+}
@@ -1,6 +1,7 @@
 package el.selenium.model;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
 
 public class ProcessedRequest {
     private String originalURL;
@@ -8,6 +9,9 @@ public class ProcessedRequest {
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private Long latencyBySeconds;
+    private Long latencyNanos;
+    private NavigationTiming navigationTiming;
+    private Integer statusCode;
 
     public ProcessedRequest(String originalURL) {
         this.originalURL = originalURL;
@@ -34,6 +38,22 @@ public class ProcessedRequest {
         this.latencyBySeconds = requestTime;
     }
 
+    /**
+     * Sets latency in nanoseconds, latency by seconds is derived from it.
+     */
+    public void setLatencyNanos(Long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+        this.latencyBySeconds = latencyNanos == null ? null : TimeUnit.NANOSECONDS.toSeconds(latencyNanos);
+    }
+
+    public void setNavigationTiming(NavigationTiming navigationTiming) {
+        this.navigationTiming = navigationTiming;
+    }
+
+    public void setStatusCode(Integer statusCode) {
+        this.statusCode = statusCode;
+    }
+
     public String getOriginalURL() {
         return originalURL;
     }
@@ -54,6 +74,24 @@ public class ProcessedRequest {
         return latencyBySeconds;
     }
 
+    public Long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return breakdown of page load time reported by the browser or null if it isn't available
+     */
+    public NavigationTiming getNavigationTiming() {
+        return navigationTiming;
+    }
+
+    /**
+     * @return status code of the page response or null if the browser doesn't report it
+     */
+    public Integer getStatusCode() {
+        return statusCode;
+    }
+
     @Override
     public String toString() {
         return "RequestProcessData{" +
@@ -62,6 +100,9 @@ public class ProcessedRequest {
                 ", startTime=" + startTime +
                 ", endTime=" + endTime +
                 ", requestTime=" + latencyBySeconds +
+                ", latencyNanos=" + latencyNanos +
+                ", navigationTiming=" + navigationTiming +
+                ", statusCode=" + statusCode +
                 '}';
     }
 }
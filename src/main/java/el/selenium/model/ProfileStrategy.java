@@ -2,5 +2,9 @@ package el.selenium.model;
 
 public enum ProfileStrategy {
     DEFAULT,
-    NON_JS
+    NON_JS,
+    /**
+     * JavaScript is enabled, images, fonts, media and stylesheets aren't loaded
+     */
+    LIGHTWEIGHT
 }
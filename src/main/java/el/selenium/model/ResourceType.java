@@ -0,0 +1,44 @@
+package el.selenium.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Types of page subresources, which might be blocked from loading.
+ * Type is recognized by extension of the URL path or by content type of the response.
+ */
+public enum ResourceType {
+    IMAGE(Arrays.asList("png", "jpg", "jpeg", "gif", "webp", "svg", "ico", "bmp"),
+            Arrays.asList("image/")),
+    FONT(Arrays.asList("woff", "woff2", "ttf", "otf", "eot"),
+            Arrays.asList("font/", "application/font", "application/x-font", "application/vnd.ms-fontobject")),
+    MEDIA(Arrays.asList("mp4", "webm", "ogg", "ogv", "mp3", "wav", "m4a", "avi", "mov"),
+            Arrays.asList("video/", "audio/")),
+    STYLESHEET(Arrays.asList("css"),
+            Arrays.asList("text/css"));
+
+    private final List<String> extensions;
+    private final List<String> contentTypes;
+
+    ResourceType(List<String> extensions, List<String> contentTypes) {
+        this.extensions = extensions;
+        this.contentTypes = contentTypes;
+    }
+
+    public List<String> getExtensions() {
+        return extensions;
+    }
+
+    public boolean matchesPath(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 && dot > path.lastIndexOf('/') && extensions.contains(path.substring(dot + 1).toLowerCase());
+    }
+
+    public boolean matchesContentType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return contentTypes.stream().anyMatch(type::startsWith);
+    }
+}
@@ -0,0 +1,24 @@
+package el.selenium.model.storage;
+
+import java.util.Map;
+
+/**
+ * Web storage moved as a whole, each operation is single script call.
+ */
+public interface BulkStorage {
+
+    /**
+     * Returns all the items of the storage.
+     */
+    Map<String, String> snapshot();
+
+    /**
+     * Replaces all the items of the storage by the given ones.
+     */
+    void restore(Map<String, String> items);
+
+    /**
+     * Sets all the given items, keeping the other items of the storage.
+     */
+    void putAll(Map<String, String> items);
+}
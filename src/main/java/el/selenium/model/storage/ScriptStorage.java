@@ -0,0 +1,89 @@
+package el.selenium.model.storage;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.util.*;
+
+/**
+ * Web storage of the page accessed by scripts, keys and values are passed as script arguments.
+ * Bulk operations move the whole store in single script call.
+ */
+abstract class ScriptStorage implements BulkStorage {
+
+    private final static String GET_ITEM_SCRIPT = "return window[arguments[0]].getItem(arguments[1]);";
+    private final static String SET_ITEM_SCRIPT = "window[arguments[0]].setItem(arguments[1], arguments[2]);";
+    private final static String REMOVE_ITEM_SCRIPT =
+            "var storage = window[arguments[0]], item = storage.getItem(arguments[1]);" +
+            "storage.removeItem(arguments[1]);" +
+            "return item;";
+    private final static String KEYS_SCRIPT =
+            "var storage = window[arguments[0]], keys = [];" +
+            "for (var i = 0; i < storage.length; i++) keys.push(storage.key(i));" +
+            "return keys;";
+    private final static String SNAPSHOT_SCRIPT =
+            "var storage = window[arguments[0]], items = {};" +
+            "for (var i = 0; i < storage.length; i++) { var key = storage.key(i); items[key] = storage.getItem(key); }" +
+            "return items;";
+    private final static String PUT_ALL_SCRIPT =
+            "var storage = window[arguments[0]], items = arguments[1];" +
+            "if (arguments[2]) storage.clear();" +
+            "for (var key in items) { if (items.hasOwnProperty(key)) storage.setItem(key, items[key]); }";
+    private final static String CLEAR_SCRIPT = "window[arguments[0]].clear();";
+    private final static String SIZE_SCRIPT = "return window[arguments[0]].length;";
+
+    private final JavascriptExecutor js;
+    private final String storage;
+
+    /**
+     * @param storage name of the storage object of window
+     */
+    ScriptStorage(WebDriver webDriver, String storage) {
+        this.js = (JavascriptExecutor) webDriver;
+        this.storage = storage;
+    }
+
+    public String getItem(String key) {
+        return (String) js.executeScript(GET_ITEM_SCRIPT, storage, key);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<String> keySet() {
+        return new HashSet<>((List<String>) js.executeScript(KEYS_SCRIPT, storage));
+    }
+
+    public void setItem(String key, String value) {
+        js.executeScript(SET_ITEM_SCRIPT, storage, key, value);
+    }
+
+    public String removeItem(String key) {
+        return (String) js.executeScript(REMOVE_ITEM_SCRIPT, storage, key);
+    }
+
+    public void clear() {
+        js.executeScript(CLEAR_SCRIPT, storage);
+    }
+
+    public int size() {
+        return ((Number) js.executeScript(SIZE_SCRIPT, storage)).intValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, String> snapshot() {
+        Map<String, Object> items = (Map<String, Object>) js.executeScript(SNAPSHOT_SCRIPT, storage);
+        Map<String, String> snapshot = new LinkedHashMap<>();
+        items.forEach((key, value) -> snapshot.put(key, value == null ? null : String.valueOf(value)));
+        return snapshot;
+    }
+
+    @Override
+    public void restore(Map<String, String> items) {
+        js.executeScript(PUT_ALL_SCRIPT, storage, items, true);
+    }
+
+    @Override
+    public void putAll(Map<String, String> items) {
+        js.executeScript(PUT_ALL_SCRIPT, storage, items, false);
+    }
+}
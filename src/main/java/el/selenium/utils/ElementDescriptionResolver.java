@@ -9,9 +9,8 @@ import el.selenium.drivers.page.PageDriver;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -105,7 +104,7 @@ public class ElementDescriptionResolver {
     }
 
     public static void waitElement(WebDriver driver, By bySelector, long timeout) {
-        (new WebDriverWait(driver, timeout))
-                .until(ExpectedConditions.visibilityOfElementLocated(bySelector));
+        ElementWaiter.waitElement(driver, null, Collections.singletonList(new ElementDescription(bySelector)),
+                true, timeout, ElementWaiter.isAsyncScriptSupported(driver));
     }
 }
@@ -0,0 +1,140 @@
+package el.selenium.utils;
+
+import el.selenium.model.ElementDescription;
+import el.selenium.model.ListElementDescription;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebElement;
+
+import java.util.*;
+
+/**
+ * Compiles chain of element descriptions into single browser side query, resolving the whole chain
+ * in one script call instead of one find call per description.
+ * Supports id, name, class name, css, tag name, xpath, link text and partial link text selectors
+ * and list indexes, chains with other selectors aren't compiled.
+ */
+public class ElementQueryCompiler {
+
+    /**
+     * Defines query function resolving steps one by one starting from the context element or the document,
+     * each step except the last one narrows the context to single element.
+     * The function returns null if any of the steps finds nothing.
+     */
+    final static String QUERY_FUNCTION =
+            "var toArray = function(list) { return Array.prototype.slice.call(list); };" +
+            "var descendants = function(root) { return toArray(root.getElementsByTagName('*')); };" +
+            "var linkText = function(e) { var text = e.innerText !== undefined ? e.innerText : e.textContent;" +
+            " return (text || '').replace(/^\\s+|\\s+$/g, ''); };" +
+            "var find = function(root, type, value) {" +
+            " switch (type) {" +
+            "  case 'id': return descendants(root).filter(function(e) { return e.id === value; });" +
+            "  case 'name': return descendants(root).filter(function(e) { return e.getAttribute('name') === value; });" +
+            "  case 'className': return toArray(root.getElementsByClassName(value));" +
+            "  case 'cssSelector': return toArray(root.querySelectorAll(value));" +
+            "  case 'tagName': return toArray(root.getElementsByTagName(value));" +
+            "  case 'linkText': return toArray(root.getElementsByTagName('a')).filter(function(e) { return linkText(e) === value; });" +
+            "  case 'partialLinkText': return toArray(root.getElementsByTagName('a')).filter(function(e) { return linkText(e).indexOf(value) >= 0; });" +
+            "  case 'xpath':" +
+            "   var snapshot = document.evaluate(value, root, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null), found = [];" +
+            "   for (var i = 0; i < snapshot.snapshotLength; i++) {" +
+            "    if (snapshot.snapshotItem(i).nodeType === 1) found.push(snapshot.snapshotItem(i));" +
+            "   }" +
+            "   return found;" +
+            " }" +
+            " return null;" +
+            "};" +
+            "var query = function(steps, all, context) {" +
+            " for (var i = 0; i < steps.length; i++) {" +
+            "  var step = steps[i], found = find(context || document, step.type, step.value);" +
+            "  if (!found) return null;" +
+            "  if (all && i === steps.length - 1 && step.index < 0) return found;" +
+            "  context = found[step.index < 0 ? 0 : step.index];" +
+            "  if (!context) return null;" +
+            " }" +
+            " return context;" +
+            "};";
+
+    /**
+     * Defines visible function, checking the element is rendered and not hidden
+     */
+    final static String VISIBLE_FUNCTION =
+            "var visible = function(e) {" +
+            " if (!e.getClientRects().length) return false;" +
+            " var style = window.getComputedStyle(e);" +
+            " return style.visibility !== 'hidden' && style.display !== 'none';" +
+            "};";
+
+    private final static String QUERY_SCRIPT = QUERY_FUNCTION +
+            "return query(arguments[0], arguments[1], arguments[2] || null);";
+
+    /**
+     * Selector types by prefix of By.toString()
+     */
+    private final static Map<String, String> SELECTOR_TYPES = new LinkedHashMap<>();
+
+    static {
+        SELECTOR_TYPES.put("By.id: ", "id");
+        SELECTOR_TYPES.put("By.name: ", "name");
+        SELECTOR_TYPES.put("By.className: ", "className");
+        SELECTOR_TYPES.put("By.cssSelector: ", "cssSelector");
+        SELECTOR_TYPES.put("By.tagName: ", "tagName");
+        SELECTOR_TYPES.put("By.xpath: ", "xpath");
+        SELECTOR_TYPES.put("By.linkText: ", "linkText");
+        SELECTOR_TYPES.put("By.partialLinkText: ", "partialLinkText");
+    }
+
+    /**
+     * Compiles the descriptions into steps of the query.
+     *
+     * @return steps or null if any of the selectors isn't supported
+     */
+    public static List<Map<String, Object>> compile(List<ElementDescription> elementDescriptions) {
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (ElementDescription elementDescription : elementDescriptions) {
+            Map<String, Object> step = compile(elementDescription.getSelector());
+            if (step == null) {
+                return null;
+            }
+            step.put("index", elementDescription instanceof ListElementDescription
+                    ? ((ListElementDescription) elementDescription).getIndex()
+                    : -1);
+            steps.add(step);
+        }
+        return steps;
+    }
+
+    /**
+     * Resolves single element of the steps, starting from the context element or from the document.
+     *
+     * @return element or null if any of the steps has found nothing
+     */
+    public static WebElement findElement(JavascriptExecutor executor, WebElement context, List<Map<String, Object>> steps) {
+        Object result = executor.executeScript(QUERY_SCRIPT, steps, false, context);
+        return result instanceof WebElement ? (WebElement) result : null;
+    }
+
+    /**
+     * Resolves all the elements of the last step, the previous steps are resolved to single element.
+     *
+     * @return elements or null if any of the previous steps has found nothing
+     */
+    @SuppressWarnings("unchecked")
+    public static List<WebElement> findElements(JavascriptExecutor executor, WebElement context, List<Map<String, Object>> steps) {
+        Object result = executor.executeScript(QUERY_SCRIPT, steps, true, context);
+        return result instanceof List ? (List<WebElement>) result : null;
+    }
+
+    private static Map<String, Object> compile(By selector) {
+        String description = selector.toString();
+        for (Map.Entry<String, String> selectorType : SELECTOR_TYPES.entrySet()) {
+            if (description.startsWith(selectorType.getKey())) {
+                Map<String, Object> step = new HashMap<>();
+                step.put("type", selectorType.getValue());
+                step.put("value", description.substring(selectorType.getKey().length()));
+                return step;
+            }
+        }
+        return null;
+    }
+}
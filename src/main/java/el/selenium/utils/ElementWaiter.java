@@ -0,0 +1,336 @@
+package el.selenium.utils;
+
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ElementDescription;
+import el.selenium.model.ElementState;
+import el.selenium.model.ListElementDescription;
+import org.openqa.selenium.*;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.openqa.selenium.support.ui.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Waits driven by DOM mutations instead of fixed interval polling.
+ * The wait installs MutationObserver by async script, which checks the elements on each mutation of the page
+ * and returns as soon as they match, without any command sent to the driver meanwhile.
+ * Falls back to polling for drivers without async scripts and for selectors which can't be compiled.
+ * Several candidates might be waited at once, returning as soon as any of them matches.
+ * Script timeout of the driver is raised only for the time of the wait and set back to the one the driver has been created with.
+ */
+public class ElementWaiter {
+
+    private final static Logger log = LoggerFactory.getLogger(ElementWaiter.class);
+
+    /**
+     * Max millis single async script waits, longer waits are split into several scripts
+     */
+    public final static long MAX_ASYNC_WAIT = TimeUnit.SECONDS.toMillis(20);
+
+    /**
+     * Millis of script timeout set during the wait, so that the script returns by itself before the driver interrupts it
+     */
+    private final static long WAIT_SCRIPT_TIMEOUT = MAX_ASYNC_WAIT + TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * Min interval between checks on continuously mutating page
+     */
+    private final static long MIN_CHECK_INTERVAL = 50;
+
+    /**
+     * Count of consecutive sleeps ended by mutation within the min check interval,
+     * after which the page is considered continuously mutating
+     */
+    private final static int MAX_BUSY_SLEEPS = 3;
+
+    private final static String UNSUPPORTED = "unsupported";
+
+    private final static String MUTATED = "mutated";
+
+    /**
+     * Returns the elements of candidates as soon as any of them matches, null for candidates not matched,
+     * or returns null on timeout
+     */
+    private final static String WAIT_ANY_SCRIPT = ElementQueryCompiler.QUERY_FUNCTION + ElementQueryCompiler.VISIBLE_FUNCTION +
+            "var candidates = arguments[0], context = arguments[1] || null, mustBeVisible = arguments[2], timeout = arguments[3];" +
+            "var callback = arguments[arguments.length - 1];" +
+            "var check = function() {" +
+            " var matched = false, elements = candidates.map(function(steps) {" +
+            "  var e = query(steps, false, context);" +
+            "  if (e && (!mustBeVisible || visible(e))) { matched = true; return e; }" +
+            "  return null;" +
+            " });" +
+            " return matched ? elements : null;" +
+            "};" +
+            "var found = check();" +
+            "if (found) { callback(found); return; }" +
+            "if (typeof MutationObserver === 'undefined') { callback('" + UNSUPPORTED + "'); return; }" +
+            "var done = false, scheduled = null, lastCheck = Date.now(), observer, timer;" +
+            "var finish = function(e) {" +
+            " if (done) return;" +
+            " done = true; observer.disconnect(); clearTimeout(timer); clearTimeout(scheduled); callback(e);" +
+            "};" +
+            "var recheck = function() { scheduled = null; lastCheck = Date.now(); var e = check(); if (e) finish(e); };" +
+            "observer = new MutationObserver(function() {" +
+            " if (scheduled === null) scheduled = setTimeout(recheck, Math.max(0, lastCheck + " + MIN_CHECK_INTERVAL + " - Date.now()));" +
+            "});" +
+            "observer.observe(document, {childList: true, subtree: true, attributes: true, characterData: true});" +
+            "timer = setTimeout(function() { finish(check()); }, timeout);";
+
+    /**
+     * Returns state of each candidate, 0 if absent, 1 if present and 2 if visible
+     */
+    private final static String PROBE_SCRIPT = ElementQueryCompiler.QUERY_FUNCTION + ElementQueryCompiler.VISIBLE_FUNCTION +
+            "return arguments[0].map(function(steps) {" +
+            " var e = query(steps, false, null);" +
+            " return !e ? 0 : visible(e) ? 2 : 1;" +
+            "});";
+
+    /**
+     * Returns on the first mutation of the page or after the given time.
+     */
+    private final static String WAIT_MUTATION_SCRIPT =
+            "var timeout = arguments[0], callback = arguments[arguments.length - 1];" +
+            "if (typeof MutationObserver === 'undefined') { callback('" + UNSUPPORTED + "'); return; }" +
+            "var done = false, observer, timer;" +
+            "var finish = function(result) {" +
+            " if (done) return;" +
+            " done = true; observer.disconnect(); clearTimeout(timer); callback(result);" +
+            "};" +
+            "observer = new MutationObserver(function() { finish('" + MUTATED + "'); });" +
+            "observer.observe(document, {childList: true, subtree: true, attributes: true, characterData: true});" +
+            "timer = setTimeout(function() { finish('timeout'); }, timeout);";
+
+    /**
+     * @return whether the driver is able to run async scripts
+     */
+    public static boolean isAsyncScriptSupported(WebDriver driver) {
+        return driver instanceof JavascriptExecutor
+                && !(driver instanceof HtmlUnitDriver && !((HtmlUnitDriver) driver).isJavascriptEnabled());
+    }
+
+    /**
+     * Waits till the element described by the path is present in the context, and visible if requested.
+     *
+     * @param context     element to search in or null to search in the document
+     * @param timeout     timeout in seconds
+     * @param asyncScript whether the driver should wait by async script, otherwise it's polled
+     * @throws TimeoutException if the element isn't found in time
+     */
+    public static WebElement waitElement(WebDriver driver, WebElement context, List<ElementDescription> path,
+                                         boolean visible, long timeout, boolean asyncScript) {
+        return waitAny(driver, context, Collections.singletonList(path), visible, timeout, asyncScript).get(0);
+    }
+
+    /**
+     * Waits till any of the candidate paths matches, all the candidates are checked at once on each mutation or poll.
+     *
+     * @return elements of the candidates in the same order, null for candidates not matched
+     * @throws TimeoutException if none of the candidates is found in time
+     */
+    @SuppressWarnings("unchecked")
+    public static List<WebElement> waitAny(WebDriver driver, WebElement context, List<List<ElementDescription>> paths,
+                                           boolean visible, long timeout, boolean asyncScript) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        List<List<Map<String, Object>>> candidates = asyncScript ? compile(paths) : null;
+        if (candidates != null) {
+            WebDriver.Timeouts timeouts = driver.manage().timeouts();
+            try {
+                timeouts.setScriptTimeout(WAIT_SCRIPT_TIMEOUT, TimeUnit.MILLISECONDS);
+                Object result;
+                long remaining = deadline - System.nanoTime();
+                do {
+                    result = ((JavascriptExecutor) driver).executeAsyncScript(WAIT_ANY_SCRIPT,
+                            candidates, context, visible, Math.max(0, Math.min(TimeUnit.NANOSECONDS.toMillis(remaining), MAX_ASYNC_WAIT)));
+                    if (result instanceof List) {
+                        return (List<WebElement>) result;
+                    }
+                    remaining = deadline - System.nanoTime();
+                } while (!UNSUPPORTED.equals(result) && remaining > 0);
+                if (!UNSUPPORTED.equals(result)) {
+                    throw new TimeoutException("Timed out after " + timeout + " seconds waiting for " + describe(paths, visible));
+                }
+            } catch (StaleElementReferenceException | TimeoutException e) {
+                throw e;
+            } catch (WebDriverException e) {
+                //navigation or the driver not supporting async scripts, polling the rest of time
+                log.debug("Failed to wait by mutation observer, polling: {}", e.getMessage());
+            } finally {
+                restoreScriptTimeout(driver, timeouts);
+            }
+        }
+
+        FluentWait<WebDriver> wait = new WebDriverWait(driver, timeout)
+                .withTimeout(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                .withMessage(describe(paths, visible));
+        if (context == null) {
+            wait.ignoring(StaleElementReferenceException.class);
+        }
+        return wait.until((ExpectedCondition<List<WebElement>>) webDriver -> {
+            List<WebElement> webElements = paths.stream()
+                    .map(path -> findElement(webDriver, context, path))
+                    .map(webElement -> webElement != null && (!visible || webElement.isDisplayed()) ? webElement : null)
+                    .collect(Collectors.toList());
+            return webElements.stream().anyMatch(Objects::nonNull) ? webElements : null;
+        });
+    }
+
+    /**
+     * Checks state of each of the paths without waiting, in single script call if the driver supports scripts.
+     *
+     * @param javascript whether the driver might run scripts, otherwise the paths are checked one by one
+     */
+    public static List<ElementState> probe(WebDriver driver, List<List<ElementDescription>> paths, boolean javascript) {
+        List<List<Map<String, Object>>> candidates = javascript ? compile(paths) : null;
+        if (candidates != null) {
+            try {
+                Object result = ((JavascriptExecutor) driver).executeScript(PROBE_SCRIPT, candidates);
+                if (result instanceof List && ((List<?>) result).size() == paths.size()) {
+                    return ((List<?>) result).stream()
+                            .map(state -> ElementState.values()[((Number) state).intValue()])
+                            .collect(Collectors.toList());
+                }
+            } catch (WebDriverException e) {
+                log.debug("Failed to probe elements by script, probing one by one: {}", e.getMessage());
+            }
+        }
+        return paths.stream()
+                .map(path -> {
+                    try {
+                        WebElement webElement = findElement(driver, null, path);
+                        return webElement == null ? ElementState.ABSENT
+                                : webElement.isDisplayed() ? ElementState.VISIBLE : ElementState.PRESENT;
+                    } catch (StaleElementReferenceException e) {
+                        return ElementState.ABSENT;
+                    }
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Waits for the condition, checking it on mutations of the page instead of fixed interval if the driver supports async scripts.
+     * The condition isn't checked more often than the default polling interval.
+     *
+     * @param timeout timeout in seconds
+     */
+    public static <T> T waitCondition(WebDriver driver, ExpectedCondition<T> expectedCondition, long timeout, boolean asyncScript) {
+        if (!asyncScript) {
+            return new WebDriverWait(driver, timeout).until(expectedCondition);
+        }
+        MutationSleeper sleeper = new MutationSleeper(driver);
+        try {
+            return new WebDriverWait(driver, new SystemClock(), sleeper, timeout, WebDriverWait.DEFAULT_SLEEP_TIMEOUT)
+                    .until(expectedCondition);
+        } finally {
+            if (sleeper.timeouts != null) {
+                restoreScriptTimeout(driver, sleeper.timeouts);
+            }
+        }
+    }
+
+    private static void restoreScriptTimeout(WebDriver driver, WebDriver.Timeouts timeouts) {
+        try {
+            timeouts.setScriptTimeout(WebDriverFactory.getScriptTimeout(driver), TimeUnit.MILLISECONDS);
+        } catch (WebDriverException e) {
+            log.debug("Failed to restore script timeout: {}", e.getMessage());
+        }
+    }
+
+    private static WebElement findElement(WebDriver driver, WebElement context, List<ElementDescription> path) {
+        SearchContext searchContext = context != null ? context : driver;
+        WebElement webElement = null;
+        for (ElementDescription elementDescription : path) {
+            int index = elementDescription instanceof ListElementDescription ? ((ListElementDescription) elementDescription).getIndex() : 0;
+            List<WebElement> webElements = searchContext.findElements(elementDescription.getSelector());
+            if (webElements.size() <= index) {
+                return null;
+            }
+            webElement = webElements.get(index);
+            searchContext = webElement;
+        }
+        return webElement;
+    }
+
+    /**
+     * @return steps of each path, or null if any of them can't be compiled
+     */
+    private static List<List<Map<String, Object>>> compile(List<List<ElementDescription>> paths) {
+        List<List<Map<String, Object>>> candidates = new ArrayList<>();
+        for (List<ElementDescription> path : paths) {
+            List<Map<String, Object>> steps = ElementQueryCompiler.compile(path);
+            if (steps == null) {
+                return null;
+            }
+            candidates.add(steps);
+        }
+        return candidates;
+    }
+
+    private static String describe(List<List<ElementDescription>> paths, boolean visible) {
+        return (visible ? "visibility of " : "presence of ") + paths.stream()
+                .map(path -> path.stream()
+                        .map(elementDescription -> elementDescription instanceof ListElementDescription
+                                ? elementDescription.getSelector() + "[" + ((ListElementDescription) elementDescription).getIndex() + "]"
+                                : String.valueOf(elementDescription.getSelector()))
+                        .collect(Collectors.joining(" > ")))
+                .collect(Collectors.joining(" or "));
+    }
+
+    /**
+     * Sleeps till the next mutation of the page, or the polling interval if the page doesn't mutate,
+     * so that the condition is checked as soon as the page changes. Falls back to regular sleeping once the driver
+     * fails to run the script or the page turns out to mutate continuously, as then waiting for mutation only costs extra command.
+     */
+    private static class MutationSleeper implements Sleeper {
+        private final WebDriver driver;
+        private boolean supported = true;
+        private int busySleeps;
+
+        /**
+         * Timeouts of the driver once the script timeout is raised for the wait
+         */
+        private WebDriver.Timeouts timeouts;
+
+        private MutationSleeper(WebDriver driver) {
+            this.driver = driver;
+        }
+
+        @Override
+        public void sleep(Duration duration) throws InterruptedException {
+            if (supported) {
+                long interval = duration.in(TimeUnit.MILLISECONDS);
+                try {
+                    if (timeouts == null) {
+                        timeouts = driver.manage().timeouts();
+                        timeouts.setScriptTimeout(WAIT_SCRIPT_TIMEOUT, TimeUnit.MILLISECONDS);
+                    }
+                    long startTime = System.nanoTime();
+                    Object result = ((JavascriptExecutor) driver).executeAsyncScript(WAIT_MUTATION_SCRIPT, interval);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    if (MUTATED.equals(result) && System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(MIN_CHECK_INTERVAL)) {
+                        if (++busySleeps >= MAX_BUSY_SLEEPS) {
+                            //the page mutates continuously, polling the rest of the wait
+                            supported = false;
+                        }
+                    } else {
+                        busySleeps = 0;
+                    }
+                    if (!UNSUPPORTED.equals(result)) {
+                        return;
+                    }
+                    supported = false;
+                } catch (WebDriverException e) {
+                    log.debug("Failed to wait for mutation, sleeping: {}", e.getMessage());
+                    supported = false;
+                }
+            }
+            Sleeper.SYSTEM_SLEEPER.sleep(duration);
+        }
+    }
+}
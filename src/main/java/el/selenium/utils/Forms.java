@@ -4,7 +4,9 @@ import el.selenium.model.*;
 import el.selenium.drivers.page.PageDriver;
 import org.apache.commons.lang3.StringUtils;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriverException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,8 +16,65 @@ public class Forms {
 
     private final static Logger log = LoggerFactory.getLogger(Forms.class);
 
+    /**
+     * Fills the fields in order in single call, dispatching input and change events for each of them.
+     * Stops at the first field, which isn't found, isn't visible or rejects scripted value, leaving it untouched,
+     * and returns count of the fields filled before it.
+     */
+    private final static String FILL_SCRIPT = ElementQueryCompiler.QUERY_FUNCTION + ElementQueryCompiler.VISIBLE_FUNCTION +
+            "var fire = function(e) {" +
+            " ['input', 'change'].forEach(function(type) {" +
+            "  var event = document.createEvent('HTMLEvents');" +
+            "  event.initEvent(type, true, false);" +
+            "  e.dispatchEvent(event);" +
+            " });" +
+            "};" +
+            "var setValue = function(e, value) {" +
+            " var descriptor = Object.getOwnPropertyDescriptor(Object.getPrototypeOf(e), 'value');" +
+            " if (descriptor && descriptor.set) descriptor.set.call(e, value); else e.value = value;" +
+            "};" +
+            "var accepts = function(e, type, value) {" +
+            " if (e.disabled) return false;" +
+            " switch (type) {" +
+            "  case 'input': return value !== null && !e.readOnly" +
+            "   && (e.tagName === 'TEXTAREA' || e.tagName === 'INPUT' && ['file', 'checkbox', 'radio'].indexOf(e.type) < 0)" +
+            "   && !(e.maxLength >= 0 && (e.value + value).length > e.maxLength);" +
+            "  case 'select': return value !== null && e.tagName === 'SELECT' && getOption(e, value) !== null;" +
+            "  case 'radio': return true;" +
+            " }" +
+            " return false;" +
+            "};" +
+            "var getOption = function(e, value) {" +
+            " if (value.indexOf('index:') === 0) return e.options[parseInt(value.substring(6), 10)] || null;" +
+            " for (var i = 0; i < e.options.length; i++) { if (e.options[i].value === value) return e.options[i]; }" +
+            " return null;" +
+            "};" +
+            "var fill = function(field) {" +
+            " if (!field.steps) return false;" +
+            " var elements = query(field.steps, field.multiple, null);" +
+            " if (!elements) return false;" +
+            " if (!field.multiple) elements = [elements];" +
+            " if (!elements.length || !elements.every(function(e) { return visible(e) && accepts(e, field.type, field.value); })) return false;" +
+            " switch (field.type) {" +
+            "  case 'input':" +
+            "   var previous = elements.map(function(e) { return e.value; });" +
+            "   var filled = elements.every(function(e, i) { setValue(e, previous[i] + field.value); return e.value === previous[i] + field.value; });" +
+            "   if (!filled) { elements.forEach(function(e, i) { setValue(e, previous[i]); }); return false; }" +
+            "   elements.forEach(fire);" +
+            "   return true;" +
+            "  case 'select': elements.forEach(function(e) { getOption(e, field.value).selected = true; fire(e); }); return true;" +
+            "  case 'radio': elements.forEach(function(e) { e.click(); }); return true;" +
+            " }" +
+            " return false;" +
+            "};" +
+            "var fields = arguments[0];" +
+            "for (var i = 0; i < fields.length; i++) { if (!fill(fields[i])) return i; }" +
+            "return fields.length;";
+
     private PageDriver pageDriver;
 
+    private boolean fastMode = false;
+
     public Forms(PageDriver pageDriver) {
         this.pageDriver = pageDriver;
     }
@@ -50,15 +109,77 @@ public class Forms {
         } catch (NoSuchElementException e) {
             log.error(e.getMessage());
             throw new RuntimeException("element " + elementData.getSelectorType() + " with name " + elementData.getSelector() + " hasn't been found");
+        } finally {
+            pageDriver.getLocatorCache().invalidate();
         }
     }
 
-    public void fillData(ArrayList<ElementData> elementDataList) {
+    /**
+     * Fills all the fields of the list, in single script call in fast mode.
+     */
+    public void fillData(List<ElementData> elementDataList) {
+        if (fastMode && pageDriver.isJavascriptEnabled()) {
+            fillFast(elementDataList);
+            return;
+        }
         for (ElementData elementData : elementDataList) {
             fillData(elementData);
         }
     }
 
+    /**
+     * Lets list of fields be filled in single script call, setting values and dispatching input and change events
+     * instead of sending keys. Fields which can't be filled by script, e.g. hidden fields, file inputs or options
+     * which don't exist, fall back to filling one by one, keeping the order of the list.
+     * Scripted input doesn't fire key events, so it's disabled by default.
+     */
+    public void setFastMode(boolean fastMode) {
+        this.fastMode = fastMode;
+    }
+
+    private void fillFast(List<ElementData> elementDataList) {
+        List<Map<String, Object>> fields = new ArrayList<>();
+        for (ElementData elementData : elementDataList) {
+            Map<String, Object> field = new HashMap<>();
+            field.put("steps", ElementQueryCompiler.compile(Collections.singletonList(new ElementDescription(elementData.getBySelector()))));
+            field.put("type", elementData.getElementType().name());
+            field.put("value", elementData.getValue());
+            field.put("multiple", elementData.isMultiple());
+            fields.add(field);
+        }
+
+        int next = 0;
+        while (next < fields.size()) {
+            int filled = fillByScript(fields.subList(next, fields.size()));
+            if (filled < 0) {
+                break;
+            }
+            next += filled;
+            if (next < fields.size()) {
+                //the script has stopped at the field, it's filled by itself to keep the order
+                fillData(elementDataList.get(next++));
+            }
+        }
+        for (ElementData elementData : elementDataList.subList(next, elementDataList.size())) {
+            fillData(elementData);
+        }
+    }
+
+    /**
+     * @return count of the leading fields filled by the script, -1 if the script has failed
+     */
+    private int fillByScript(List<Map<String, Object>> fields) {
+        try {
+            Object result = ((JavascriptExecutor) pageDriver.getDriver()).executeScript(FILL_SCRIPT, fields);
+            return result instanceof Number ? ((Number) result).intValue() : -1;
+        } catch (WebDriverException e) {
+            log.debug("Failed to fill form by script, filling one by one: {}", e.getMessage());
+            return -1;
+        } finally {
+            pageDriver.getLocatorCache().invalidate();
+        }
+    }
+
     public Map<String, String> getRequestAttributes() {
         Map<String, String> requestAttributes = new LinkedHashMap<>();
         String currentUrl = pageDriver.getDriver().getCurrentUrl();
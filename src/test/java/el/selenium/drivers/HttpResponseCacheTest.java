@@ -0,0 +1,244 @@
+package el.selenium.drivers;
+
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HttpResponseCacheTest {
+
+    private final static String URL = "http://example.com/script.js";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpResponseCache cache;
+
+    /**
+     * Requests received by the loader
+     */
+    private final List<WebRequest> loaded = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        cache = new HttpResponseCache();
+    }
+
+    @Test
+    public void servesFreshResponseFromCache() throws IOException {
+        HttpResponseCache.Loader loader = loader(200, "body", "Cache-Control", "max-age=60");
+
+        assertEquals("body", cache.getResponse(request(), loader).getContentAsString());
+        WebResponse cached = cache.getResponse(request(), loader);
+        assertEquals("body", cached.getContentAsString());
+        assertEquals(200, cached.getStatusCode());
+        assertEquals(1, loaded.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void doesNotCacheNoStoreResponse() throws IOException {
+        HttpResponseCache.Loader loader = loader(200, "body", "Cache-Control", "no-store, max-age=60");
+        cache.getResponse(request(), loader);
+        cache.getResponse(request(), loader);
+        assertEquals(2, loaded.size());
+        assertEquals(0, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void doesNotCacheFailedResponse() throws IOException {
+        HttpResponseCache.Loader loader = loader(500, "error", "Cache-Control", "max-age=60");
+        cache.getResponse(request(), loader);
+        cache.getResponse(request(), loader);
+        assertEquals(2, loaded.size());
+    }
+
+    @Test
+    public void revalidatesStaleResponse() throws IOException {
+        cache.getResponse(request(), loader(200, "body", "ETag", "\"v1\""));
+
+        WebRequest request = request();
+        WebResponse response = cache.getResponse(request, loader(304, "", "Cache-Control", "max-age=60"));
+        assertEquals("body", response.getContentAsString());
+        assertEquals(200, response.getStatusCode());
+        assertEquals("\"v1\"", loaded.get(1).getAdditionalHeaders().get("If-None-Match"));
+        assertFalse(request.getAdditionalHeaders().containsKey("If-None-Match"));
+        assertEquals(1, cache.getRevalidations());
+
+        cache.getResponse(request(), loader(200, "other", "ETag", "\"v2\""));
+        assertEquals(2, loaded.size());
+    }
+
+    @Test
+    public void removesConditionalHeadersWhenLoaderFails() throws IOException {
+        cache.getResponse(request(), loader(200, "body", "Last-Modified", "Mon, 01 Jan 2018 00:00:00 GMT"));
+
+        WebRequest request = request();
+        try {
+            cache.getResponse(request, failed -> {
+                throw new IOException("Connection reset");
+            });
+            fail("Failure of the loader is swallowed");
+        } catch (IOException e) {
+            assertFalse(request.getAdditionalHeaders().containsKey("If-Modified-Since"));
+        }
+    }
+
+    @Test
+    public void separatesEntriesOfSessions() throws IOException {
+        HttpResponseCache.Loader loader = loader(200, "body", "Cache-Control", "max-age=60");
+
+        cache.getResponse(request(), "session=1", loader);
+        cache.getResponse(request(), "session=2", loader);
+        cache.getResponse(request(), loader);
+        WebRequest authorized = request();
+        authorized.setAdditionalHeader("Authorization", "Bearer token");
+        cache.getResponse(authorized, loader);
+        assertEquals(4, loaded.size());
+
+        cache.getResponse(request(), "session=1", loader);
+        assertEquals(4, loaded.size());
+    }
+
+    @Test
+    public void bypassesNonGetRequests() throws IOException {
+        HttpResponseCache.Loader loader = loader(200, "body", "Cache-Control", "max-age=60");
+        WebRequest request = new WebRequest(new URL(URL), HttpMethod.POST);
+        cache.getResponse(request, loader);
+        cache.getResponse(request, loader);
+        assertEquals(2, loaded.size());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void spillsEvictedEntriesToDisk() throws IOException {
+        cache.setMaxMemoryBytes(6);
+        cache.setDiskTier(folder.getRoot(), 1024);
+
+        cache.getResponse(request("http://example.com/1"), loader(200, "first", "Cache-Control", "max-age=60"));
+        cache.getResponse(request("http://example.com/2"), loader(200, "second", "Cache-Control", "max-age=60"));
+        assertEquals(6, cache.getMemoryBytes());
+        assertEquals(5, cache.getDiskBytes());
+
+        WebResponse spilled = cache.getResponse(request("http://example.com/1"), loader(200, "reloaded"));
+        assertEquals("first", spilled.getContentAsString());
+        assertEquals(2, loaded.size());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws IOException {
+        cache.setMaxMemoryBytes(11);
+
+        cache.getResponse(request("http://example.com/1"), loader(200, "first", "Cache-Control", "max-age=60"));
+        cache.getResponse(request("http://example.com/2"), loader(200, "second", "Cache-Control", "max-age=60"));
+        cache.getResponse(request("http://example.com/1"), loader(200, "first"));
+        cache.getResponse(request("http://example.com/3"), loader(200, "third", "Cache-Control", "max-age=60"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(10, cache.getMemoryBytes());
+
+        cache.getResponse(request("http://example.com/1"), loader(200, "first"));
+        assertEquals(3, loaded.size());
+    }
+
+    @Test
+    public void doesNotCacheDocumentsUnlessRequested() throws IOException {
+        HttpResponseCache.Loader loader = loader(200, "<html/>", "Content-Type", "text/html; charset=UTF-8", "Cache-Control", "max-age=60");
+        cache.getResponse(request(), loader);
+        cache.getResponse(request(), loader);
+        assertEquals(2, loaded.size());
+
+        cache.setCacheDocuments(true);
+        cache.getResponse(request(), loader);
+        cache.getResponse(request(), loader);
+        assertEquals(3, loaded.size());
+    }
+
+    @Test
+    public void doesNotCacheCookieSettingResponse() throws IOException {
+        HttpResponseCache.Loader loader = loader(200, "body", "Set-Cookie", "session=1", "Cache-Control", "max-age=60");
+        cache.getResponse(request(), loader);
+        cache.getResponse(request(), loader);
+        assertEquals(2, loaded.size());
+    }
+
+    @Test
+    public void respectsCacheControlOfRequest() throws IOException {
+        HttpResponseCache.Loader loader = loader(200, "body", "Cache-Control", "public, max-age=60", "ETag", "\"v1\"");
+        WebRequest noStore = request();
+        noStore.setAdditionalHeader("Cache-Control", "no-store");
+        cache.getResponse(noStore, loader);
+        assertEquals(0, cache.getMemoryBytes());
+
+        cache.getResponse(request(), loader);
+        WebRequest noCache = request();
+        noCache.setAdditionalHeader("Cache-Control", "no-cache");
+        cache.getResponse(noCache, loader(304, ""));
+        assertEquals(3, loaded.size());
+        assertEquals("\"v1\"", loaded.get(2).getAdditionalHeaders().get("If-None-Match"));
+    }
+
+    @Test
+    public void revalidatesPragmaNoCacheResponse() throws IOException {
+        cache.getResponse(request(), loader(200, "body", "Pragma", "no-cache", "Expires", "Thu, 01 Jan 2099 00:00:00 GMT", "ETag", "\"v1\""));
+        cache.getResponse(request(), loader(304, ""));
+        assertEquals(2, loaded.size());
+        assertEquals(1, cache.getRevalidations());
+    }
+
+    @Test
+    public void dropsEntryWhichFailsToSpill() throws IOException {
+        cache.setMaxMemoryBytes(6);
+        cache.setDiskTier(folder.getRoot(), 1024);
+        folder.delete();
+
+        cache.getResponse(request("http://example.com/1"), loader(200, "first", "Cache-Control", "max-age=60"));
+        cache.getResponse(request("http://example.com/2"), loader(200, "second", "Cache-Control", "max-age=60"));
+        assertEquals(0, cache.getDiskBytes());
+        assertEquals(1, cache.getEvictions());
+
+        cache.getResponse(request("http://example.com/1"), loader(200, "reloaded", "Cache-Control", "max-age=60"));
+        assertEquals(3, loaded.size());
+    }
+
+    private static WebRequest request() throws IOException {
+        return request(URL);
+    }
+
+    private static WebRequest request(String url) throws IOException {
+        return new WebRequest(new URL(url));
+    }
+
+    /**
+     * @param headers names and values of the response headers
+     */
+    private HttpResponseCache.Loader loader(int statusCode, String body, String... headers) {
+        List<NameValuePair> responseHeaders = new ArrayList<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            responseHeaders.add(new NameValuePair(headers[i], headers[i + 1]));
+        }
+        return request -> {
+            WebRequest copy = new WebRequest(request.getUrl(), request.getHttpMethod());
+            copy.setAdditionalHeaders(new HashMap<>(request.getAdditionalHeaders()));
+            loaded.add(copy);
+            WebResponseData data = new WebResponseData(body.getBytes(StandardCharsets.UTF_8), statusCode,
+                    statusCode == 304 ? "Not Modified" : "OK", responseHeaders);
+            return new WebResponse(data, request, 0);
+        };
+    }
+}
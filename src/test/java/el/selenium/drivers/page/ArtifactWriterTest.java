@@ -0,0 +1,198 @@
+package el.selenium.drivers.page;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class ArtifactWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ArtifactWriter artifactWriter;
+
+    /**
+     * Holds the writer thread till counted down, see {@link #blockingPath(Path)}
+     */
+    private final CountDownLatch writerReleased = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        artifactWriter = new ArtifactWriter();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        writerReleased.countDown();
+        artifactWriter.close(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void writesArtifacts() throws Exception {
+        Path screenshot = folder.getRoot().toPath().resolve("screenshots/page.png");
+        Path log = folder.getRoot().toPath().resolve("page.log");
+
+        assertTrue(artifactWriter.write(screenshot, new byte[]{1, 2, 3}));
+        assertTrue(artifactWriter.write(log, "first\n", false));
+        assertTrue(artifactWriter.write(log, "second\n", true));
+        assertTrue(artifactWriter.flush(10, TimeUnit.SECONDS));
+
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(screenshot));
+        assertEquals("first\nsecond\n", new String(Files.readAllBytes(log), StandardCharsets.UTF_8));
+        assertEquals(3, artifactWriter.getWritten());
+        assertEquals(0, artifactWriter.getPendingBytes());
+    }
+
+    @Test
+    public void dropsArtifactsOnOverflow() throws Exception {
+        artifactWriter.setMaxPendingBytes(10);
+        artifactWriter.setOverflowPolicy(ArtifactWriter.OverflowPolicy.DROP);
+        Path blocked = blockingPath(folder.getRoot().toPath().resolve("blocked.png"));
+
+        assertTrue("Artifact exceeding max pending bytes isn't accepted when nothing is pending",
+                artifactWriter.write(blocked, new byte[20]));
+        assertFalse(artifactWriter.write(folder.getRoot().toPath().resolve("dropped.png"), new byte[1]));
+        assertEquals(1, artifactWriter.getDropped());
+        assertEquals(20, artifactWriter.getPendingBytes());
+
+        writerReleased.countDown();
+        assertTrue(artifactWriter.flush(10, TimeUnit.SECONDS));
+        assertTrue(artifactWriter.write(folder.getRoot().toPath().resolve("accepted.png"), new byte[1]));
+    }
+
+    @Test
+    public void blocksCallerOnOverflow() throws Exception {
+        artifactWriter.setMaxPendingBytes(10);
+        Path blocked = blockingPath(folder.getRoot().toPath().resolve("blocked.png"));
+        artifactWriter.write(blocked, new byte[20]);
+
+        AtomicBoolean accepted = new AtomicBoolean();
+        Thread caller = new Thread(() -> accepted.set(artifactWriter.write(folder.getRoot().toPath().resolve("waiting.png"), new byte[1])));
+        caller.start();
+        caller.join(200);
+        assertTrue(caller.isAlive());
+
+        writerReleased.countDown();
+        caller.join(10000);
+        assertTrue(accepted.get());
+        assertEquals(0, artifactWriter.getDropped());
+    }
+
+    @Test
+    public void dropsArtifactsExceedingDiskQuota() throws Exception {
+        Files.write(folder.getRoot().toPath().resolve("existing.png"), new byte[6]);
+        artifactWriter.setDiskQuota(10);
+
+        artifactWriter.write(folder.getRoot().toPath().resolve("first.png"), new byte[4]);
+        artifactWriter.write(folder.getRoot().toPath().resolve("second.png"), new byte[1]);
+        assertTrue(artifactWriter.flush(10, TimeUnit.SECONDS));
+
+        assertTrue(Files.exists(folder.getRoot().toPath().resolve("first.png")));
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("second.png")));
+        assertEquals(1, artifactWriter.getWritten());
+        assertEquals(1, artifactWriter.getDropped());
+    }
+
+    @Test
+    public void countsCompressedSizeAgainstDiskQuota() throws Exception {
+        artifactWriter.setGzip(true);
+        artifactWriter.setDiskQuota(1024);
+        char[] page = new char[64 * 1024];
+        Arrays.fill(page, 'a');
+
+        assertTrue(artifactWriter.write(folder.getRoot().toPath().resolve("page.html"), new String(page), false));
+        assertTrue(artifactWriter.flush(10, TimeUnit.SECONDS));
+        assertEquals(1, artifactWriter.getWritten());
+        assertEquals(0, artifactWriter.getDropped());
+    }
+
+    @Test
+    public void replacedFileFreesDiskQuota() throws Exception {
+        artifactWriter.setDiskQuota(10);
+        Path screenshot = folder.getRoot().toPath().resolve("page.png");
+
+        artifactWriter.write(screenshot, new byte[8]);
+        artifactWriter.write(screenshot, new byte[9]);
+        assertTrue(artifactWriter.flush(10, TimeUnit.SECONDS));
+        assertEquals(2, artifactWriter.getWritten());
+        assertEquals(9, Files.size(screenshot));
+    }
+
+    @Test
+    public void closedWriterIsNotFlushedOnShutdown() throws Exception {
+        int unclosed = ArtifactWriter.getUnclosedCount();
+        ArtifactWriter other = new ArtifactWriter();
+        assertEquals(unclosed + 1, ArtifactWriter.getUnclosedCount());
+
+        other.close(10, TimeUnit.SECONDS);
+        assertEquals(unclosed, ArtifactWriter.getUnclosedCount());
+    }
+
+    @Test
+    public void compressesTextArtifacts() throws Exception {
+        artifactWriter.setGzip(true);
+        Path page = folder.getRoot().toPath().resolve("page.html");
+        Path screenshot = folder.getRoot().toPath().resolve("page.png");
+
+        artifactWriter.write(page, "<html>", false);
+        artifactWriter.write(page, "</html>", true);
+        artifactWriter.write(screenshot, new byte[]{1});
+        assertTrue(artifactWriter.flush(10, TimeUnit.SECONDS));
+
+        assertFalse(Files.exists(page));
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(screenshot));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(folder.getRoot().toPath().resolve("page.html.gz")))) {
+            byte[] buffer = new byte[64];
+            int length = 0;
+            for (int read; (read = in.read(buffer, length, buffer.length - length)) > 0; ) {
+                length += read;
+            }
+            assertEquals("<html></html>", new String(buffer, 0, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void dropsArtifactsAfterClose() throws Exception {
+        Path page = folder.getRoot().toPath().resolve("page.png");
+        artifactWriter.write(page, new byte[1]);
+        assertTrue(artifactWriter.close(10, TimeUnit.SECONDS));
+
+        assertTrue(Files.exists(page));
+        assertFalse(artifactWriter.write(folder.getRoot().toPath().resolve("late.png"), new byte[1]));
+        assertEquals(1, artifactWriter.getDropped());
+        assertEquals(0, artifactWriter.getPendingBytes());
+    }
+
+    /**
+     * Returns the path, which holds the writer thread till {@link #writerReleased} is counted down.
+     */
+    private Path blockingPath(Path path) {
+        return (Path) Proxy.newProxyInstance(Path.class.getClassLoader(), new Class<?>[]{Path.class}, (proxy, method, args) -> {
+            if (method.getName().equals("toAbsolutePath")) {
+                writerReleased.await();
+            }
+            try {
+                return method.invoke(path, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
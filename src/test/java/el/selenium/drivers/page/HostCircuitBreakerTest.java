@@ -0,0 +1,147 @@
+package el.selenium.drivers.page;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HostCircuitBreakerTest {
+
+    private final static String HOST = "example.com";
+
+    private HostCircuitBreaker circuitBreaker;
+
+    @Before
+    public void setUp() {
+        circuitBreaker = new HostCircuitBreaker();
+        circuitBreaker.setFailureThreshold(3);
+        circuitBreaker.setOpenTime(1, TimeUnit.HOURS);
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onFailure(HOST);
+        assertTrue(circuitBreaker.allow(HOST));
+        assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.getState(HOST));
+
+        circuitBreaker.onFailure(HOST);
+        assertFalse(circuitBreaker.allow(HOST));
+        assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.getState(HOST));
+        assertTrue(circuitBreaker.allow("other.com"));
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onSuccess(HOST);
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onFailure(HOST);
+        assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.getState(HOST));
+    }
+
+    @Test
+    public void letsSingleTrialThroughAfterOpenTime() {
+        circuitBreaker.setOpenTime(0, TimeUnit.NANOSECONDS);
+        open();
+
+        assertTrue(circuitBreaker.allow(HOST));
+        assertEquals(HostCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState(HOST));
+        assertFalse(circuitBreaker.allow(HOST));
+    }
+
+    @Test
+    public void successfulTrialClosesCircuit() {
+        circuitBreaker.setOpenTime(0, TimeUnit.NANOSECONDS);
+        open();
+        assertTrue(circuitBreaker.allow(HOST));
+
+        circuitBreaker.onSuccess(HOST);
+        assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.getState(HOST));
+        assertTrue(circuitBreaker.allow(HOST));
+    }
+
+    @Test
+    public void failedTrialOpensCircuitAgain() {
+        circuitBreaker.setOpenTime(0, TimeUnit.NANOSECONDS);
+        open();
+        assertTrue(circuitBreaker.allow(HOST));
+
+        circuitBreaker.setOpenTime(1, TimeUnit.HOURS);
+        circuitBreaker.onFailure(HOST);
+        assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.getState(HOST));
+        assertFalse(circuitBreaker.allow(HOST));
+    }
+
+    @Test
+    public void abortedTrialLetsNextTrialThrough() {
+        circuitBreaker.setOpenTime(0, TimeUnit.NANOSECONDS);
+        open();
+        assertTrue(circuitBreaker.allow(HOST));
+
+        circuitBreaker.onAbort(HOST);
+        assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.getState(HOST));
+        assertTrue(circuitBreaker.allow(HOST));
+    }
+
+    @Test
+    public void lostTrialIsReplacedAfterTrialTimeout() {
+        circuitBreaker.setOpenTime(0, TimeUnit.NANOSECONDS);
+        open();
+        assertTrue(circuitBreaker.allow(HOST));
+        assertFalse(circuitBreaker.allow(HOST));
+
+        circuitBreaker.setTrialTimeout(0, TimeUnit.NANOSECONDS);
+        assertTrue(circuitBreaker.allow(HOST));
+        assertEquals(HostCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState(HOST));
+    }
+
+    @Test
+    public void abortDoesNotAffectClosedCircuit() {
+        circuitBreaker.onAbort(HOST);
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onAbort(HOST);
+        assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.getState(HOST));
+        assertTrue(circuitBreaker.allow(HOST));
+    }
+
+    @Test
+    public void resetClosesCircuit() {
+        open();
+        circuitBreaker.reset(HOST);
+        assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.getState(HOST));
+        assertTrue(circuitBreaker.allow(HOST));
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onFailure(HOST);
+        }
+        assertEquals(HostCircuitBreaker.State.OPEN, circuitBreaker.getState(HOST));
+    }
+
+    @Test
+    public void dropsClosedCircuit() {
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onSuccess(HOST);
+        assertEquals(0, circuitBreaker.getHostCount());
+    }
+
+    @Test
+    public void dropsCircuitsOfHostsNotRequested() throws InterruptedException {
+        circuitBreaker.setExpiry(1, TimeUnit.MILLISECONDS);
+        circuitBreaker.setOpenTime(1, TimeUnit.MILLISECONDS);
+        circuitBreaker.onFailure("failing.com");
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onFailure(HOST);
+        }
+        TimeUnit.MILLISECONDS.sleep(5);
+
+        circuitBreaker.onFailure("other.com");
+        assertEquals(1, circuitBreaker.getHostCount());
+        assertEquals(HostCircuitBreaker.State.CLOSED, circuitBreaker.getState(HOST));
+    }
+}
@@ -0,0 +1,156 @@
+package el.selenium.drivers.page;
+
+import el.selenium.exceptions.RuntimeExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HostSchedulerTest {
+
+    private final static String HOST = "example.com";
+
+    private HostScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new HostScheduler();
+    }
+
+    @Test
+    public void extractsHost() {
+        assertEquals(HOST, HostScheduler.getHost("http://example.com/path?query"));
+        assertNull(HostScheduler.getHost("about:blank"));
+        assertNull(HostScheduler.getHost("not a url"));
+    }
+
+    @Test
+    public void unknownHostHasNoDelay() {
+        assertEquals(0, scheduler.getDelay(HOST));
+        scheduler.acquire(HOST);
+        assertEquals(0, scheduler.getDelay(HOST));
+    }
+
+    @Test
+    public void delaysAfterBurstIsUsed() {
+        scheduler.setRate(HOST, 1, 2);
+        scheduler.acquire(HOST);
+        scheduler.acquire(HOST);
+
+        long delay = scheduler.getDelay(HOST);
+        assertTrue(delay > 0);
+        assertTrue(delay <= TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, scheduler.getDelay("other.com"));
+    }
+
+    @Test
+    public void delaysTillSessionIsReleased() {
+        scheduler.setMaxSessions(HOST, 1);
+        scheduler.acquire(HOST);
+        assertTrue(scheduler.getDelay(HOST) > 0);
+
+        scheduler.release(HOST, 200, 10.0);
+        assertEquals(0, scheduler.getDelay(HOST));
+    }
+
+    @Test
+    public void appliesDefaultsToExistingHosts() {
+        scheduler.acquire(HOST);
+        scheduler.setDefaultMaxSessions(1);
+        assertTrue(scheduler.getDelay(HOST) > 0);
+    }
+
+    @Test
+    public void backsOffOverloadedHostExponentially() {
+        scheduler.setBackoff(10, 15, TimeUnit.SECONDS);
+        scheduler.acquire(HOST);
+        scheduler.acquire(HOST);
+
+        scheduler.release(HOST, 503, null);
+        long first = scheduler.getDelay(HOST);
+        assertTrue(first > TimeUnit.SECONDS.toNanos(9));
+        assertTrue(first <= TimeUnit.SECONDS.toNanos(10));
+
+        scheduler.release(HOST, 429, null);
+        long second = scheduler.getDelay(HOST);
+        assertTrue(second > TimeUnit.SECONDS.toNanos(14));
+        assertTrue(second <= TimeUnit.SECONDS.toNanos(15));
+    }
+
+    @Test
+    public void backsOffSlowHost() {
+        scheduler.setSlowTimeToFirstByte(1, TimeUnit.SECONDS);
+        scheduler.acquire(HOST);
+        scheduler.release(HOST, 200, 999.0);
+        assertEquals(0, scheduler.getDelay(HOST));
+
+        scheduler.acquire(HOST);
+        scheduler.release(HOST, 200, 1000.0);
+        assertTrue(scheduler.getDelay(HOST) > 0);
+    }
+
+    @Test
+    public void normalResponseResetsBackoff() {
+        scheduler.setBackoff(10, 60, TimeUnit.MILLISECONDS);
+        scheduler.acquire(HOST);
+        scheduler.release(HOST, 503, null);
+        scheduler.acquire(HOST);
+        scheduler.release(HOST, 200, null);
+
+        scheduler.acquire(HOST);
+        scheduler.release(HOST, 503, null);
+        assertTrue(scheduler.getDelay(HOST) <= TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    @Test
+    public void interruptedAcquireKeepsInterruptFlag() {
+        scheduler.setMaxSessions(HOST, 1);
+        scheduler.acquire(HOST);
+
+        Thread.currentThread().interrupt();
+        try {
+            scheduler.acquire(HOST);
+            fail("Acquire of busy host isn't interrupted");
+        } catch (RuntimeExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void tryAcquireReturnsDelayWithoutWaiting() {
+        scheduler.setMaxSessions(HOST, 1);
+        assertEquals(0, scheduler.tryAcquire(HOST));
+
+        assertTrue(scheduler.tryAcquire(HOST) > 0);
+        scheduler.release(HOST, 200, null);
+        assertEquals(0, scheduler.tryAcquire(HOST));
+    }
+
+    @Test
+    public void dropsIdleHosts() throws InterruptedException {
+        scheduler.setExpiry(1, TimeUnit.MILLISECONDS);
+        scheduler.acquire(HOST);
+        scheduler.acquire("idle.com");
+        scheduler.release("idle.com", 200, null);
+        TimeUnit.MILLISECONDS.sleep(5);
+
+        scheduler.acquire("other.com");
+        assertEquals("Host with session or idle host is kept", 2, scheduler.getHostCount());
+        assertEquals(0, scheduler.getDelay("idle.com"));
+    }
+
+    @Test
+    public void keepsBackedOffHost() throws InterruptedException {
+        scheduler.setExpiry(1, TimeUnit.MILLISECONDS);
+        scheduler.setBackoff(1, 1, TimeUnit.HOURS);
+        scheduler.acquire(HOST);
+        scheduler.release(HOST, 503, null);
+        TimeUnit.MILLISECONDS.sleep(5);
+
+        scheduler.acquire("other.com");
+        assertTrue(scheduler.getDelay(HOST) > 0);
+    }
+}
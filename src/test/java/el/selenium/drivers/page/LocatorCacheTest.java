@@ -0,0 +1,137 @@
+package el.selenium.drivers.page;
+
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ElementDescription;
+import el.selenium.model.ElementDescriptorTree;
+import el.selenium.model.ListElementDescription;
+import el.selenium.model.ProfileStrategy;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LocatorCacheTest {
+
+    private final static List<ElementDescription> PATH = Arrays.asList(
+            new ElementDescription(By.id("list")),
+            new ListElementDescription(By.tagName("li"), 1));
+
+    private final WebElement element = stub(WebElement.class);
+
+    private LocatorCache locatorCache;
+
+    @Before
+    public void setUp() {
+        locatorCache = new LocatorCache();
+        locatorCache.setEnabled(true);
+    }
+
+    @Test
+    public void isDisabledByDefault() {
+        LocatorCache disabled = new LocatorCache();
+        disabled.put(PATH, 2, element);
+        assertNull(disabled.get(PATH, 2));
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    public void cachesEachPrefixOfPath() {
+        WebElement list = stub(WebElement.class);
+        locatorCache.put(PATH, 1, list);
+        locatorCache.put(PATH, 2, element);
+
+        assertSame(list, locatorCache.get(PATH, 1));
+        assertSame(element, locatorCache.get(PATH, 2));
+        List<ElementDescription> otherIndex = Arrays.asList(PATH.get(0), new ListElementDescription(By.tagName("li"), 2));
+        assertSame(list, locatorCache.get(otherIndex, 1));
+        assertNull(locatorCache.get(otherIndex, 2));
+    }
+
+    @Test
+    public void keepsElementsOfSameMutationStamp() {
+        locatorCache.validate("page:0");
+        locatorCache.put(PATH, 2, element);
+
+        locatorCache.validate("page:0");
+        assertSame(element, locatorCache.get(PATH, 2));
+
+        locatorCache.validate("page:1");
+        assertNull(locatorCache.get(PATH, 2));
+        assertEquals(1, locatorCache.getInvalidations());
+    }
+
+    @Test
+    public void invalidatesWhenMutationsCantBeObserved() {
+        locatorCache.validate(null);
+        locatorCache.put(PATH, 2, element);
+
+        locatorCache.validate(null);
+        assertNull(locatorCache.get(PATH, 2));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPaths() {
+        locatorCache.setMaxSize(1);
+        locatorCache.put(PATH, 1, element);
+        locatorCache.put(PATH, 2, element);
+
+        assertEquals(1, locatorCache.size());
+        assertNull(locatorCache.get(PATH, 1));
+    }
+
+    @Test
+    public void disablingClearsCache() {
+        locatorCache.put(PATH, 2, element);
+        locatorCache.setEnabled(false);
+        locatorCache.setEnabled(true);
+        assertNull(locatorCache.get(PATH, 2));
+    }
+
+    @Test
+    public void pageDriverReusesElementsTillPageMutates() {
+        AtomicInteger queries = new AtomicInteger();
+        String[] stamp = {"page:0"};
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("executeScript")) {
+                        return method.getReturnType().isInterface() ? stub(method.getReturnType()) : null;
+                    }
+                    if (((String) args[0]).contains("__elSeleniumMutations")) {
+                        return stamp[0];
+                    }
+                    queries.incrementAndGet();
+                    return element;
+                });
+        PageDriver pageDriver = new PageDriver("cached", WebDriverFactory.Browser.CHROME, ProfileStrategy.DEFAULT, driver);
+        pageDriver.getLocatorCache().setEnabled(true);
+        ElementDescriptorTree tree = new ElementDescriptorTree(new ElementDescriptorTree(PATH.get(0)), PATH.get(1));
+
+        pageDriver.getWebElement(tree);
+        pageDriver.getWebElement(tree);
+        assertEquals(1, queries.get());
+        assertEquals(1, pageDriver.getLocatorCache().getHits());
+
+        stamp[0] = "page:1";
+        pageDriver.getWebElement(tree);
+        assertEquals(2, queries.get());
+
+        pageDriver.getLocatorCache().invalidate();
+        pageDriver.getWebElement(tree);
+        assertEquals(3, queries.get());
+        assertEquals(3, pageDriver.getLocatorCache().getMisses());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> null);
+    }
+}
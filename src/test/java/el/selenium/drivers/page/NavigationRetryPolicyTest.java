@@ -0,0 +1,48 @@
+package el.selenium.drivers.page;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class NavigationRetryPolicyTest {
+
+    @Test
+    public void backoffGrowsExponentiallyUpToMax() {
+        NavigationRetryPolicy retryPolicy = new NavigationRetryPolicy();
+        retryPolicy.setJitter(0);
+        retryPolicy.setInitialBackoff(100, TimeUnit.MILLISECONDS);
+        retryPolicy.setMultiplier(2);
+        retryPolicy.setMaxBackoff(500, TimeUnit.MILLISECONDS);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), retryPolicy.getBackoff(1));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), retryPolicy.getBackoff(2));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(400), retryPolicy.getBackoff(3));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), retryPolicy.getBackoff(4));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), retryPolicy.getBackoff(30));
+    }
+
+    @Test
+    public void jitterRandomizesPartOfBackoff() {
+        NavigationRetryPolicy retryPolicy = new NavigationRetryPolicy();
+        retryPolicy.setJitter(0.5);
+        retryPolicy.setInitialBackoff(1, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 100; i++) {
+            long backoff = retryPolicy.getBackoff(1);
+            assertTrue(backoff >= TimeUnit.MILLISECONDS.toNanos(500));
+            assertTrue(backoff <= TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveAttempts() {
+        new NavigationRetryPolicy().setMaxAttempts(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsJitterAboveOne() {
+        new NavigationRetryPolicy().setJitter(1.5);
+    }
+}
@@ -0,0 +1,230 @@
+package el.selenium.drivers.page;
+
+import el.selenium.exceptions.HostThrottledException;
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ElementDescriptorTree;
+import el.selenium.model.ElementTable;
+import el.selenium.model.NavigationTiming;
+import el.selenium.model.ProcessedRequest;
+import el.selenium.model.ProfileStrategy;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PageDriverTest {
+
+    @Test
+    public void failsFastForThrottledHost() {
+        AtomicInteger opened = new AtomicInteger();
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(), new Class<?>[]{WebDriver.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("get")) {
+                        opened.incrementAndGet();
+                    }
+                    return null;
+                });
+        PageDriver pageDriver = new PageDriver("throttled", WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, driver);
+        HostScheduler scheduler = new HostScheduler();
+        scheduler.setMaxSessions("example.com", 1);
+        scheduler.acquire("example.com");
+        pageDriver.setHostScheduler(scheduler);
+        pageDriver.setHostCircuitBreaker(new HostCircuitBreaker());
+
+        long startTime = System.nanoTime();
+        try {
+            pageDriver.goToURL("http://example.com/page");
+            fail("Throttled host is opened");
+        } catch (HostThrottledException e) {
+            assertEquals("example.com", e.getHost());
+            assertTrue(e.getRetryAfter(TimeUnit.NANOSECONDS) > 0);
+        }
+        assertTrue("Page driver waits for the host", System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, opened.get());
+    }
+
+    @Test
+    public void readsNavigationTimingLevel2() {
+        AtomicInteger scripts = new AtomicInteger();
+        PageDriver pageDriver = newTimedPageDriver(ProfileStrategy.DEFAULT, scripts,
+                Arrays.asList(1.5, 3.0, 3.0, 10.0, 25.5, 40.0, 60.0, 0L, 200L));
+
+        ProcessedRequest request = pageDriver.goToURL("http://example.com/page");
+        NavigationTiming timing = request.getNavigationTiming();
+        assertEquals(1.5, timing.getDns(), 0);
+        assertEquals(7.0, timing.getConnect(), 0);
+        assertEquals(25.5, timing.getTimeToFirstByte(), 0);
+        assertEquals(40.0, timing.getDomContentLoaded(), 0);
+        assertEquals(60.0, timing.getLoad(), 0);
+        assertEquals(Integer.valueOf(200), request.getStatusCode());
+        assertEquals(1, scripts.get());
+        assertTrue(request.getLatencyNanos() > 0);
+        assertEquals("http://example.com/page", request.getFinalURL());
+    }
+
+    @Test
+    public void readsNavigationTimingLevel1() {
+        PageDriver pageDriver = newTimedPageDriver(ProfileStrategy.DEFAULT, new AtomicInteger(),
+                Arrays.asList(1005L, 1005L, 1005L, 1020L, 1050L, 1100L, 0L, 1000L, null));
+
+        ProcessedRequest request = pageDriver.goToURL("http://example.com/page");
+        NavigationTiming timing = request.getNavigationTiming();
+        assertEquals(0.0, timing.getDns(), 0);
+        assertEquals(15.0, timing.getConnect(), 0);
+        assertEquals(50.0, timing.getTimeToFirstByte(), 0);
+        assertEquals(100.0, timing.getDomContentLoaded(), 0);
+        assertNull("Load hasn't ended", timing.getLoad());
+        assertNull(request.getStatusCode());
+    }
+
+    @Test
+    public void skipsNavigationTimingWithoutJavascript() {
+        AtomicInteger scripts = new AtomicInteger();
+        PageDriver pageDriver = newTimedPageDriver(ProfileStrategy.NON_JS, scripts,
+                Arrays.asList(1.5, 3.0, 3.0, 10.0, 25.5, 40.0, 60.0, 0L, 200L));
+
+        ProcessedRequest request = pageDriver.goToURL("http://example.com/page");
+        assertNull(request.getNavigationTiming());
+        assertNull(request.getStatusCode());
+        assertEquals(0, scripts.get());
+        assertNotNull(request.getEndTime());
+    }
+
+    @Test
+    public void readsElementsInSingleScript() {
+        AtomicInteger elementCalls = new AtomicInteger();
+        List<Object[]> reads = new ArrayList<>();
+        PageDriver pageDriver = newElementsPageDriver(ProfileStrategy.DEFAULT, stubElements(3, elementCalls), args -> {
+            reads.add(args);
+            return Arrays.asList(Arrays.asList("/0", "/1", "/2"), Arrays.asList("true", null, "true"));
+        });
+
+        ElementTable table = pageDriver.getAttributes(new ElementDescriptorTree(By.tagName("a")), "href", "checked");
+        assertEquals(1, reads.size());
+        assertEquals(Arrays.asList("href", "checked"), reads.get(0)[1]);
+        assertEquals(false, reads.get(0)[2]);
+        assertEquals(3, table.size());
+        assertEquals(Arrays.asList("/0", "/1", "/2"), table.getColumn("href"));
+        assertNull(table.getValue(1, "checked"));
+        assertEquals("Elements are read one by one", 0, elementCalls.get());
+    }
+
+    @Test
+    public void readsElementsOneByOneWithoutJavascript() {
+        AtomicInteger elementCalls = new AtomicInteger();
+        List<Object[]> reads = new ArrayList<>();
+        PageDriver pageDriver = newElementsPageDriver(ProfileStrategy.NON_JS, stubElements(2, elementCalls), args -> {
+            reads.add(args);
+            return null;
+        });
+
+        assertEquals(Arrays.asList("text 0", "text 1"), pageDriver.getTexts(new ElementDescriptorTree(By.tagName("a"))));
+        assertEquals(0, reads.size());
+        assertEquals(2, elementCalls.get());
+    }
+
+    @Test
+    public void readsElementsOneByOneWhenScriptFails() {
+        AtomicInteger elementCalls = new AtomicInteger();
+        PageDriver pageDriver = newElementsPageDriver(ProfileStrategy.DEFAULT, stubElements(2, elementCalls), args -> {
+            throw new WebDriverException("script is blocked");
+        });
+
+        ElementTable table = pageDriver.getAttributes(new ElementDescriptorTree(By.tagName("a")), "href");
+        assertEquals(Arrays.asList("href 0", "href 1"), table.getColumn("href"));
+        assertEquals(2, elementCalls.get());
+    }
+
+    @Test
+    public void readsNoElements() {
+        PageDriver pageDriver = newElementsPageDriver(ProfileStrategy.DEFAULT, Collections.emptyList(), args -> {
+            fail("Script is run for no elements");
+            return null;
+        });
+
+        ElementTable table = pageDriver.getAttributes(new ElementDescriptorTree(By.tagName("a")), "href");
+        assertEquals(0, table.size());
+        assertEquals(Collections.emptyList(), table.getColumn("href"));
+        assertEquals(Collections.emptyList(), pageDriver.getTexts(new ElementDescriptorTree(By.tagName("a"))));
+    }
+
+    /**
+     * @param calls counts reads of text and attributes of the elements
+     */
+    private static List<WebElement> stubElements(int count, AtomicInteger calls) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> (WebElement) Proxy.newProxyInstance(WebElement.class.getClassLoader(), new Class<?>[]{WebElement.class},
+                        (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "getText":
+                                    calls.incrementAndGet();
+                                    return "text " + i;
+                                case "getAttribute":
+                                    calls.incrementAndGet();
+                                    return args[0] + " " + i;
+                                default:
+                                    return null;
+                            }
+                        }))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param readScript returns result of the script reading the elements for its arguments
+     */
+    private static PageDriver newElementsPageDriver(ProfileStrategy profileStrategy, List<WebElement> elements,
+                                                    Function<Object[], Object> readScript) {
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findElements":
+                            return elements;
+                        case "executeScript":
+                            Object[] scriptArgs = (Object[]) args[1];
+                            //the query resolving elements passes its steps, the read passes the elements
+                            return elements.equals(scriptArgs[0]) ? readScript.apply(scriptArgs) : elements;
+                        default:
+                            return null;
+                    }
+                });
+        return new PageDriver("elements", WebDriverFactory.Browser.HTML_UNIT, profileStrategy, driver);
+    }
+
+    private static PageDriver newTimedPageDriver(ProfileStrategy profileStrategy, AtomicInteger scripts, List<?> entry) {
+        String[] url = new String[1];
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            url[0] = (String) args[0];
+                            return null;
+                        case "getCurrentUrl":
+                            return url[0];
+                        case "executeScript":
+                            scripts.incrementAndGet();
+                            return entry;
+                        default:
+                            return null;
+                    }
+                });
+        PageDriver pageDriver = new PageDriver("timed", WebDriverFactory.Browser.HTML_UNIT, profileStrategy, driver);
+        pageDriver.setHostScheduler(new HostScheduler());
+        pageDriver.setHostCircuitBreaker(new HostCircuitBreaker());
+        return pageDriver;
+    }
+}
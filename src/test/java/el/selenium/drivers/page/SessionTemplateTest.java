@@ -0,0 +1,203 @@
+package el.selenium.drivers.page;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.google.gson.Gson;
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ProfileStrategy;
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SessionTemplateTest {
+
+    private final List<StubBrowser> browsers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        browsers.forEach(browser -> browser.webClient.close());
+    }
+
+    @Test
+    public void appliesCapturedSessionToAnotherDriver() {
+        StubBrowser warmed = new StubBrowser();
+        PageDriver warmedDriver = newPageDriver(warmed);
+        warmedDriver.goToURL("http://example.com/account");
+        warmed.cookies.add(new Cookie("sid", "42"));
+        warmedDriver.getBulkLocalStorage().restore(Collections.singletonMap("theme", "dark"));
+        warmedDriver.getBulkSessionStorage().restore(Collections.singletonMap("cart", "[1]"));
+
+        SessionTemplate template = new SessionTemplate();
+        template.capture(warmedDriver);
+        assertFalse(template.isExpired());
+
+        StubBrowser fresh = new StubBrowser();
+        PageDriver freshDriver = newPageDriver(fresh);
+        template.apply(freshDriver);
+
+        assertEquals(Collections.singletonList("http://example.com/"), fresh.opened);
+        assertEquals(Collections.singleton(new Cookie("sid", "42")), fresh.cookies);
+        assertEquals(Collections.singletonMap("theme", "dark"), freshDriver.getBulkLocalStorage().snapshot());
+        assertEquals(Collections.singletonMap("cart", "[1]"), freshDriver.getBulkSessionStorage().snapshot());
+    }
+
+    @Test
+    public void initializesOnceForAllDrivers() {
+        AtomicInteger initialized = new AtomicInteger();
+        SessionTemplate template = new SessionTemplate(pageDriver -> {
+            initialized.incrementAndGet();
+            pageDriver.goToURL("http://example.com/login");
+            ((StubBrowser.Driver) pageDriver.getDriver()).browser().cookies.add(new Cookie("sid", "42"));
+        });
+
+        StubBrowser first = new StubBrowser();
+        newPageDriver(first).setSessionTemplate(template);
+        StubBrowser second = new StubBrowser();
+        newPageDriver(second).setSessionTemplate(template);
+
+        assertEquals(1, initialized.get());
+        assertEquals(Collections.singletonList("http://example.com/login"), first.opened);
+        assertEquals(Collections.singletonList("http://example.com/"), second.opened);
+        assertEquals(Collections.singleton(new Cookie("sid", "42")), second.cookies);
+    }
+
+    @Test
+    public void refreshesWhenCookieExpires() {
+        AtomicInteger initialized = new AtomicInteger();
+        SessionTemplate template = new SessionTemplate(pageDriver -> {
+            initialized.incrementAndGet();
+            pageDriver.goToURL("http://example.com/login");
+            Date expiry = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30));
+            ((StubBrowser.Driver) pageDriver.getDriver()).browser().cookies.add(new Cookie("sid", "42", "/", expiry));
+        });
+        template.setExpiryMargin(1, TimeUnit.MINUTES);
+
+        newPageDriver(new StubBrowser()).setSessionTemplate(template);
+        assertTrue("Cookie within expiry margin is not expired", template.isExpired());
+        newPageDriver(new StubBrowser()).setSessionTemplate(template);
+        assertEquals(2, initialized.get());
+
+        template.setExpiryMargin(0, TimeUnit.MILLISECONDS);
+        assertFalse(template.isExpired());
+        newPageDriver(new StubBrowser()).setSessionTemplate(template);
+        assertEquals(2, initialized.get());
+    }
+
+    @Test
+    public void refreshesWhenOlderThanMaxAge() {
+        AtomicInteger initialized = new AtomicInteger();
+        SessionTemplate template = new SessionTemplate(pageDriver -> {
+            initialized.incrementAndGet();
+            pageDriver.goToURL("http://example.com/login");
+        });
+        template.setMaxAge(0, TimeUnit.MILLISECONDS);
+
+        newPageDriver(new StubBrowser()).setSessionTemplate(template);
+        newPageDriver(new StubBrowser()).setSessionTemplate(template);
+        assertEquals(2, initialized.get());
+        assertTrue(template.isExpired());
+    }
+
+    @Test
+    public void requiresCaptureWithoutInitializer() {
+        SessionTemplate template = new SessionTemplate();
+        assertTrue(template.isExpired());
+        assertNull(template.getExpiry());
+        PageDriver pageDriver = newPageDriver(new StubBrowser());
+        try {
+            template.apply(pageDriver);
+            fail("Template without state is applied");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            template.refresh(pageDriver);
+            fail("Template without initializer is refreshed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private PageDriver newPageDriver(StubBrowser browser) {
+        browsers.add(browser);
+        PageDriver pageDriver = new PageDriver("session-" + browsers.size(), WebDriverFactory.Browser.HTML_UNIT,
+                ProfileStrategy.DEFAULT, browser.driver);
+        pageDriver.setHostScheduler(new HostScheduler());
+        pageDriver.setHostCircuitBreaker(new HostCircuitBreaker());
+        return pageDriver;
+    }
+
+    /**
+     * Browser keeping cookies on its own and running scripts in HtmlUnit page, so that each browser has its own web storage.
+     */
+    private static class StubBrowser {
+
+        interface Driver extends WebDriver, JavascriptExecutor {
+            StubBrowser browser();
+        }
+
+        private final WebClient webClient = new WebClient(BrowserVersion.FIREFOX_45);
+        private final Set<Cookie> cookies = new HashSet<>();
+        private final List<String> opened = new ArrayList<>();
+        private final Driver driver;
+        private HtmlPage page;
+
+        private StubBrowser() {
+            MockWebConnection connection = new MockWebConnection();
+            connection.setDefaultResponse("<html><body></body></html>");
+            webClient.setWebConnection(connection);
+            WebDriver.Options options = (WebDriver.Options) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                    new Class<?>[]{WebDriver.Options.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getCookies":
+                                return new HashSet<>(cookies);
+                            case "addCookie":
+                                cookies.add((Cookie) args[0]);
+                                return null;
+                            default:
+                                return null;
+                        }
+                    });
+            driver = (Driver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(), new Class<?>[]{Driver.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "browser":
+                                return this;
+                            case "get":
+                                opened.add((String) args[0]);
+                                page = webClient.getPage(new URL((String) args[0]));
+                                return null;
+                            case "getCurrentUrl":
+                                return page == null ? null : page.getUrl().toString();
+                            case "manage":
+                                return options;
+                            case "executeScript":
+                                return execute((String) args[0], (Object[]) args[1]);
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private Object execute(String script, Object[] args) {
+            try {
+                Object result = page.executeJavaScript("JSON.stringify((function() {" + script + "}).apply(null, "
+                        + new Gson().toJson(args) + "))").getJavaScriptResult();
+                return result == null || "undefined".equals(result) ? null : new Gson().fromJson(String.valueOf(result), Object.class);
+            } catch (RuntimeException e) {
+                throw new WebDriverException(e);
+            }
+        }
+    }
+}
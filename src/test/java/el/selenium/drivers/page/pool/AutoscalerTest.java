@@ -0,0 +1,88 @@
+package el.selenium.drivers.page.pool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class AutoscalerTest {
+
+    private AutoscalingPolicy policy;
+
+    @Before
+    public void setUp() {
+        policy = new AutoscalingPolicy(1, 10);
+        policy.setMinFreeMemory(0);
+        policy.setScaleUpCooldown(0, TimeUnit.NANOSECONDS);
+        policy.setScaleDownCooldown(0, TimeUnit.NANOSECONDS);
+        policy.setScaleDownChecks(2);
+    }
+
+    @Test
+    public void clampsToPolicyRange() {
+        Autoscaler autoscaler = new Autoscaler(policy);
+        assertEquals(1, autoscaler.clamp(0));
+        assertEquals(5, autoscaler.clamp(5));
+        assertEquals(10, autoscaler.clamp(20));
+    }
+
+    @Test
+    public void scalesUpByWaitingThreadsWithinStep() {
+        Autoscaler autoscaler = new Autoscaler(policy);
+        assertEquals(4, autoscaler.evaluate(3, 1, 0, 0));
+        assertEquals(6, autoscaler.evaluate(4, 5, 0, 0));
+        assertEquals(10, autoscaler.evaluate(9, 5, 0, 0));
+        assertEquals(10, autoscaler.evaluate(10, 5, 0, 0));
+    }
+
+    @Test
+    public void scalesUpOnQueueWaitTime() {
+        Autoscaler autoscaler = new Autoscaler(policy);
+        assertEquals(3, autoscaler.evaluate(3, 0, TimeUnit.MILLISECONDS.toNanos(999), 0));
+        assertEquals(4, autoscaler.evaluate(3, 0, TimeUnit.SECONDS.toNanos(1), 0));
+    }
+
+    @Test
+    public void scalesDownAfterConsecutiveCalmChecks() {
+        Autoscaler autoscaler = new Autoscaler(policy);
+        assertEquals(3, autoscaler.evaluate(3, 0, 0, 1));
+        assertEquals(2, autoscaler.evaluate(3, 0, 0, 1));
+
+        assertEquals(2, autoscaler.evaluate(2, 0, 0, 1));
+        assertEquals("Busy check has to restart the count", 2, autoscaler.evaluate(2, 0, 0, 0));
+        assertEquals(2, autoscaler.evaluate(2, 0, 0, 1));
+        assertEquals(1, autoscaler.evaluate(2, 0, 0, 1));
+
+        assertEquals(1, autoscaler.evaluate(1, 0, 0, 1));
+        assertEquals(1, autoscaler.evaluate(1, 0, 0, 1));
+    }
+
+    @Test
+    public void respectsScaleUpCooldown() {
+        policy.setScaleUpCooldown(1, TimeUnit.HOURS);
+        Autoscaler autoscaler = new Autoscaler(policy);
+        assertEquals(4, autoscaler.evaluate(3, 1, 0, 0));
+        assertEquals(4, autoscaler.evaluate(4, 1, 0, 0));
+    }
+
+    @Test
+    public void doesNotScaleDownSoonAfterScaleUp() {
+        policy.setScaleDownCooldown(1, TimeUnit.HOURS);
+        Autoscaler autoscaler = new Autoscaler(policy);
+        assertEquals(4, autoscaler.evaluate(3, 1, 0, 0));
+        assertEquals(4, autoscaler.evaluate(4, 0, 0, 1));
+        assertEquals(4, autoscaler.evaluate(4, 0, 0, 1));
+    }
+
+    @Test
+    public void scalesDownOnLowMemory() {
+        assumeTrue(ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean);
+        policy.setMinFreeMemory(Long.MAX_VALUE);
+        Autoscaler autoscaler = new Autoscaler(policy);
+        assertEquals(2, autoscaler.evaluate(3, 5, 0, 0));
+    }
+}
@@ -0,0 +1,97 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.PageDriver;
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ProfileStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class KeyedPageDriverPoolTest {
+
+    private final static WebDriverFactory.Browser BROWSER = WebDriverFactory.Browser.HTML_UNIT;
+
+    private final AtomicInteger launches = new AtomicInteger();
+
+    private KeyedPageDriverPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new KeyedPageDriverPool(2) {
+            @Override
+            PageDriverPool createPool(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, PageDriverBudget budget) {
+                PageDriverPool keyPool = StubPageDrivers.newPool(browser, profileStrategy, 0, new BootstrapPolicy(), budget, launches);
+                keyPool.setShareReference(false);
+                return keyPool;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        pool.destroy();
+    }
+
+    @Test
+    public void sharesTotalBudgetBetweenKeys() throws InterruptedException {
+        PageDriver nonJs = pool.take(BROWSER, ProfileStrategy.NON_JS);
+        PageDriver lightweight = pool.take(BROWSER, ProfileStrategy.LIGHTWEIGHT);
+        assertEquals(ProfileStrategy.LIGHTWEIGHT, lightweight.getProfileStrategy());
+        assertEquals(2, pool.getTotal());
+
+        assertNull(pool.take(BROWSER, ProfileStrategy.DEFAULT, 100, TimeUnit.MILLISECONDS));
+        assertNull(pool.take(BROWSER, ProfileStrategy.NON_JS, 100, TimeUnit.MILLISECONDS));
+
+        pool.free(nonJs);
+        assertSame(nonJs, pool.take(BROWSER, ProfileStrategy.NON_JS, 10, TimeUnit.SECONDS));
+        assertEquals(2, launches.get());
+    }
+
+    @Test
+    public void reclaimsIdleDriverOfOtherKey() throws Exception {
+        PageDriver nonJs = pool.take(BROWSER, ProfileStrategy.NON_JS);
+        pool.take(BROWSER, ProfileStrategy.LIGHTWEIGHT);
+        CompletableFuture<PageDriver> waiting = pool.takeAsync(BROWSER, ProfileStrategy.DEFAULT);
+
+        pool.free(nonJs);
+        PageDriver reclaimed = waiting.get(10, TimeUnit.SECONDS);
+        assertEquals(ProfileStrategy.DEFAULT, reclaimed.getProfileStrategy());
+        assertEquals(2, pool.getTotal());
+        assertNull(pool.take(BROWSER, ProfileStrategy.NON_JS, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void keepsMinimumOfOtherKeys() throws InterruptedException {
+        pool.setMinPerKey(BROWSER, ProfileStrategy.NON_JS, 1);
+
+        pool.take(BROWSER, ProfileStrategy.LIGHTWEIGHT);
+        assertNull("Budget reserved for other key is used",
+                pool.take(BROWSER, ProfileStrategy.LIGHTWEIGHT, 100, TimeUnit.MILLISECONDS));
+        PageDriver nonJs = pool.take(BROWSER, ProfileStrategy.NON_JS, 10, TimeUnit.SECONDS);
+        assertNotNull(nonJs);
+
+        pool.free(nonJs);
+        assertNull("Reserved idle driver is reclaimed",
+                pool.take(BROWSER, ProfileStrategy.DEFAULT, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void limitsKeyToItsMaximum() throws InterruptedException {
+        pool.setMaxPerKey(BROWSER, ProfileStrategy.NON_JS, 1);
+
+        pool.take(BROWSER, ProfileStrategy.NON_JS);
+        assertNull(pool.take(BROWSER, ProfileStrategy.NON_JS, 100, TimeUnit.MILLISECONDS));
+        assertNotNull(pool.take(BROWSER, ProfileStrategy.DEFAULT, 10, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForeignDriver() {
+        pool.free(StubPageDrivers.launch(BROWSER, ProfileStrategy.NON_JS));
+    }
+}
@@ -0,0 +1,157 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.HostCircuitBreaker;
+import el.selenium.drivers.page.HostScheduler;
+import el.selenium.drivers.page.PageDriver;
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ProfileStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PageDriverCrawlerTest {
+
+    private final HostScheduler hostScheduler = new HostScheduler();
+
+    private PageDriverPool pool;
+    private PageDriverCrawler crawler;
+
+    @Before
+    public void setUp() {
+        pool = new PageDriverPool(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, 0,
+                new BootstrapPolicy(), PageDriverBudget.UNLIMITED) {
+            @Override
+            PageDriver launch() {
+                PageDriver pageDriver = StubPageDrivers.launch(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS);
+                pageDriver.setHostScheduler(hostScheduler);
+                pageDriver.setHostCircuitBreaker(new HostCircuitBreaker());
+                return pageDriver;
+            }
+        };
+        pool.setShareReference(false);
+        pool.setMaxPoolSize(2);
+        crawler = new PageDriverCrawler(pool);
+        crawler.setHostScheduler(hostScheduler);
+    }
+
+    @After
+    public void tearDown() {
+        pool.destroy();
+    }
+
+    @Test
+    public void crawlsAllUrls() {
+        List<String> urls = urls("example.com", 5);
+        List<CrawlResult<String>> results;
+        try (Stream<CrawlResult<String>> crawl = crawler.crawl(urls.stream(), (pageDriver, request) -> request.getOriginalURL())) {
+            results = crawl.collect(Collectors.toList());
+        }
+
+        assertEquals(new HashSet<>(urls), results.stream().map(CrawlResult::getUrl).collect(Collectors.toSet()));
+        for (CrawlResult<String> result : results) {
+            assertTrue(result.isSuccessful());
+            assertEquals(result.getUrl(), result.getValue());
+            assertNotNull(result.getProcessedRequest());
+        }
+    }
+
+    @Test
+    public void readsUrlsOnlyWhenResultsAreConsumed() {
+        crawler.setMaxInFlight(2);
+        AtomicInteger reads = new AtomicInteger();
+        Iterator<String> urls = urls("example.com", 10).stream().peek(url -> reads.incrementAndGet()).iterator();
+
+        Iterator<CrawlResult<String>> results = crawler.crawl(urls, (pageDriver, request) -> "").iterator();
+        results.next();
+        assertEquals(2, reads.get());
+
+        int count = 1;
+        while (results.hasNext()) {
+            results.next();
+            count++;
+        }
+        assertEquals(10, count);
+        assertEquals(10, reads.get());
+    }
+
+    @Test
+    public void returnsFailureOfSingleUrl() throws InterruptedException {
+        List<String> urls = urls("example.com", 3);
+        List<CrawlResult<String>> results = crawler.crawl(urls.stream(), (pageDriver, request) -> {
+            if (request.getOriginalURL().equals(urls.get(1))) {
+                throw new IllegalStateException("broken page");
+            }
+            return "ok";
+        }).collect(Collectors.toList());
+
+        assertEquals(3, results.size());
+        for (CrawlResult<String> result : results) {
+            if (result.getUrl().equals(urls.get(1))) {
+                assertFalse(result.isSuccessful());
+                assertEquals("broken page", result.getError().getMessage());
+            } else {
+                assertEquals("ok", result.getValue());
+            }
+        }
+        assertNotNull("Page driver is freed", pool.take(10, TimeUnit.SECONDS));
+        assertNotNull("Page driver is freed", pool.take(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void delayedHostDoesNotHoldPageDrivers() {
+        pool.setMaxPoolSize(1);
+        hostScheduler.setRate("slow.example.com", 5, 1);
+        List<String> urls = new ArrayList<>(urls("slow.example.com", 3));
+        urls.add("http://fast.example.com/");
+
+        long startTime = System.nanoTime();
+        List<String> completed = crawler.crawl(urls.stream(), (pageDriver, request) -> "")
+                .peek(result -> assertTrue(result.toString(), result.isSuccessful()))
+                .map(CrawlResult::getUrl)
+                .collect(Collectors.toList());
+
+        assertEquals(new HashSet<>(urls), new HashSet<>(completed));
+        assertTrue("Slow host is rate limited", System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(300));
+        assertTrue("Fast host waits for slow one " + completed, completed.indexOf("http://fast.example.com/") < 3);
+    }
+
+    @Test
+    public void closingCrawlGivesPlaceInPoolUp() throws Exception {
+        pool.setMaxPoolSize(1);
+        PageDriver pageDriver = pool.take();
+
+        Stream<CrawlResult<String>> crawl = crawler.crawl(urls("example.com", 1).stream(), (driver, request) -> "");
+        ExecutorService consumer = Executors.newSingleThreadExecutor();
+        try {
+            consumer.submit(crawl::findFirst);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (pool.getWaitingByTenant().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse("Crawl waits for page driver", pool.getWaitingByTenant().isEmpty());
+            crawl.close();
+
+            pool.free(pageDriver);
+            assertSame(pageDriver, pool.tryTake());
+        } finally {
+            consumer.shutdownNow();
+        }
+    }
+
+    private static List<String> urls(String host, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> "http://" + host + "/page" + i)
+                .collect(Collectors.toList());
+    }
+}
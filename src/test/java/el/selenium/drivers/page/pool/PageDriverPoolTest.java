@@ -0,0 +1,534 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.PageDriver;
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ProfileStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PageDriverPoolTest {
+
+    private final AtomicInteger launches = new AtomicInteger();
+
+    private PageDriverPool pool;
+
+    @Before
+    public void setUp() {
+        pool = StubPageDrivers.newPool(0, new BootstrapPolicy(), launches);
+        pool.setShareReference(false);
+        pool.setMaxPoolSize(1);
+    }
+
+    @After
+    public void tearDown() {
+        pool.destroy();
+    }
+
+    @Test
+    public void sharesDriverWithinThread() throws Exception {
+        pool.setShareReference(true);
+        PageDriver pageDriver = pool.take();
+        assertSame(pageDriver, pool.take());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            pool.free(pageDriver);
+            assertNull(executor.submit(pool::tryTake).get());
+            pool.free(pageDriver);
+            assertSame(pageDriver, executor.submit(pool::tryTake).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void returnsNullWhenTimeoutElapses() throws InterruptedException {
+        PageDriver pageDriver = pool.take();
+        assertNull(pool.take(100, TimeUnit.MILLISECONDS));
+        assertNull(pool.tryTake());
+
+        pool.free(pageDriver);
+        assertSame(pageDriver, pool.tryTake());
+    }
+
+    @Test
+    public void handsFreedDriverOverToWaitingThread() throws Exception {
+        PageDriver pageDriver = pool.take();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PageDriver> waiting = executor.submit(() -> pool.take(10, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertFalse(waiting.isDone());
+
+            pool.free(pageDriver);
+            assertSame(pageDriver, waiting.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void servesWaitersByPriorityThenArrival() throws Exception {
+        PageDriver pageDriver = pool.take();
+        CompletableFuture<PageDriver> first = pool.takeAsync(0, PageDriverPool.DEFAULT_TENANT);
+        CompletableFuture<PageDriver> second = pool.takeAsync(0, PageDriverPool.DEFAULT_TENANT);
+        CompletableFuture<PageDriver> urgent = pool.takeAsync(10, PageDriverPool.DEFAULT_TENANT);
+
+        pool.free(pageDriver);
+        assertSame(pageDriver, urgent.get(10, TimeUnit.SECONDS));
+        assertFalse(first.isDone());
+
+        pool.free(pageDriver);
+        assertSame(pageDriver, first.get(10, TimeUnit.SECONDS));
+        assertFalse(second.isDone());
+    }
+
+    @Test
+    public void cancelledFutureGivesPlaceUp() throws Exception {
+        PageDriver pageDriver = pool.take();
+        CompletableFuture<PageDriver> cancelled = pool.takeAsync();
+        CompletableFuture<PageDriver> waiting = pool.takeAsync();
+        assertTrue(cancelled.cancel(false));
+
+        pool.free(pageDriver);
+        assertSame(pageDriver, waiting.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void launchesNoDriverForCancelledFuture() {
+        PageDriver pageDriver = pool.take();
+        CompletableFuture<PageDriver> cancelled = pool.takeAsync();
+        assertTrue(cancelled.cancel(false));
+        assertTrue(pool.getWaitingByTenant().isEmpty());
+
+        pool.setMaxPoolSize(2);
+        pool.free(pageDriver);
+        assertEquals(1, launches.get());
+        assertSame(pageDriver, pool.tryTake());
+    }
+
+    @Test
+    public void freesDriverAfterWork() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        pool.withDriver(pageDriver -> CompletableFuture.completedFuture(runs.incrementAndGet())).get(10, TimeUnit.SECONDS);
+
+        CompletableFuture<Object> failed = pool.withDriver(pageDriver -> {
+            throw new IllegalStateException("work failed");
+        });
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+            fail("Failure of the work is swallowed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertEquals(1, runs.get());
+        assertNotNull(pool.tryTake());
+    }
+
+    @Test
+    public void limitsTenantToItsQuota() throws InterruptedException {
+        pool.setMaxPoolSize(3);
+        pool.setTenantQuota("limited", 1);
+
+        PageDriver limited = pool.take(0, "limited");
+        assertNull(pool.take(0, "limited", 100, TimeUnit.MILLISECONDS));
+        assertNotNull(pool.take(0, "other", 10, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), pool.getHeldByTenant().get("limited"));
+
+        pool.free(limited);
+        assertNotNull(pool.take(0, "limited", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void neverLeasesDriverTwice() throws Exception {
+        pool.setMaxPoolSize(2);
+        Set<PageDriver> held = ConcurrentHashMap.newKeySet();
+        AtomicInteger conflicts = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                workers.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        PageDriver pageDriver = j % 2 == 0
+                                ? pool.take(10, TimeUnit.SECONDS)
+                                : pool.takeAsync().get(10, TimeUnit.SECONDS);
+                        assertNotNull(pageDriver);
+                        if (!held.add(pageDriver)) {
+                            conflicts.incrementAndGet();
+                        }
+                        Thread.yield();
+                        held.remove(pageDriver);
+                        pool.free(pageDriver);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, conflicts.get());
+        assertTrue(launches.get() <= 2);
+        assertTrue(pool.getWaitingByTenant().isEmpty());
+        assertTrue(pool.getHeldByTenant().isEmpty());
+    }
+
+    @Test
+    public void replacesDriverInvalidOnBorrow() throws Exception {
+        PageDriver invalid = pool.take();
+        pool.free(invalid);
+        pool.setTestOnBorrow(true);
+        pool.setValidator(pageDriver -> pageDriver != invalid);
+
+        PageDriver replacement = pool.take(10, TimeUnit.SECONDS);
+        assertNotNull(replacement);
+        assertNotSame(invalid, replacement);
+        assertNull("Replacement is launched over max pool size", pool.tryTake());
+    }
+
+    @Test
+    public void resetsFreedDriverInBackground() throws Exception {
+        CountDownLatch resetReleased = new CountDownLatch(1);
+        AtomicInteger resets = new AtomicInteger();
+        PageDriverPool resetting = new PageDriverPool(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, 0) {
+            @Override
+            PageDriver launch() {
+                return StubPageDrivers.launch(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, method -> {
+                    if (method.getName().equals("deleteAllCookies")) {
+                        resets.incrementAndGet();
+                        try {
+                            resetReleased.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            resetting.setShareReference(false);
+            resetting.setMaxPoolSize(1);
+            resetting.setCleanAfterUsage(true);
+            resetting.setResetLevel(ResetLevel.COOKIES);
+
+            PageDriver pageDriver = resetting.take();
+            executor.submit(() -> resetting.free(pageDriver)).get(10, TimeUnit.SECONDS);
+            assertNull("Driver is given out before it's reset", resetting.tryTake());
+
+            resetReleased.countDown();
+            assertSame(pageDriver, resetting.take(10, TimeUnit.SECONDS));
+            assertEquals(1, resets.get());
+        } finally {
+            resetReleased.countDown();
+            executor.shutdownNow();
+            resetting.destroy();
+        }
+    }
+
+    @Test
+    public void restartsDriverWhichFailsToReset() throws Exception {
+        AtomicInteger restarts = new AtomicInteger();
+        PageDriverPool resetting = newFailingResetPool(new IllegalStateException("reset failed"), restarts, false);
+        try {
+            PageDriver pageDriver = resetting.take();
+            resetting.free(pageDriver);
+
+            assertSame(pageDriver, resetting.take(10, TimeUnit.SECONDS));
+            assertEquals(1, restarts.get());
+        } finally {
+            resetting.destroy();
+        }
+    }
+
+    @Test
+    public void replacesDriverWhichFailsToRestart() throws Exception {
+        AtomicInteger restarts = new AtomicInteger();
+        PageDriverPool resetting = newFailingResetPool(new WebDriverException((String) null), restarts, true);
+        try {
+            PageDriver pageDriver = resetting.take();
+            resetting.free(pageDriver);
+
+            PageDriver replacement = resetting.take(10, TimeUnit.SECONDS);
+            assertNotNull("Slot of the failed driver is leaked", replacement);
+            assertNotSame(pageDriver, replacement);
+            assertEquals(1, restarts.get());
+        } finally {
+            resetting.destroy();
+        }
+    }
+
+    /**
+     * Returns pool of single page driver, which throws the exception on reset of cookies.
+     */
+    private static PageDriverPool newFailingResetPool(RuntimeException resetFailure, AtomicInteger restarts, boolean failRestart) {
+        PageDriverPool resetting = new PageDriverPool(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, 0) {
+            @Override
+            PageDriver launch() {
+                WebDriver driver = StubPageDrivers.launch(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, method -> {
+                    if (method.getName().equals("deleteAllCookies")) {
+                        throw resetFailure;
+                    }
+                }).getDriver();
+                return new PageDriver(UUID.randomUUID().toString(), WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, driver) {
+                    @Override
+                    public void restartBrowser() {
+                        restarts.incrementAndGet();
+                        if (failRestart) {
+                            throw new WebDriverException("restart failed");
+                        }
+                    }
+                };
+            }
+        };
+        resetting.setShareReference(false);
+        resetting.setMaxPoolSize(1);
+        resetting.setCleanAfterUsage(true);
+        resetting.setResetLevel(ResetLevel.COOKIES);
+        return resetting;
+    }
+
+    @Test
+    public void validatesDriverForWaiterInBackground() throws Exception {
+        PageDriver pageDriver = pool.take();
+        CompletableFuture<PageDriver> waiting = pool.takeAsync();
+        CountDownLatch validationReleased = new CountDownLatch(1);
+        pool.setTestOnBorrow(true);
+        pool.setValidationTimeout(1, TimeUnit.MINUTES);
+        pool.setValidator(validated -> {
+            try {
+                validationReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> pool.free(pageDriver)).get(10, TimeUnit.SECONDS);
+            assertFalse(waiting.isDone());
+
+            validationReleased.countDown();
+            assertSame(pageDriver, waiting.get(10, TimeUnit.SECONDS));
+        } finally {
+            validationReleased.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void launchesDriverForWaiterInPlaceOfInvalidOne() throws Exception {
+        PageDriver invalid = pool.take();
+        CompletableFuture<PageDriver> waiting = pool.takeAsync();
+        pool.setTestOnBorrow(true);
+        pool.setValidator(pageDriver -> pageDriver != invalid);
+
+        pool.free(invalid);
+        PageDriver replacement = waiting.get(10, TimeUnit.SECONDS);
+        assertNotSame(invalid, replacement);
+        assertEquals(2, launches.get());
+        assertNull(pool.tryTake());
+    }
+
+    @Test
+    public void treatsInterruptedValidationAsInvalid() {
+        PageDriver pageDriver = pool.take();
+        pool.free(pageDriver);
+        pool.setTestOnBorrow(true);
+        pool.setValidationTimeout(1, TimeUnit.MINUTES);
+        pool.setValidator(validated -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+
+        Thread.currentThread().interrupt();
+        assertNull(pool.tryTake());
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    public void replacesDriverInvalidOnReturn() throws Exception {
+        pool.setTestOnReturn(true);
+        PageDriver invalid = pool.take();
+        pool.setValidator(pageDriver -> pageDriver != invalid);
+
+        pool.free(invalid);
+        PageDriver replacement = pool.take(10, TimeUnit.SECONDS);
+        assertNotNull(replacement);
+        assertNotSame(invalid, replacement);
+        assertEquals(2, launches.get());
+    }
+
+    @Test
+    public void closesDriversLaunchedOnDemandOfNonExpandablePool() throws Exception {
+        pool.setExpandable(false);
+        PageDriver pageDriver = pool.take();
+        CompletableFuture<PageDriver> waiting = pool.takeAsync();
+
+        pool.free(pageDriver);
+        PageDriver launched = waiting.get(10, TimeUnit.SECONDS);
+        assertNotSame(pageDriver, launched);
+    }
+
+    @Test
+    public void neverLaunchesOverMaxPoolSizeWhileReplenishing() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 20; i++) {
+                AtomicInteger replenishedLaunches = new AtomicInteger();
+                PageDriverPool replenished = StubPageDrivers.newPool(0, new BootstrapPolicy(), replenishedLaunches);
+                try {
+                    replenished.setShareReference(false);
+                    replenished.setMaxPoolSize(2);
+                    CountDownLatch start = new CountDownLatch(1);
+                    List<Future<?>> takers = new ArrayList<>();
+                    for (int j = 0; j < 3; j++) {
+                        takers.add(executor.submit(() -> {
+                            start.await();
+                            return replenished.tryTake();
+                        }));
+                    }
+                    takers.add(executor.submit(() -> {
+                        start.await();
+                        replenished.setMinIdle(2);
+                        return null;
+                    }));
+                    start.countDown();
+                    for (Future<?> taker : takers) {
+                        taker.get(10, TimeUnit.SECONDS);
+                    }
+                    assertTrue(replenishedLaunches.get() <= 2);
+                } finally {
+                    replenished.destroy();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void keepsMinIdleDriversReady() throws InterruptedException {
+        pool.setMaxPoolSize(2);
+        pool.setMinIdle(2);
+
+        PageDriver first = pool.take(10, TimeUnit.SECONDS);
+        PageDriver second = pool.take(10, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertNull(pool.tryTake());
+        assertEquals("Drivers are launched over the warming ones", 2, launches.get());
+    }
+
+    @Test
+    public void launchesInitialDriversBeforeReturning() {
+        AtomicInteger bootstrapLaunches = new AtomicInteger();
+        PageDriverPool bootstrapped = StubPageDrivers.newPool(3, new BootstrapPolicy(), bootstrapLaunches);
+        try {
+            bootstrapped.setShareReference(false);
+            bootstrapped.setMaxPoolSize(3);
+            assertEquals(3, bootstrapLaunches.get());
+
+            for (int i = 0; i < 3; i++) {
+                assertNotNull(bootstrapped.tryTake());
+            }
+            assertNull(bootstrapped.tryTake());
+            assertEquals(3, bootstrapLaunches.get());
+        } finally {
+            bootstrapped.destroy();
+        }
+    }
+
+    @Test
+    public void retriesFailedLaunches() {
+        BootstrapPolicy bootstrapPolicy = new BootstrapPolicy();
+        bootstrapPolicy.setLaunchConcurrency(1);
+        bootstrapPolicy.setLaunchAttempts(2);
+        AtomicInteger attempts = new AtomicInteger();
+        PageDriverPool bootstrapped = new PageDriverPool(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, 2, bootstrapPolicy) {
+            @Override
+            PageDriver launch() {
+                if (attempts.incrementAndGet() % 2 == 1) {
+                    throw new WebDriverException("Browser hasn't started");
+                }
+                return StubPageDrivers.launch(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS);
+            }
+        };
+        try {
+            bootstrapped.setShareReference(false);
+            bootstrapped.setMaxPoolSize(2);
+            assertEquals(4, attempts.get());
+            assertNotNull(bootstrapped.tryTake());
+            assertNotNull(bootstrapped.tryTake());
+        } finally {
+            bootstrapped.destroy();
+        }
+    }
+
+    @Test
+    public void launchesRestInBackgroundAfterStartupTimeout() throws InterruptedException {
+        BootstrapPolicy bootstrapPolicy = new BootstrapPolicy();
+        bootstrapPolicy.setStartupTimeout(100, TimeUnit.MILLISECONDS);
+        CountDownLatch launchReleased = new CountDownLatch(1);
+        PageDriverPool bootstrapped = new PageDriverPool(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, 1, bootstrapPolicy) {
+            @Override
+            PageDriver launch() {
+                try {
+                    launchReleased.await();
+                } catch (InterruptedException e) {
+                    throw new WebDriverException(e);
+                }
+                return StubPageDrivers.launch(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS);
+            }
+        };
+        try {
+            bootstrapped.setMaxPoolSize(1);
+            assertNull("Driver is launched over max pool size instead of waiting for the launching one",
+                    bootstrapped.tryTake());
+
+            launchReleased.countDown();
+            assertNotNull(bootstrapped.take(10, TimeUnit.SECONDS));
+        } finally {
+            launchReleased.countDown();
+            bootstrapped.destroy();
+        }
+    }
+
+    @Test
+    public void failsPendingFuturesOnDestroy() throws InterruptedException {
+        pool.take();
+        CompletableFuture<PageDriver> waiting = pool.takeAsync();
+
+        pool.destroy();
+        try {
+            waiting.join();
+            fail("Waiter isn't released by destroy");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package el.selenium.drivers.page.pool;
+
+import el.selenium.drivers.page.PageDriver;
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ProfileStrategy;
+import org.openqa.selenium.WebDriver;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Creates pools of page drivers wrapping stub drivers, which do nothing, so that no browser is needed.
+ */
+class StubPageDrivers {
+
+    static PageDriver launch(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy) {
+        return launch(browser, profileStrategy, method -> {
+        });
+    }
+
+    /**
+     * @param listener is called on each method of the driver and of the objects it returns
+     */
+    static PageDriver launch(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, Consumer<Method> listener) {
+        return new PageDriver(UUID.randomUUID().toString(), browser, profileStrategy, (WebDriver) stub(WebDriver.class, listener));
+    }
+
+    /**
+     * @param launches counts launched page drivers
+     */
+    static PageDriverPool newPool(int poolSize, BootstrapPolicy bootstrapPolicy, AtomicInteger launches) {
+        return newPool(WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.NON_JS, poolSize, bootstrapPolicy, PageDriverBudget.UNLIMITED, launches);
+    }
+
+    static PageDriverPool newPool(WebDriverFactory.Browser browser, ProfileStrategy profileStrategy, int poolSize,
+                                  BootstrapPolicy bootstrapPolicy, PageDriverBudget budget, AtomicInteger launches) {
+        return new PageDriverPool(browser, profileStrategy, poolSize, bootstrapPolicy, budget) {
+            @Override
+            PageDriver launch() {
+                launches.incrementAndGet();
+                return StubPageDrivers.launch(browser, profileStrategy);
+            }
+        };
+    }
+
+    /**
+     * Returns stub of the interface, which returns stubs of interfaces and null otherwise.
+     */
+    private static Object stub(Class<?> type, Consumer<Method> listener) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            listener.accept(method);
+            return method.getReturnType().isInterface() ? stub(method.getReturnType(), listener) : null;
+        });
+    }
+}
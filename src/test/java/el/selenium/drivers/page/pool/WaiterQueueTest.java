@@ -0,0 +1,154 @@
+package el.selenium.drivers.page.pool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class WaiterQueueTest {
+
+    private WaiterQueue queue;
+
+    /**
+     * Shares of the tenants, zero if absent
+     */
+    private final Map<String, Double> shares = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        queue = new WaiterQueue();
+    }
+
+    @Test
+    public void servesSameTenantInOrderOfArrival() {
+        Waiter first = offer(0, "tenant");
+        Waiter second = offer(0, "tenant");
+
+        assertSame(first, peek());
+        serve(first);
+        assertSame(second, peek());
+        serve(second);
+        assertNull(peek());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void servesHigherPriorityFirst() {
+        Waiter low = offer(0, "tenant");
+        Waiter high = offer(10, "tenant");
+        Waiter normal = offer(5, "other");
+
+        assertSame(high, peek());
+        serve(high);
+        assertSame(normal, peek());
+        serve(normal);
+        assertSame(low, peek());
+    }
+
+    @Test
+    public void skipsPriorityWithoutEligibleTenants() {
+        Waiter low = offer(0, "eligible");
+        offer(10, "exhausted");
+
+        assertSame(low, queue.peek(tenant -> !tenant.equals("exhausted"), tenant -> 0));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void servesTenantWithLowestShareFirst() {
+        Waiter busy = offer(0, "busy");
+        Waiter quiet = offer(0, "quiet");
+        shares.put("busy", 2.0);
+        shares.put("quiet", 1.0);
+
+        assertSame(quiet, peek());
+
+        shares.put("quiet", 3.0);
+        assertSame(busy, peek());
+    }
+
+    @Test
+    public void resolvesEqualSharesByArrival() {
+        Waiter first = offer(0, "first");
+        Waiter second = offer(0, "second");
+        Waiter third = offer(0, "first");
+
+        assertSame(first, peek());
+        serve(first);
+        assertSame(second, peek());
+        serve(second);
+        assertSame(third, peek());
+    }
+
+    @Test
+    public void dropsWaitersServedElsewhere() {
+        Waiter timedOut = offer(0, "tenant");
+        Waiter waiting = offer(0, "tenant");
+        timedOut.served.set(true);
+
+        assertSame(waiting, peek());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void dropsCancelledWaiters() {
+        Waiter cancelled = offer(10, "tenant");
+        Waiter waiting = offer(0, "tenant");
+        cancelled.future.cancel(false);
+
+        assertSame(waiting, peek());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void removesWaiter() {
+        Waiter first = offer(0, "tenant");
+        Waiter second = offer(0, "tenant");
+
+        assertTrue(queue.remove(first));
+        assertFalse(queue.remove(first));
+        assertFalse(queue.remove(new Waiter("absent", 0, "tenant")));
+        assertEquals(1, queue.size());
+        assertSame(second, peek());
+
+        assertTrue(queue.remove(second));
+        assertTrue(queue.isEmpty());
+        assertNull(peek());
+    }
+
+    @Test
+    public void countsAndDrainsWaiters() {
+        Waiter first = offer(0, "tenant");
+        Waiter second = offer(5, "tenant");
+        Waiter third = offer(0, "other");
+
+        Map<String, Integer> counts = queue.countByTenant();
+        assertEquals(Integer.valueOf(2), counts.get("tenant"));
+        assertEquals(Integer.valueOf(1), counts.get("other"));
+
+        assertTrue(queue.drain().containsAll(Arrays.asList(first, second, third)));
+        assertTrue(queue.isEmpty());
+        assertNull(peek());
+    }
+
+    private Waiter offer(int priority, String tenant) {
+        Waiter waiter = new Waiter("reference", priority, tenant);
+        queue.offer(waiter);
+        return waiter;
+    }
+
+    private Waiter peek() {
+        return queue.peek(tenant -> true, tenant -> shares.getOrDefault(tenant, 0.0));
+    }
+
+    /**
+     * Serves the waiter the way the pool does, leaving it in the queue till the next peek
+     */
+    private static void serve(Waiter waiter) {
+        assertTrue(waiter.served.compareAndSet(false, true));
+    }
+}
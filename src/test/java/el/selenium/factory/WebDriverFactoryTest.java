@@ -0,0 +1,43 @@
+package el.selenium.factory;
+
+import el.selenium.drivers.strategies.ResourceBlockingPolicy;
+import el.selenium.model.ResourceType;
+import org.junit.Test;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class WebDriverFactoryTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mergesChromePreferences() {
+        ChromeOptions chromeOptions = new ChromeOptions();
+        chromeOptions.setExperimentalOption("prefs", Collections.singletonMap("download.default_directory", "/var/data"));
+        ResourceBlockingPolicy blockingPolicy = new ResourceBlockingPolicy();
+        blockingPolicy.setBlockedTypes(ResourceType.IMAGE);
+
+        WebDriverFactory.addBlockingOptions(chromeOptions, blockingPolicy);
+        Map<String, Object> preferences = (Map<String, Object>) chromeOptions.getExperimentalOption("prefs");
+        assertEquals("/var/data", preferences.get("download.default_directory"));
+        assertEquals(2, preferences.get("profile.managed_default_content_settings.images"));
+    }
+
+    @Test
+    public void blocksFontsAndMediaInChrome() throws Exception {
+        ChromeOptions chromeOptions = new ChromeOptions();
+        ResourceBlockingPolicy blockingPolicy = new ResourceBlockingPolicy();
+        blockingPolicy.setBlockedTypes(ResourceType.FONT, ResourceType.MEDIA);
+        blockingPolicy.setBlockedDomains("ads.example.com");
+
+        WebDriverFactory.addBlockingOptions(chromeOptions, blockingPolicy);
+        String options = chromeOptions.toJson().toString();
+        assertTrue(options.contains("--disable-remote-fonts"));
+        assertTrue(options.contains("--autoplay-policy=user-gesture-required"));
+        assertTrue(options.contains("--host-resolver-rules=MAP ads.example.com ~NOTFOUND"));
+        assertNull(chromeOptions.getExperimentalOption("prefs"));
+    }
+}
@@ -0,0 +1,127 @@
+package el.selenium.model.storage;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the storage scripts against web storage of HtmlUnit page.
+ */
+public class ScriptStorageTest {
+
+    private WebClient webClient;
+    private HtmlPage page;
+    private final AtomicInteger scripts = new AtomicInteger();
+
+    private LocalStorageImpl localStorage;
+    private SessionStorageImpl sessionStorage;
+
+    @Before
+    public void setUp() throws Exception {
+        webClient = new WebClient(BrowserVersion.FIREFOX_45);
+        MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse("<html><body></body></html>");
+        webClient.setWebConnection(connection);
+        page = webClient.getPage(new URL("http://example.com/"));
+
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("executeScript")) {
+                        scripts.incrementAndGet();
+                        return execute((String) args[0], (Object[]) args[1]);
+                    }
+                    return null;
+                });
+        localStorage = new LocalStorageImpl(driver);
+        sessionStorage = new SessionStorageImpl(driver);
+    }
+
+    @After
+    public void tearDown() {
+        webClient.close();
+    }
+
+    @Test
+    public void accessesSingleItems() {
+        localStorage.setItem("theme", "dark");
+        localStorage.setItem("lang", "en");
+
+        assertEquals("dark", localStorage.getItem("theme"));
+        assertEquals(new HashSet<>(Arrays.asList("theme", "lang")), localStorage.keySet());
+        assertEquals(2, localStorage.size());
+        assertEquals("dark", localStorage.removeItem("theme"));
+        assertNull(localStorage.getItem("theme"));
+        assertEquals(0, sessionStorage.size());
+    }
+
+    @Test
+    public void takesSnapshotInSingleScript() {
+        localStorage.setItem("theme", "dark");
+        localStorage.setItem("lang", "en");
+        scripts.set(0);
+
+        Map<String, String> snapshot = localStorage.snapshot();
+        assertEquals(1, scripts.get());
+        Map<String, String> expected = new HashMap<>();
+        expected.put("theme", "dark");
+        expected.put("lang", "en");
+        assertEquals(expected, snapshot);
+    }
+
+    @Test
+    public void restoreReplacesAllItems() {
+        sessionStorage.setItem("stale", "1");
+        Map<String, String> items = new LinkedHashMap<>();
+        items.put("cart", "[1,2]");
+        items.put("quote", "it's \"quoted\"");
+        scripts.set(0);
+
+        sessionStorage.restore(items);
+        assertEquals(1, scripts.get());
+        assertEquals(items, sessionStorage.snapshot());
+        assertEquals(0, localStorage.size());
+    }
+
+    @Test
+    public void putAllKeepsOtherItems() {
+        localStorage.setItem("kept", "1");
+        localStorage.putAll(Collections.singletonMap("added", "2"));
+
+        assertEquals("1", localStorage.getItem("kept"));
+        assertEquals("2", localStorage.getItem("added"));
+    }
+
+    @Test
+    public void snapshotRestoresToAnotherPage() throws Exception {
+        localStorage.setItem("token", "abc");
+        Map<String, String> snapshot = localStorage.snapshot();
+        localStorage.clear();
+        assertEquals(0, localStorage.size());
+
+        localStorage.restore(snapshot);
+        assertEquals("abc", localStorage.getItem("token"));
+    }
+
+    /**
+     * Runs the script as function of the arguments passed as JSON, returning arrays and objects as Java collections.
+     */
+    private Object execute(String script, Object[] args) {
+        Object result = page.executeJavaScript("JSON.stringify((function() {" + script + "}).apply(null, " + new Gson().toJson(args) + "))")
+                .getJavaScriptResult();
+        return result == null || "undefined".equals(result) ? null : new Gson().fromJson(String.valueOf(result), Object.class);
+    }
+}
@@ -0,0 +1,128 @@
+package el.selenium.utils;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.google.gson.Gson;
+import el.selenium.model.ElementDescription;
+import el.selenium.model.ListElementDescription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.pagefactory.ByChained;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles selectors and resolves the queries in HtmlUnit against local page.
+ */
+public class ElementQueryCompilerTest {
+
+    private final static String PAGE = "<html><body>" +
+            "<div id='menu' class='nav'><a id='home' href='/'> Home </a><a id='news' name='news' href='/news'>Latest news</a></div>" +
+            "<ul id='list'><li id='first'>1</li><li id='second' class='item'>2</li><li id='third' class='item'>3</li></ul>" +
+            "</body></html>";
+
+    private WebClient webClient;
+    private HtmlPage page;
+
+    @Before
+    public void setUp() throws Exception {
+        webClient = new WebClient(BrowserVersion.FIREFOX_45);
+        MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(PAGE);
+        webClient.setWebConnection(connection);
+        page = webClient.getPage(new URL("http://example.com/"));
+    }
+
+    @After
+    public void tearDown() {
+        webClient.close();
+    }
+
+    @Test
+    public void compilesSelectorTypes() {
+        assertStep(By.id("menu"), "id", "menu");
+        assertStep(By.name("news"), "name", "news");
+        assertStep(By.className("nav"), "className", "nav");
+        assertStep(By.cssSelector("div > a[href='/']"), "cssSelector", "div > a[href='/']");
+        assertStep(By.tagName("li"), "tagName", "li");
+        assertStep(By.xpath("//li[@id='first']"), "xpath", "//li[@id='first']");
+        assertStep(By.linkText("Home"), "linkText", "Home");
+        assertStep(By.partialLinkText("news"), "partialLinkText", "news");
+    }
+
+    @Test
+    public void compilesListIndexes() {
+        List<Map<String, Object>> steps = ElementQueryCompiler.compile(Arrays.asList(
+                new ElementDescription(By.id("list")),
+                new ListElementDescription(By.tagName("li"), 2)));
+
+        assertEquals(2, steps.size());
+        assertEquals(-1, steps.get(0).get("index"));
+        assertEquals(2, steps.get(1).get("index"));
+    }
+
+    @Test
+    public void doesNotCompileUnsupportedSelectors() {
+        By custom = new By() {
+            @Override
+            public List<WebElement> findElements(SearchContext context) {
+                return Collections.emptyList();
+            }
+        };
+        assertNull(ElementQueryCompiler.compile(Collections.singletonList(new ElementDescription(custom))));
+        assertNull(ElementQueryCompiler.compile(Arrays.asList(
+                new ElementDescription(By.id("menu")),
+                new ElementDescription(new ByChained(By.id("list"), By.tagName("li"))))));
+    }
+
+    @Test
+    public void resolvesChainInPage() {
+        assertEquals("news", query(false, new ElementDescription(By.id("menu")), new ElementDescription(By.partialLinkText("news"))));
+        assertEquals("home", query(false, new ElementDescription(By.className("nav")), new ElementDescription(By.linkText("Home"))));
+        assertEquals("third", query(false, new ElementDescription(By.id("list")), new ListElementDescription(By.tagName("li"), 2)));
+        assertEquals("first", query(false, new ElementDescription(By.xpath("//ul")), new ElementDescription(By.cssSelector("li"))));
+        assertEquals("news", query(false, new ElementDescription(By.name("news"))));
+    }
+
+    @Test
+    public void resolvesAllElementsOfLastStep() {
+        assertEquals("second,third", query(true, new ElementDescription(By.id("list")), new ElementDescription(By.className("item"))));
+    }
+
+    @Test
+    public void resolvesNothingWhenStepIsMissing() {
+        assertNull(query(false, new ElementDescription(By.id("missing")), new ElementDescription(By.tagName("li"))));
+        assertNull(query(false, new ElementDescription(By.id("list")), new ListElementDescription(By.tagName("li"), 5)));
+    }
+
+    private static void assertStep(By selector, String type, String value) {
+        List<Map<String, Object>> steps = ElementQueryCompiler.compile(Collections.singletonList(new ElementDescription(selector)));
+        assertNotNull(steps);
+        assertEquals(type, steps.get(0).get("type"));
+        assertEquals(value, steps.get(0).get("value"));
+    }
+
+    /**
+     * @return ids of the resolved elements joined by comma, or null if nothing is resolved
+     */
+    private String query(boolean all, ElementDescription... elementDescriptions) {
+        List<Map<String, Object>> steps = ElementQueryCompiler.compile(Arrays.asList(elementDescriptions));
+        Object result = page.executeJavaScript("(function(steps, all) {" + ElementQueryCompiler.QUERY_FUNCTION +
+                " var found = query(steps, all, null);" +
+                " return !found ? null : all ? found.map(function(e) { return e.id; }).join() : found.id;" +
+                "})(" + new Gson().toJson(steps) + ", " + all + ")").getJavaScriptResult();
+        return result == null ? null : String.valueOf(result);
+    }
+}
@@ -0,0 +1,205 @@
+package el.selenium.utils;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.google.gson.Gson;
+import el.selenium.model.ElementDescription;
+import el.selenium.model.ElementState;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class ElementWaiterTest {
+
+    private final List<Long> scriptTimeouts = new ArrayList<>();
+    private final List<Object[]> asyncScripts = new ArrayList<>();
+
+    @Test
+    public void checksConditionOnFirstMutation() {
+        WebDriver driver = stubDriver(args -> "mutated");
+        AtomicInteger checks = new AtomicInteger();
+
+        long startTime = System.nanoTime();
+        assertTrue(ElementWaiter.waitCondition(driver, webDriver -> checks.incrementAndGet() == 2 ? true : null, 10, true));
+        assertTrue("Mutation doesn't end the sleep", System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(400));
+        assertEquals(1, asyncScripts.size());
+    }
+
+    @Test
+    public void sleepsPollingIntervalWithoutMutations() {
+        WebDriver driver = stubDriver(args -> "timeout");
+        AtomicInteger checks = new AtomicInteger();
+
+        assertTrue(ElementWaiter.waitCondition(driver, webDriver -> checks.incrementAndGet() == 2 ? true : null, 10, true));
+        assertEquals(500L, ((Number) asyncScripts.get(0)[0]).longValue());
+    }
+
+    @Test
+    public void pollsContinuouslyMutatingPage() {
+        WebDriver driver = stubDriver(args -> "mutated");
+        AtomicInteger checks = new AtomicInteger();
+
+        assertTrue(ElementWaiter.waitCondition(driver, webDriver -> checks.incrementAndGet() == 6 ? true : null, 10, true));
+        assertEquals(3, asyncScripts.size());
+    }
+
+    @Test
+    public void restoresScriptTimeoutAfterConditionWait() {
+        WebDriver driver = stubDriver(args -> "mutated");
+        AtomicInteger checks = new AtomicInteger();
+
+        ElementWaiter.waitCondition(driver, webDriver -> checks.incrementAndGet() == 2 ? true : null, 10, true);
+        assertEquals(2, scriptTimeouts.size());
+        assertTrue(scriptTimeouts.get(0) > ElementWaiter.MAX_ASYNC_WAIT);
+        assertEquals(TimeUnit.SECONDS.toMillis(30), (long) scriptTimeouts.get(1));
+    }
+
+    @Test
+    public void restoresScriptTimeoutAfterElementWait() {
+        WebElement element = (WebElement) Proxy.newProxyInstance(WebElement.class.getClassLoader(), new Class<?>[]{WebElement.class},
+                (proxy, method, args) -> null);
+        WebDriver driver = stubDriver(args -> Collections.singletonList(element));
+
+        List<ElementDescription> path = Collections.singletonList(new ElementDescription(By.id("found")));
+        assertSame(element, ElementWaiter.waitElement(driver, null, path, true, 10, true));
+        assertEquals(Arrays.asList(ElementWaiter.MAX_ASYNC_WAIT + TimeUnit.SECONDS.toMillis(10), TimeUnit.SECONDS.toMillis(30)),
+                scriptTimeouts);
+    }
+
+    @Test
+    public void probesAllPathsInSingleScript() throws Exception {
+        WebClient webClient = new WebClient(BrowserVersion.FIREFOX_45);
+        try {
+            MockWebConnection connection = new MockWebConnection();
+            connection.setDefaultResponse("<html><body><div id='menu'><a id='shown' href='/'>Home</a></div>" +
+                    "<div id='hidden' style='display: none'>Hidden</div></body></html>");
+            webClient.setWebConnection(connection);
+            HtmlPage page = webClient.getPage(new URL("http://example.com/"));
+            AtomicInteger scripts = new AtomicInteger();
+            WebDriver driver = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                    new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+                        if (!method.getName().equals("executeScript")) {
+                            fail("Probe calls " + method.getName());
+                        }
+                        scripts.incrementAndGet();
+                        Object result = page.executeJavaScript("JSON.stringify((function() {" + args[0] + "}).apply(null, "
+                                + new Gson().toJson(args[1]) + "))").getJavaScriptResult();
+                        return new Gson().fromJson(String.valueOf(result), List.class);
+                    });
+
+            List<ElementState> states = ElementWaiter.probe(driver, Arrays.asList(
+                    path(By.id("missing")),
+                    path(By.id("hidden")),
+                    path(By.id("shown")),
+                    Arrays.asList(new ElementDescription(By.id("menu")), new ElementDescription(By.tagName("a")))), true);
+            assertEquals(Arrays.asList(ElementState.ABSENT, ElementState.PRESENT, ElementState.VISIBLE, ElementState.VISIBLE), states);
+            assertEquals(1, scripts.get());
+        } finally {
+            webClient.close();
+        }
+    }
+
+    @Test
+    public void probesPathByPathWithoutJavascript() {
+        Map<String, WebElement> elements = new HashMap<>();
+        elements.put("hidden", stubElement(false));
+        elements.put("shown", stubElement(true));
+        WebDriver driver = findingDriver(selector -> elements.get(selector.toString().replace("By.id: ", "")));
+
+        List<ElementState> states = ElementWaiter.probe(driver,
+                Arrays.asList(path(By.id("missing")), path(By.id("hidden")), path(By.id("shown"))), false);
+        assertEquals(Arrays.asList(ElementState.ABSENT, ElementState.PRESENT, ElementState.VISIBLE), states);
+    }
+
+    @Test
+    public void waitsForAnyOfPathsByPolling() {
+        WebElement element = stubElement(true);
+        AtomicInteger polls = new AtomicInteger();
+        WebDriver driver = findingDriver(selector -> selector.equals(By.id("second")) && polls.incrementAndGet() >= 2 ? element : null);
+
+        List<WebElement> webElements = ElementWaiter.waitAny(driver, null,
+                Arrays.asList(path(By.id("first")), path(By.id("second"))), true, 10, false);
+        assertEquals(2, webElements.size());
+        assertNull(webElements.get(0));
+        assertSame(element, webElements.get(1));
+    }
+
+    @Test
+    public void timesOutWaitingForAnyOfPaths() {
+        WebDriver driver = findingDriver(selector -> null);
+
+        long startTime = System.nanoTime();
+        try {
+            ElementWaiter.waitAny(driver, null, Arrays.asList(path(By.id("first")), path(By.id("second"))), true, 1, false);
+            fail("Missing elements are found");
+        } catch (TimeoutException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("By.id: first or By.id: second"));
+        }
+        assertTrue("Single timeout for all the paths", System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    private static List<ElementDescription> path(By selector) {
+        return Collections.singletonList(new ElementDescription(selector));
+    }
+
+    private static WebElement stubElement(boolean displayed) {
+        return (WebElement) Proxy.newProxyInstance(WebElement.class.getClassLoader(), new Class<?>[]{WebElement.class},
+                (proxy, method, args) -> method.getName().equals("isDisplayed") ? displayed : null);
+    }
+
+    /**
+     * @param finder returns element found by the selector or null
+     */
+    private static WebDriver findingDriver(Function<By, WebElement> finder) {
+        return (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(), new Class<?>[]{WebDriver.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findElements")) {
+                        WebElement webElement = finder.apply((By) args[0]);
+                        return webElement == null ? Collections.emptyList() : Collections.singletonList(webElement);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * @param asyncScript returns result of async script for its arguments
+     */
+    private WebDriver stubDriver(Function<Object[], Object> asyncScript) {
+        WebDriver.Timeouts timeouts = (WebDriver.Timeouts) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.Timeouts.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("setScriptTimeout")) {
+                        scriptTimeouts.add(((TimeUnit) args[1]).toMillis((Long) args[0]));
+                    }
+                    return proxy;
+                });
+        WebDriver.Options options = (WebDriver.Options) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.Options.class}, (proxy, method, args) -> method.getName().equals("timeouts") ? timeouts : null);
+        return (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(), new Class<?>[]{WebDriver.class, JavascriptExecutor.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "manage":
+                            return options;
+                        case "executeAsyncScript":
+                            Object[] scriptArgs = (Object[]) args[1];
+                            asyncScripts.add(scriptArgs);
+                            return asyncScript.apply(scriptArgs);
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
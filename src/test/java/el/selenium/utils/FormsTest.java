@@ -0,0 +1,174 @@
+package el.selenium.utils;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.google.gson.Gson;
+import el.selenium.drivers.page.PageDriver;
+import el.selenium.factory.WebDriverFactory;
+import el.selenium.model.ElementData;
+import el.selenium.model.ElementType;
+import el.selenium.model.ProfileStrategy;
+import el.selenium.model.SelectorType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the fill script in HtmlUnit against local form, the fields which fall back to filling one by one are recorded instead.
+ */
+public class FormsTest {
+
+    private final static String FORM = "<html><body><form>" +
+            "<input id='name' maxlength='5'>" +
+            "<input id='code' maxlength='3' value='ab'>" +
+            "<input id='hidden' style='display: none'>" +
+            "<select id='country'><option value='am'>Armenia</option><option value='fr'>France</option></select>" +
+            "<input class='pair' value='a'><input class='pair' type='checkbox'>" +
+            "<input class='masked' value='a'><input class='masked' id='masked' value='a'>" +
+            "<textarea id='comment'></textarea>" +
+            "</form><script>" +
+            "var changes = [];" +
+            "document.addEventListener('change', function(e) { changes.push(e.target.id); }, true);" +
+            //masked input shows its own value instead of the one set, as input of script framework might
+            "Object.defineProperty(document.getElementById('masked'), 'value', {get: function() { return 'masked'; }, set: function() {}});" +
+            "</script></body></html>";
+
+    private WebClient webClient;
+    private HtmlPage page;
+    private Forms forms;
+
+    /**
+     * Fields filled one by one, each with the value of the comment at that time
+     */
+    private final List<String> fallbacks = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        webClient = new WebClient(BrowserVersion.FIREFOX_45);
+        MockWebConnection connection = new MockWebConnection();
+        connection.setDefaultResponse(FORM);
+        webClient.setWebConnection(connection);
+        page = webClient.getPage(new URL("http://example.com/form"));
+
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("executeScript")) {
+                        return execute((String) args[0], (Object[]) args[1]);
+                    }
+                    return null;
+                });
+        PageDriver pageDriver = new PageDriver("form", WebDriverFactory.Browser.HTML_UNIT, ProfileStrategy.DEFAULT, driver);
+        forms = new Forms(pageDriver) {
+            @Override
+            public void fillData(ElementData elementData) {
+                fallbacks.add(elementData.getSelector() + "@" + value("comment"));
+            }
+        };
+        forms.setFastMode(true);
+    }
+
+    @After
+    public void tearDown() {
+        webClient.close();
+    }
+
+    @Test
+    public void fillsFieldsInSingleScript() {
+        forms.fillData(Arrays.asList(
+                new ElementData("name", "alice"),
+                new ElementData("country", "fr", SelectorType.id, ElementType.select),
+                new ElementData("comment", "hi")));
+
+        assertEquals(Collections.emptyList(), fallbacks);
+        assertEquals("alice", value("name"));
+        assertEquals("fr", value("country"));
+        assertEquals("hi", value("comment"));
+        assertEquals("name,country,comment", page.executeJavaScript("changes.join()").getJavaScriptResult());
+    }
+
+    @Test
+    public void fallsBackForHiddenFieldKeepingOrder() {
+        forms.fillData(Arrays.asList(
+                new ElementData("name", "alice"),
+                new ElementData("hidden", "secret"),
+                new ElementData("comment", "hi")));
+
+        assertEquals(Collections.singletonList("hidden@"), fallbacks);
+        assertEquals("alice", value("name"));
+        assertEquals("", value("hidden"));
+        assertEquals("hi", value("comment"));
+    }
+
+    @Test
+    public void fallsBackForMissingOption() {
+        forms.fillData(Arrays.asList(
+                new ElementData("country", "de", SelectorType.id, ElementType.select),
+                new ElementData("comment", "hi")));
+
+        assertEquals(Collections.singletonList("country@"), fallbacks);
+        assertEquals("am", value("country"));
+        assertEquals("hi", value("comment"));
+    }
+
+    @Test
+    public void selectsOptionByIndex() {
+        forms.fillData(Collections.singletonList(new ElementData("country", "index:1", SelectorType.id, ElementType.select)));
+
+        assertEquals(Collections.emptyList(), fallbacks);
+        assertEquals("fr", value("country"));
+    }
+
+    @Test
+    public void fallsBackForValueOverMaxLength() {
+        forms.fillData(Arrays.asList(
+                new ElementData("code", "cd"),
+                new ElementData("name", "alice")));
+
+        assertEquals(Collections.singletonList("code@"), fallbacks);
+        assertEquals("ab", value("code"));
+        assertEquals("alice", value("name"));
+    }
+
+    @Test
+    public void fallsBackForElementsOfRejectedType() {
+        forms.fillData(Collections.singletonList(new ElementData("pair", "b", SelectorType.className, ElementType.input, true)));
+
+        assertEquals(Collections.singletonList("pair@"), fallbacks);
+        assertEquals("a", page.executeJavaScript("document.getElementsByClassName('pair')[0].value").getJavaScriptResult());
+    }
+
+    @Test
+    public void rollsBackElementsWhenOneDoesNotTakeValue() {
+        forms.fillData(Collections.singletonList(new ElementData("masked", "b", SelectorType.className, ElementType.input, true)));
+
+        assertEquals(Collections.singletonList("masked@"), fallbacks);
+        assertEquals("a", page.executeJavaScript("document.getElementsByClassName('masked')[0].value").getJavaScriptResult());
+        assertEquals("", page.executeJavaScript("changes.join()").getJavaScriptResult());
+    }
+
+    private String value(String id) {
+        return String.valueOf(page.executeJavaScript("document.getElementById('" + id + "').value").getJavaScriptResult());
+    }
+
+    /**
+     * Runs the script as function of the arguments passed as JSON, the way the driver runs it.
+     */
+    private Object execute(String script, Object[] args) {
+        Object result = page.executeJavaScript("(function() {" + script + "}).apply(null, " + new Gson().toJson(args) + ")")
+                .getJavaScriptResult();
+        return result instanceof Number ? ((Number) result).longValue() : result;
+    }
+}